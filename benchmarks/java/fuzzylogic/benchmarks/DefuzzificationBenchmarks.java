@@ -0,0 +1,80 @@
+package fuzzylogic.benchmarks;
+
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.defuzzification.AnalyticDefuzzification;
+import fuzzylogic.defuzzification.BisectorDefuzzification;
+import fuzzylogic.defuzzification.CentroidDefuzzification;
+import fuzzylogic.defuzzification.DefuzzificationMethod;
+import fuzzylogic.defuzzification.MeanOfMaximumDefuzzification;
+import fuzzylogic.inference.MamdaniInferenceEngine;
+import fuzzylogic.operators.aggregation.MaxAggregation;
+import fuzzylogic.operators.implication.MinImplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Defuzzification alone, over the music output with neutral fired at 0.6 and upbeat at 0.3:
+// the grid methods on a pre-aggregated grid and the analytic methods on the fired sets.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class DefuzzificationBenchmarks {
+
+    @Param({"50", "200", "1000"})
+    public int numSteps;
+
+    @Param({"CENTROID", "BISECTOR", "MEAN_OF_MAXIMUM"})
+    public AnalyticDefuzzification.Method method;
+
+    private double[] aggregate;
+    private DefuzzificationMethod grid;
+    private AnalyticDefuzzification analytic;
+    private AnalyticDefuzzification.FiredSets fired;
+    private final MinImplication implication = new MinImplication();
+    private final MaxAggregation aggregation = new MaxAggregation();
+
+    @Setup
+    public void setUp() {
+        LinguisticVariable output = Models.music("mamdani").getOutputVariables().get("musicMood");
+        double[] neutral = MamdaniInferenceEngine.sample(output.getFuzzySets().get("neutral"), 0, 100, numSteps);
+        double[] upbeat = MamdaniInferenceEngine.sample(output.getFuzzySets().get("upbeat"), 0, 100, numSteps);
+        aggregate = new double[numSteps];
+        for (int i = 0; i < numSteps; i++) {
+            aggregate[i] = Math.max(Math.min(0.6, neutral[i]), Math.min(0.3, upbeat[i]));
+        }
+        grid = switch (method) {
+            case CENTROID -> new CentroidDefuzzification();
+            case BISECTOR -> new BisectorDefuzzification();
+            case MEAN_OF_MAXIMUM -> new MeanOfMaximumDefuzzification();
+        };
+
+        analytic = new AnalyticDefuzzification(method);
+        fired = new AnalyticDefuzzification.FiredSets();
+        fired.add(output.getFuzzySets().get("neutral").getMembershipFunction(), 0.6);
+        fired.add(output.getFuzzySets().get("upbeat").getMembershipFunction(), 0.3);
+    }
+
+    @Benchmark
+    public double grid() {
+        return grid.defuzzify(aggregate, 0, 100, numSteps);
+    }
+
+    // independent of numSteps, so compare it against grid at each resolution
+    @Benchmark
+    public double analytic() {
+        return analytic.defuzzify(fired, implication, aggregation, 0, 100);
+    }
+}
@@ -0,0 +1,110 @@
+package fuzzylogic.benchmarks;
+
+import fuzzylogic.core.CompiledFuzzySystem;
+import fuzzylogic.core.FuzzySet;
+import fuzzylogic.core.FuzzySystem;
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.defuzzification.CentroidDefuzzification;
+import fuzzylogic.inference.MamdaniInferenceEngine;
+import fuzzylogic.io.ModelTextFormat;
+import fuzzylogic.membershipFunction.TriangularMF;
+import fuzzylogic.operators.AndMin;
+import fuzzylogic.operators.NotComplement;
+import fuzzylogic.operators.OrMax;
+import fuzzylogic.operators.aggregation.MaxAggregation;
+import fuzzylogic.operators.implication.MinImplication;
+import fuzzylogic.rules.FuzzyRule;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// Models shared by the benchmarks: the music recommender and grid-partitioned synthetic rule bases.
+final class Models {
+
+    private Models() {
+    }
+
+    // "mamdani" or "sugeno": the music model that MusicRecommendationSystem loads from music.fcl
+    static FuzzySystem music(String engine) {
+        FuzzySystem system;
+        try {
+            system = ModelTextFormat.readResource("music.fcl");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (engine.equals("mamdani")) system.setInferenceEngine(centroidEngine(200));
+        return system;
+    }
+
+    // min/max Mamdani with grid centroid defuzzification, as the music demo uses
+    static MamdaniInferenceEngine centroidEngine(int numSteps) {
+        return new MamdaniInferenceEngine(new AndMin(), new OrMax(), new NotComplement(),
+                new MinImplication(), new MaxAggregation(), new CentroidDefuzzification(), numSteps);
+    }
+
+    static Map<String, Double> musicInputs() {
+        Map<String, Double> inputs = new HashMap<>();
+        inputs.put("heartRate", 82.0);
+        inputs.put("facialExpression", 6.5);
+        inputs.put("timeOfDay", 18.5);
+        return inputs;
+    }
+
+    // every combination of sets over enough 0-10 inputs to reach numRules
+    static FuzzySystem synthetic(int numRules) {
+        int setsPerInput = 10;
+        int numInputs = Math.max(1, (int) Math.ceil(Math.log(numRules) / Math.log(setsPerInput)));
+
+        FuzzySystem system = new FuzzySystem(centroidEngine(200));
+
+        double width = 10.0 / (setsPerInput - 1);
+        for (int v = 0; v < numInputs; v++) {
+            LinguisticVariable input = new LinguisticVariable("x" + v, 0, 10);
+            for (int s = 0; s < setsPerInput; s++) {
+                input.addFuzzySet(new FuzzySet("s" + s, new TriangularMF(s * width - width, s * width, s * width + width)));
+            }
+            system.addInputVariable(input);
+        }
+
+        LinguisticVariable output = new LinguisticVariable("y", 0, 100);
+        for (int s = 0; s < 5; s++) {
+            output.addFuzzySet(new FuzzySet("o" + s, new TriangularMF(s * 25 - 25, s * 25, s * 25 + 25)));
+        }
+        system.addOutputVariable(output);
+
+        for (int r = 0; r < numRules; r++) {
+            FuzzyRule rule = new FuzzyRule("R" + r);
+            int code = r;
+            int level = 0;
+            for (int v = 0; v < numInputs; v++) {
+                rule.addAntecedent("x" + v, "s" + (code % setsPerInput), true, false);
+                level += code % setsPerInput;
+                code /= setsPerInput;
+            }
+            rule.setConsequent("y", "o" + Math.min(4, level * 5 / (numInputs * (setsPerInput - 1) + 1)));
+            system.addRule(rule);
+        }
+        return system;
+    }
+
+    static Map<String, Double> syntheticInputs(FuzzySystem system) {
+        Random random = new Random(42);
+        Map<String, Double> inputs = new HashMap<>();
+        for (String name : system.getInputVariables().keySet()) {
+            inputs.put(name, random.nextDouble() * 10);
+        }
+        return inputs;
+    }
+
+    static double[] row(CompiledFuzzySystem compiled, Map<String, Double> inputs) {
+        String[] names = compiled.getInputNames();
+        double[] row = new double[names.length];
+        for (int v = 0; v < names.length; v++) {
+            row[v] = inputs.get(names[v]);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,212 @@
+package fuzzylogic.benchmarks;
+
+import fuzzylogic.core.CompiledFuzzySystem;
+import fuzzylogic.core.FuzzySystem;
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.core.LookupTableSurrogate;
+import fuzzylogic.defuzzification.AnalyticDefuzzification;
+import fuzzylogic.inference.InferenceEngine;
+import fuzzylogic.inference.MamdaniInferenceEngine;
+import fuzzylogic.inference.SugenoInferenceEngine;
+import fuzzylogic.metrics.InferenceMetrics;
+import fuzzylogic.operators.AndMin;
+import fuzzylogic.operators.BinaryOperator;
+import fuzzylogic.operators.NotComplement;
+import fuzzylogic.operators.OrMax;
+import fuzzylogic.operators.UnaryOperator;
+import fuzzylogic.rules.FuzzyRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// The music recommender end to end: fuzzification, rule firing, every inference path and the
+// compiled, cached and surrogate front ends, all over one fixed input.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class MusicBenchmarks {
+
+    private Map<String, Double> inputs;
+    private Map<String, LinguisticVariable> inputVariables;
+    private Map<String, LinguisticVariable> outputVariables;
+    private List<FuzzyRule> rules;
+
+    private LinguisticVariable heartRate;
+    private double[] memberships;
+    private Map<String, Map<String, Double>> fuzzified;
+    private FuzzyRule rule;
+    private final BinaryOperator and = new AndMin();
+    private final BinaryOperator or = new OrMax();
+    private final UnaryOperator not = new NotComplement();
+
+    private MamdaniInferenceEngine analyticEngine;
+    private MamdaniInferenceEngine adaptiveEngine;
+    private InferenceEngine sugenoEngine;
+    private Map<String, LinguisticVariable> sugenoInputs;
+    private Map<String, LinguisticVariable> sugenoOutputs;
+    private List<FuzzyRule> sugenoRules;
+
+    private FuzzySystem mamdani;
+    private FuzzySystem cached;
+    private CompiledFuzzySystem compiled;
+    private CompiledFuzzySystem.Workspace workspace;
+    private CompiledFuzzySystem metered;
+    private CompiledFuzzySystem.Workspace meteredWorkspace;
+    private CompiledFuzzySystem firstOrder;
+    private CompiledFuzzySystem.Workspace firstOrderWorkspace;
+    private LookupTableSurrogate surrogate;
+    private LookupTableSurrogate.Workspace surrogateWorkspace;
+    private double[] row;
+    private double[] out;
+
+    @Setup
+    public void setUp() {
+        inputs = Models.musicInputs();
+        mamdani = Models.music("mamdani");
+        inputVariables = mamdani.getInputVariables();
+        outputVariables = mamdani.getOutputVariables();
+        rules = mamdani.getRuleBase().getAllRules();
+
+        heartRate = inputVariables.get("heartRate");
+        memberships = new double[heartRate.getFuzzySets().size()];
+        fuzzified = new HashMap<>();
+        for (Map.Entry<String, Double> entry : inputs.entrySet()) {
+            fuzzified.put(entry.getKey(), inputVariables.get(entry.getKey()).fuzzify(entry.getValue()));
+        }
+        rule = rules.get(5);
+
+        analyticEngine = Models.centroidEngine(200);
+        analyticEngine.setAnalyticDefuzzification(new AnalyticDefuzzification(AnalyticDefuzzification.Method.CENTROID));
+        adaptiveEngine = Models.centroidEngine(200);
+        adaptiveEngine.setAdaptiveResolution(0.01);
+
+        FuzzySystem sugeno = Models.music("sugeno");
+        sugenoEngine = sugeno.getInferenceEngine();
+        sugenoInputs = sugeno.getInputVariables();
+        sugenoOutputs = sugeno.getOutputVariables();
+        sugenoRules = sugeno.getRuleBase().getAllRules();
+
+        cached = Models.music("mamdani");
+        cached.enableCache(1024, Map.of("heartRate", 0.5, "facialExpression", 0.1, "timeOfDay", 0.25));
+        compiled = mamdani.compile();
+        workspace = compiled.newWorkspace();
+        metered = mamdani.compile();
+        metered.setMetrics(new InferenceMetrics("benchmark"));
+        meteredWorkspace = metered.newWorkspace();
+        surrogate = LookupTableSurrogate.bake(compiled, new int[]{41, 41, 41});
+        surrogateWorkspace = surrogate.newWorkspace();
+        row = Models.row(compiled, inputs);
+        out = new double[compiled.getOutputCount()];
+
+        // first-order consequents on the compiled path: one fused pass, no output grid
+        FuzzySystem linear = Models.music("sugeno");
+        SugenoInferenceEngine linearEngine = (SugenoInferenceEngine) linear.getInferenceEngine();
+        for (String set : sugenoOutputs.get("musicMood").getFuzzySets().keySet()) {
+            double constant = linearEngine.getConsequentFunction("musicMood", set).getConstant();
+            linearEngine.setConsequentFunction("musicMood", set, SugenoInferenceEngine.PolynomialFunction.linear(
+                    constant, Map.of("heartRate", 0.05, "facialExpression", 0.5, "timeOfDay", -0.1)));
+        }
+        firstOrder = linear.compile();
+        firstOrderWorkspace = firstOrder.newWorkspace();
+    }
+
+    // grid inference at each output resolution
+    @State(Scope.Thread)
+    public static class Grid {
+        @Param({"50", "200", "1000"})
+        public int numSteps;
+
+        MamdaniInferenceEngine engine;
+
+        @Setup
+        public void setUp() {
+            engine = Models.centroidEngine(numSteps);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Double> fuzzifyHeartRate() {
+        return heartRate.fuzzify(82.0);
+    }
+
+    @Benchmark
+    public double[] fuzzifyIntoHeartRate() {
+        heartRate.fuzzifyInto(82.0, memberships);
+        return memberships;
+    }
+
+    @Benchmark
+    public double ruleStrength() {
+        return rule.evaluateStrength(fuzzified, and, or, not);
+    }
+
+    @Benchmark
+    public Double mamdaniInfer(Grid grid) {
+        return grid.engine.infer(inputs, inputVariables, outputVariables, rules).get("musicMood");
+    }
+
+    @Benchmark
+    public Double mamdaniInferAnalytic() {
+        return analyticEngine.infer(inputs, inputVariables, outputVariables, rules).get("musicMood");
+    }
+
+    @Benchmark
+    public Double mamdaniInferAdaptive() {
+        return adaptiveEngine.infer(inputs, inputVariables, outputVariables, rules).get("musicMood");
+    }
+
+    @Benchmark
+    public Double sugenoInfer() {
+        return sugenoEngine.infer(inputs, sugenoInputs, sugenoOutputs, sugenoRules).get("musicMood");
+    }
+
+    @Benchmark
+    public double sugenoFirstOrderCompiled() {
+        firstOrder.calculate(row, out, firstOrderWorkspace);
+        return out[0];
+    }
+
+    @Benchmark
+    public Double mamdaniCalculate() {
+        return mamdani.calculate(inputs).get("musicMood");
+    }
+
+    @Benchmark
+    public Double mamdaniCalculateCached() {
+        return cached.calculate(inputs).get("musicMood");
+    }
+
+    @Benchmark
+    public double mamdaniCompiled() {
+        compiled.calculate(row, out, workspace);
+        return out[0];
+    }
+
+    @Benchmark
+    public double mamdaniCompiledMetered() {
+        metered.calculate(row, out, meteredWorkspace);
+        return out[0];
+    }
+
+    @Benchmark
+    public double mamdaniSurrogate() {
+        surrogate.calculate(row, out, surrogateWorkspace);
+        return out[0];
+    }
+}
@@ -0,0 +1,67 @@
+package fuzzylogic.benchmarks;
+
+import fuzzylogic.core.CompiledFuzzySystem;
+import fuzzylogic.core.FuzzySystem;
+import fuzzylogic.io.ModelTextFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Scaling with rule count on grid-partitioned rule bases: interpreted, compiled and text parsing.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class SyntheticBenchmarks {
+
+    @Param({"10", "100", "10000"})
+    public int numRules;
+
+    private FuzzySystem system;
+    private Map<String, Double> inputs;
+    private CompiledFuzzySystem compiled;
+    private CompiledFuzzySystem.Workspace workspace;
+    private double[] row;
+    private double[] out;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        system = Models.synthetic(numRules);
+        inputs = Models.syntheticInputs(system);
+        compiled = system.compile();
+        workspace = compiled.newWorkspace();
+        row = Models.row(compiled, inputs);
+        out = new double[compiled.getOutputCount()];
+        text = ModelTextFormat.format(system);
+    }
+
+    @Benchmark
+    public Double calculate() {
+        return system.calculate(inputs).get("y");
+    }
+
+    @Benchmark
+    public double compiled() {
+        compiled.calculate(row, out, workspace);
+        return out[0];
+    }
+
+    @Benchmark
+    public int parseText() {
+        return ModelTextFormat.parse(text).getRuleBase().getSnapshot().size();
+    }
+}
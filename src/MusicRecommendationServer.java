@@ -0,0 +1,224 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fuzzylogic.core.CompiledFuzzySystem;
+import fuzzylogic.core.FuzzySystem;
+import fuzzylogic.streaming.SensorEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Multi-user HTTP front end for the recommender. Every request runs on its own virtual
+// thread against one shared compiled model; the model is never written, so each request
+// only needs its own workspace.
+//
+//   GET  /recommend?heartRate=72&facialExpression=6.5&timeOfDay=9
+//   POST /recommend/batch    body: one SensorEvent line per user, userId,timestamp,name=value,...
+//                            at most MAX_BATCH_SIZE lines and MAX_BATCH_BYTES bytes, else 413
+//   GET  /stats
+//
+// Missing inputs take the variable's midpoint, as in FuzzySystem. Answers are JSON with the mood
+// score, its category and the recommendation text; batch answers keep the request order.
+// Usage: java MusicRecommendationServer [port] [mamdani|sugeno]
+public class MusicRecommendationServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int MAX_BATCH_SIZE = 10_000;
+    public static final int MAX_BATCH_BYTES = 4 << 20;
+
+    private final CompiledFuzzySystem model;
+    private final String[] inputNames;
+    private final int moodOutput;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong recommendations = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public MusicRecommendationServer(FuzzySystem system, int port) throws IOException {
+        this.model = system.compile();
+        this.inputNames = model.getInputNames();
+        this.moodOutput = model.indexOfOutput("musicMood");
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/recommend", this::handle);
+        server.createContext("/stats", this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        boolean sugeno = args.length > 1 && args[1].equalsIgnoreCase("sugeno");
+        FuzzySystem system = sugeno
+                ? MusicRecommendationSystem.createSugenoSystem()
+                : MusicRecommendationSystem.createMamdaniSystem();
+
+        MusicRecommendationServer server = new MusicRecommendationServer(system, port);
+        server.start();
+        System.out.println("Serving " + (sugeno ? "Sugeno" : "Mamdani") + " recommendations on port " + server.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // stops accepting connections and lets exchanges in flight finish for up to a second
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            try {
+                if (path.equals("/recommend") && method.equals("GET")) {
+                    respond(exchange, 200, recommendOne(exchange.getRequestURI().getRawQuery()));
+                } else if (path.equals("/recommend/batch") && method.equals("POST")) {
+                    respond(exchange, 200, recommendBatch(readBatch(exchange)));
+                } else if (path.equals("/stats") && method.equals("GET")) {
+                    respond(exchange, 200, "{\"requests\":" + requests.get() + ",\"recommendations\":" + recommendations.get()
+                            + ",\"rejected\":" + rejected.get() + "}");
+                } else {
+                    rejected.incrementAndGet();
+                    respond(exchange, 404, error("No route for " + method + " " + path));
+                }
+            } catch (TooLargeException e) {
+                rejected.incrementAndGet();
+                respond(exchange, 413, error(e.getMessage()));
+            } catch (IllegalArgumentException e) {
+                rejected.incrementAndGet();
+                respond(exchange, 400, error(e.getMessage()));
+            } catch (RuntimeException e) {
+                rejected.incrementAndGet();
+                respond(exchange, 500, error("Internal error"));
+            }
+        }
+    }
+
+    private String recommendOne(String query) {
+        double[] inputs = new double[inputNames.length];
+        Arrays.fill(inputs, Double.NaN);
+        if (query != null && !query.isEmpty()) {
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                if (eq < 0) throw new IllegalArgumentException("Expected name=value, got " + param);
+                String name = URLDecoder.decode(param.substring(0, eq), StandardCharsets.UTF_8);
+                double value = Double.parseDouble(URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+                inputs[indexOfInput(name)] = value;
+            }
+        }
+
+        double[] outputs = new double[model.getOutputCount()];
+        model.calculate(inputs, outputs, model.newWorkspace());
+        recommendations.incrementAndGet();
+        return toJson(null, outputs[moodOutput]);
+    }
+
+    // reads one byte past the cap, so an oversized body is refused without buffering it all
+    private static String readBatch(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BATCH_BYTES + 1);
+        if (body.length > MAX_BATCH_BYTES) {
+            throw new TooLargeException("Batch larger than " + MAX_BATCH_BYTES + " bytes");
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private String recommendBatch(String body) {
+        List<SensorEvent> events = new ArrayList<>();
+        for (String line : body.split("\r?\n")) {
+            if (line.isBlank()) continue;
+            events.add(SensorEvent.parse(line));
+            if (events.size() > MAX_BATCH_SIZE) {
+                throw new TooLargeException("Batch larger than " + MAX_BATCH_SIZE + " requests");
+            }
+        }
+
+        int numInputs = inputNames.length;
+        int numOutputs = model.getOutputCount();
+        double[] inputRows = new double[events.size() * numInputs];
+        Arrays.fill(inputRows, Double.NaN);
+        for (int i = 0; i < events.size(); i++) {
+            for (Map.Entry<String, Double> entry : events.get(i).inputs().entrySet()) {
+                inputRows[i * numInputs + indexOfInput(entry.getKey())] = entry.getValue();
+            }
+        }
+        double[] outputRows = new double[events.size() * numOutputs];
+        model.calculateBatch(inputRows, outputRows, events.size());
+        recommendations.addAndGet(events.size());
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append(toJson(events.get(i).userId(), outputRows[i * numOutputs + moodOutput]));
+        }
+        return json.append(']').toString();
+    }
+
+    private int indexOfInput(String name) {
+        for (int v = 0; v < inputNames.length; v++) {
+            if (inputNames[v].equals(name)) return v;
+        }
+        throw new IllegalArgumentException("Unknown input variable: " + name);
+    }
+
+    private static String toJson(String userId, double mood) {
+        StringBuilder json = new StringBuilder("{");
+        if (userId != null) json.append("\"userId\":").append(quote(userId)).append(',');
+        return json.append("\"moodScore\":").append(mood)
+                .append(",\"category\":").append(quote(MusicRecommendationSystem.interpretMusicMood(mood)))
+                .append(",\"recommendation\":").append(quote(MusicRecommendationSystem.getMusicRecommendation(mood)))
+                .append('}').toString();
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(String.valueOf(message)) + "}";
+    }
+
+    private static String quote(String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class TooLargeException extends RuntimeException {
+        TooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    public int getPort() { return server.getAddress().getPort(); }
+    public long getRequestCount() { return requests.get(); }
+    public long getRecommendationCount() { return recommendations.get(); }
+}
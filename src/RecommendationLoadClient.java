@@ -0,0 +1,118 @@
+import fuzzylogic.metrics.LatencyHistogram;
+import fuzzylogic.metrics.StageLatency;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Closed-loop load generator for MusicRecommendationServer: a fixed number of virtual-thread
+// clients each send a request, wait for the answer and send the next, with random inputs.
+// The first WARMUP_SECONDS are not recorded. Reports requests/s, recommendations/s and the
+// latency distribution.
+// Usage: java RecommendationLoadClient [baseUrl] [concurrency] [seconds] [batchSize]
+//   batchSize 0 sends single GET /recommend requests, otherwise POST /recommend/batch
+public class RecommendationLoadClient {
+    private static final int WARMUP_SECONDS = 2;
+
+    private final String baseUrl;
+    private final int concurrency;
+    private final int batchSize;
+    private final HttpClient client;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean recording;
+
+    public RecommendationLoadClient(String baseUrl, int concurrency, int batchSize, ExecutorService executor) {
+        this.baseUrl = baseUrl;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+        this.client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:" + MusicRecommendationServer.DEFAULT_PORT;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            RecommendationLoadClient load = new RecommendationLoadClient(baseUrl, concurrency, batchSize, executor);
+            System.out.println(load.run(executor, seconds));
+        }
+    }
+
+    public String run(ExecutorService executor, int seconds) throws InterruptedException {
+        long warmupEnd = System.nanoTime() + WARMUP_SECONDS * 1_000_000_000L;
+        long end = warmupEnd + seconds * 1_000_000_000L;
+
+        List<Thread> clients = new ArrayList<>();
+        for (int c = 0; c < concurrency; c++) {
+            SplittableRandom random = new SplittableRandom(c);
+            clients.add(Thread.ofVirtual().start(() -> drive(random, end)));
+        }
+        Thread.sleep(Math.max(0, (warmupEnd - System.nanoTime()) / 1_000_000));
+        recording = true;
+        long start = System.nanoTime();
+        for (Thread client : clients) client.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long requests = completed.get();
+        int perRequest = Math.max(1, batchSize);
+        StageLatency summary = latency.summarize();
+        return String.format(Locale.ROOT,
+                "%d clients, %s, %.1fs: %d requests (%.1f req/s, %.1f recommendations/s), %d failed%n"
+                        + "latency p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+                concurrency, batchSize == 0 ? "single requests" : "batches of " + batchSize, elapsed,
+                requests, requests / elapsed, requests * perRequest / elapsed, failed.get(),
+                summary.getP50Nanos() / 1e6, summary.getP90Nanos() / 1e6, summary.getP99Nanos() / 1e6,
+                summary.getP999Nanos() / 1e6, summary.getMaxNanos() / 1e6);
+    }
+
+    private void drive(SplittableRandom random, long end) {
+        while (System.nanoTime() < end) {
+            HttpRequest request = batchSize == 0 ? single(random) : batch(random);
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                ok = client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode() == 200;
+            } catch (Exception e) {
+                ok = false;
+            }
+            long nanos = System.nanoTime() - start;
+            if (!recording) continue;
+            if (ok) {
+                latency.record(nanos);
+                completed.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    private HttpRequest single(SplittableRandom random) {
+        String query = String.format(Locale.ROOT, "heartRate=%.1f&facialExpression=%.1f&timeOfDay=%.2f",
+                random.nextDouble(50, 120), random.nextDouble(0, 10), random.nextDouble(0, 24));
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/recommend?" + query)).GET().build();
+    }
+
+    private HttpRequest batch(SplittableRandom random) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < batchSize; i++) {
+            body.append(String.format(Locale.ROOT, "user-%d,%d,heartRate=%.1f,facialExpression=%.1f,timeOfDay=%.2f%n",
+                    random.nextInt(1_000_000), System.currentTimeMillis(),
+                    random.nextDouble(50, 120), random.nextDouble(0, 10), random.nextDouble(0, 24)));
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/recommend/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build();
+    }
+}
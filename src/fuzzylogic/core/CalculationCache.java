@@ -0,0 +1,126 @@
+package fuzzylogic.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Bounded LRU cache of FuzzySystem results keyed on quantized inputs.
+// Each input is snapped to the nearest multiple of its tolerance and the system is evaluated
+// at the snapped point, so a cached answer is exactly the one a fresh call would give for it.
+// Entries belong to one model stamp (variables, engine, rule base version) and
+// are dropped as soon as the stamp changes.
+public final class CalculationCache {
+    private final int capacity;
+    private final Map<String, Double> tolerances;
+    private final LinkedHashMap<Key, InferenceResult> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private Object modelStamp;
+    private long ruleBaseStamp;
+
+    // inputs without a tolerance (or with tolerance 0) are matched exactly
+    public CalculationCache(int capacity, Map<String, Double> tolerances) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        for (Map.Entry<String, Double> entry : tolerances.entrySet()) {
+            if (!(entry.getValue() >= 0)) {
+                throw new IllegalArgumentException("Invalid tolerance for " + entry.getKey() + ": " + entry.getValue());
+            }
+        }
+        this.capacity = capacity;
+        this.tolerances = Collections.unmodifiableMap(new HashMap<>(tolerances));
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, InferenceResult> eldest) {
+                return size() > CalculationCache.this.capacity;
+            }
+        };
+    }
+
+    InferenceResult lookup(Object model, long ruleBaseVersion, Map<String, LinguisticVariable> inputVariables,
+                           Map<String, Double> crispInputs, Function<Map<String, Double>, InferenceResult> evaluator) {
+        // quantize in variable order; missing inputs take the midpoint like FuzzySystem does
+        long[] cells = new long[inputVariables.size()];
+        Map<String, Double> snapped = new HashMap<>();
+        int i = 0;
+        for (LinguisticVariable var : inputVariables.values()) {
+            Double value = crispInputs.get(var.getName());
+            double x = value != null ? value : (var.getMinValue() + var.getMaxValue()) / 2.0;
+            x = Math.max(var.getMinValue(), Math.min(var.getMaxValue(), x));
+
+            double tolerance = tolerances.getOrDefault(var.getName(), 0.0);
+            if (tolerance > 0) {
+                long cell = Math.round(x / tolerance);
+                cells[i] = cell;
+                x = Math.max(var.getMinValue(), Math.min(var.getMaxValue(), cell * tolerance));
+            } else {
+                cells[i] = Double.doubleToLongBits(x);
+            }
+            snapped.put(var.getName(), x);
+            i++;
+        }
+        Key key = new Key(cells);
+
+        synchronized (this) {
+            if (modelStamp != model || ruleBaseStamp != ruleBaseVersion) {
+                entries.clear();
+                modelStamp = model;
+                ruleBaseStamp = ruleBaseVersion;
+            }
+            InferenceResult cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        InferenceResult result = evaluator.apply(snapped);
+        synchronized (this) {
+            // the model may have changed while evaluating; never file a stale result
+            if (modelStamp == model && ruleBaseStamp == ruleBaseVersion) {
+                entries.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public long getHitCount() { return hits.get(); }
+    public long getMissCount() { return misses.get(); }
+    public synchronized int size() { return entries.size(); }
+    public int getCapacity() { return capacity; }
+    public Map<String, Double> getTolerances() { return tolerances; }
+
+    private static final class Key {
+        private final long[] cells;
+        private final int hash;
+
+        Key(long[] cells) {
+            this.cells = cells;
+            this.hash = Arrays.hashCode(cells);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && Arrays.equals(cells, other.cells);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+    }
+}
@@ -0,0 +1,978 @@
+package fuzzylogic.core;
+
+import fuzzylogic.defuzzification.AnalyticDefuzzification;
+import fuzzylogic.defuzzification.DefuzzificationMethod;
+import fuzzylogic.inference.AdaptiveResolution;
+import fuzzylogic.inference.InferenceEngine;
+import fuzzylogic.inference.MamdaniInferenceEngine;
+import fuzzylogic.inference.ParallelInferenceEngine;
+import fuzzylogic.inference.SugenoInferenceEngine;
+import fuzzylogic.membershipFunction.MembershipFunction;
+import fuzzylogic.membershipFunction.MembershipKernel;
+import fuzzylogic.metrics.InferenceMetrics;
+import fuzzylogic.operators.BinaryOperator;
+import fuzzylogic.operators.UnaryOperator;
+import fuzzylogic.operators.aggregation.AggregationOperator;
+import fuzzylogic.operators.implication.ImplicationOperator;
+import fuzzylogic.rules.FuzzyRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable, index-based snapshot of a FuzzySystem.
+// Variables, fuzzy sets and rule antecedents are resolved to integer slots once,
+// so evaluation runs over double[] without maps or boxing.
+public final class CompiledFuzzySystem {
+
+    public enum Mode { MAMDANI, SUGENO }
+
+    // rows per batch block, small enough for the block's columns to stay in cache
+    private static final int BATCH_BLOCK = 1024;
+
+    private final Mode mode;
+
+    // inputs: the sets of input variable v occupy membership slots [setOffset[v], setOffset[v + 1])
+    private final String[] inputNames;
+    private final double[] inputMin;
+    private final double[] inputMax;
+    private final int[] setOffset;
+    private final String[] setNames;
+    private final MembershipFunction[] inputSets;
+    private final MembershipKernel[] inputKernels;
+
+    // rules: the antecedents of rule r are [ruleStart[r], ruleStart[r + 1])
+    private final String[] ruleNames;
+    private final int[] ruleStart;
+    private final int[] antecedentSlot;
+    private final boolean[] antecedentAnd;
+    private final boolean[] antecedentNot;
+    private final double[] ruleWeight;
+    private final int[] ruleOutput;
+    private final double[][] ruleOutputSamples;
+    // samples of rule r's output set that can change the grid are [ruleFrom[r], ruleTo[r])
+    private final int[] ruleFrom;
+    private final int[] ruleTo;
+    private final MembershipFunction[] ruleOutputFunction;
+
+    // Sugeno consequents as a dense row-major matrix, one row of 1 + inputs * consequentDegree
+    // coefficients per rule: the constant, then a1..aD for each input in input order
+    private final int consequentDegree;
+    private final int consequentStride;
+    private final double[] ruleCoefficients;
+
+    // reverse maps in rule order: rules reading a membership slot, rules writing an output
+    private final int[][] slotRules;
+    private final int[][] outputRules;
+    // when firings are merged, output o's rules grouped by consequent set, else null
+    private final int[][][] outputSetRules;
+
+    // outputs
+    private final String[] outputNames;
+    private final double[] outputMin;
+    private final double[] outputMax;
+    private final boolean[] outputAnalytic;
+    // adaptive sample points per grid-defuzzified output, null where the uniform numSteps grid is used
+    private final double[][] outputGrid;
+
+    // operators
+    private final BinaryOperator andOperator;
+    private final BinaryOperator orOperator;
+    private final UnaryOperator notOperator;
+    private final ImplicationOperator implicationOperator;
+    private final AggregationOperator aggregationOperator;
+    private final DefuzzificationMethod defuzzificationMethod;
+    private final int numSteps;
+    private final AnalyticDefuzzification analyticDefuzzification;
+
+    // observation only: null unless metrics were attached, and never read by the arithmetic
+    private volatile InferenceMetrics metrics;
+
+    CompiledFuzzySystem(Map<String, LinguisticVariable> inputVariables,
+                        Map<String, LinguisticVariable> outputVariables,
+                        List<FuzzyRule> rules, InferenceEngine engine) {
+
+        // inputs
+        int numInputs = inputVariables.size();
+        inputNames = new String[numInputs];
+        inputMin = new double[numInputs];
+        inputMax = new double[numInputs];
+        setOffset = new int[numInputs + 1];
+        inputKernels = new MembershipKernel[numInputs];
+        List<String> slotNames = new ArrayList<>();
+        List<MembershipFunction> slotFunctions = new ArrayList<>();
+
+        int v = 0;
+        for (LinguisticVariable var : inputVariables.values()) {
+            inputNames[v] = var.getName();
+            inputMin[v] = var.getMinValue();
+            inputMax[v] = var.getMaxValue();
+            setOffset[v] = slotFunctions.size();
+            List<MembershipFunction> functions = new ArrayList<>();
+            for (FuzzySet set : var.getFuzzySets().values()) {
+                slotNames.add(set.getName());
+                functions.add(set.getMembershipFunction());
+            }
+            slotFunctions.addAll(functions);
+            inputKernels[v] = new MembershipKernel(functions);
+            v++;
+        }
+        setOffset[numInputs] = slotFunctions.size();
+        setNames = slotNames.toArray(new String[0]);
+        inputSets = slotFunctions.toArray(new MembershipFunction[0]);
+
+        // outputs
+        int numOutputs = outputVariables.size();
+        outputNames = new String[numOutputs];
+        outputMin = new double[numOutputs];
+        outputMax = new double[numOutputs];
+        int o = 0;
+        for (LinguisticVariable var : outputVariables.values()) {
+            outputNames[o] = var.getName();
+            outputMin[o] = var.getMinValue();
+            outputMax[o] = var.getMaxValue();
+            o++;
+        }
+
+        // operators
+        if (engine instanceof ParallelInferenceEngine parallel) {
+            engine = parallel.getDelegate();
+        }
+        if (engine instanceof MamdaniInferenceEngine mamdani) {
+            mode = Mode.MAMDANI;
+            andOperator = mamdani.getAndOperator();
+            orOperator = mamdani.getOrOperator();
+            notOperator = mamdani.getNotOperator();
+            implicationOperator = mamdani.getImplicationOperator();
+            aggregationOperator = mamdani.getAggregationOperator();
+            defuzzificationMethod = mamdani.getDefuzzificationMethod();
+            numSteps = mamdani.getResolution();
+            AnalyticDefuzzification analytic = mamdani.getAnalyticDefuzzification();
+            analyticDefuzzification = analytic != null && analytic.supports(implicationOperator, aggregationOperator)
+                    ? analytic : null;
+        } else if (engine instanceof SugenoInferenceEngine sugeno) {
+            mode = Mode.SUGENO;
+            andOperator = sugeno.getAndOperator();
+            orOperator = sugeno.getOrOperator();
+            notOperator = sugeno.getNotOperator();
+            implicationOperator = null;
+            aggregationOperator = null;
+            defuzzificationMethod = null;
+            numSteps = 0;
+            analyticDefuzzification = null;
+        } else {
+            throw new UnsupportedOperationException("Cannot compile inference engine: " + engine.getClass().getName());
+        }
+
+        outputAnalytic = new boolean[numOutputs];
+        outputGrid = new double[numOutputs][];
+        o = 0;
+        for (LinguisticVariable var : outputVariables.values()) {
+            outputAnalytic[o] = analyticDefuzzification != null && analyticDefuzzification.supports(var);
+            if (mode == Mode.MAMDANI && !outputAnalytic[o]) {
+                outputGrid[o] = ((MamdaniInferenceEngine) engine).getOutputGrid(var);
+            }
+            o++;
+        }
+
+        // rules (disabled and antecedent-less rules never fire, so they are dropped)
+        List<FuzzyRule> active = new ArrayList<>();
+        int numAntecedents = 0;
+        for (FuzzyRule rule : rules) {
+            if (rule.isEnabled() && !rule.getAntecedents().isEmpty()) {
+                active.add(rule);
+                numAntecedents += rule.getAntecedents().size();
+            }
+        }
+
+        int numRules = active.size();
+        ruleNames = new String[numRules];
+        ruleStart = new int[numRules + 1];
+        antecedentSlot = new int[numAntecedents];
+        antecedentAnd = new boolean[numAntecedents];
+        antecedentNot = new boolean[numAntecedents];
+        ruleWeight = new double[numRules];
+        ruleOutput = new int[numRules];
+        ruleOutputSamples = new double[numRules][];
+        ruleOutputFunction = new MembershipFunction[numRules];
+        Map<LinguisticVariable, Map<FuzzySet, double[]>> samplingTables = new IdentityHashMap<>();
+        int degree = 0;
+        if (mode == Mode.SUGENO) {
+            for (Map<String, SugenoInferenceEngine.PolynomialFunction> functions
+                    : ((SugenoInferenceEngine) engine).getConsequentFunctions().values()) {
+                for (SugenoInferenceEngine.PolynomialFunction function : functions.values()) {
+                    degree = Math.max(degree, function.getDegree());
+                }
+            }
+        }
+        consequentDegree = degree;
+        consequentStride = 1 + numInputs * degree;
+        ruleCoefficients = new double[mode == Mode.SUGENO ? numRules * consequentStride : 0];
+
+        int a = 0;
+        for (int r = 0; r < numRules; r++) {
+            FuzzyRule rule = active.get(r);
+            ruleNames[r] = rule.getName();
+            ruleStart[r] = a;
+            for (FuzzyRule.Antecedent ant : rule.getAntecedents()) {
+                antecedentSlot[a] = slotOf(ant.getVariable(), ant.getFuzzySet(), rule.getName());
+                antecedentAnd[a] = ant.isAnd();
+                antecedentNot[a] = ant.isNot();
+                a++;
+            }
+            ruleWeight[r] = rule.getWeight();
+            ruleOutput[r] = -1;
+
+            // unresolvable consequents are skipped at evaluation time, as in the engines
+            FuzzyRule.Consequent consequent = rule.getConsequent();
+            if (consequent == null) continue;
+            LinguisticVariable outputVar = outputVariables.get(consequent.getVariable());
+            if (outputVar == null) continue;
+
+            if (mode == Mode.MAMDANI) {
+                FuzzySet outputSet = outputVar.getFuzzySets().get(consequent.getFuzzySet());
+                if (outputSet == null) continue;
+                ruleOutputFunction[r] = outputSet.getMembershipFunction();
+                double[] grid = outputGrid[indexOfOutput(consequent.getVariable())];
+                ruleOutputSamples[r] = samplingTables.computeIfAbsent(outputVar, k -> new IdentityHashMap<>())
+                        .computeIfAbsent(outputSet, set -> grid != null
+                                ? AdaptiveResolution.sample(set, grid)
+                                : MamdaniInferenceEngine.sample(set, outputVar.getMinValue(), outputVar.getMaxValue(), numSteps));
+            } else {
+                SugenoInferenceEngine.PolynomialFunction function = ((SugenoInferenceEngine) engine)
+                        .getConsequentFunction(consequent.getVariable(), consequent.getFuzzySet());
+                int row = r * consequentStride;
+                ruleCoefficients[row] = function != null ? function.getConstant() : 0.5;
+                if (function != null) {
+                    function.checkInputs(rule.getName(), Arrays.asList(inputNames));
+                    for (Map.Entry<String, double[]> term : function.getCoefficients().entrySet()) {
+                        int input = Arrays.asList(inputNames).indexOf(term.getKey());
+                        System.arraycopy(term.getValue(), 0, ruleCoefficients, row + 1 + input * degree, term.getValue().length);
+                    }
+                }
+            }
+            ruleOutput[r] = indexOfOutput(consequent.getVariable());
+        }
+        ruleStart[numRules] = a;
+
+        ruleFrom = new int[numRules];
+        ruleTo = new int[numRules];
+        boolean sparse = mode == Mode.MAMDANI
+                && MamdaniInferenceEngine.clipsToSupport(implicationOperator, aggregationOperator);
+        for (int r = 0; r < numRules; r++) {
+            if (ruleOutputSamples[r] == null) continue;
+            int[] support = sparse ? MamdaniInferenceEngine.support(ruleOutputSamples[r]) : new int[]{0, ruleOutputSamples[r].length};
+            ruleFrom[r] = support[0];
+            ruleTo[r] = support[1];
+        }
+
+        List<List<Integer>> bySlot = new ArrayList<>();
+        for (int s = 0; s < inputSets.length; s++) bySlot.add(new ArrayList<>());
+        List<List<Integer>> byOutput = new ArrayList<>();
+        for (o = 0; o < numOutputs; o++) byOutput.add(new ArrayList<>());
+        for (int r = 0; r < numRules; r++) {
+            for (int i = ruleStart[r]; i < ruleStart[r + 1]; i++) {
+                List<Integer> readers = bySlot.get(antecedentSlot[i]);
+                if (readers.isEmpty() || readers.get(readers.size() - 1) != r) readers.add(r);
+            }
+            if (ruleOutput[r] >= 0) byOutput.get(ruleOutput[r]).add(r);
+        }
+        slotRules = toArrays(bySlot);
+        outputRules = toArrays(byOutput);
+
+        // rules sharing a sampling table share a consequent set
+        if (mode == Mode.MAMDANI && MamdaniInferenceEngine.mergesFirings(implicationOperator, aggregationOperator)) {
+            outputSetRules = new int[numOutputs][][];
+            for (o = 0; o < numOutputs; o++) {
+                Map<double[], List<Integer>> bySet = new IdentityHashMap<>();
+                List<List<Integer>> groups = new ArrayList<>();
+                for (int r : outputRules[o]) {
+                    bySet.computeIfAbsent(ruleOutputSamples[r], k -> {
+                        List<Integer> group = new ArrayList<>();
+                        groups.add(group);
+                        return group;
+                    }).add(r);
+                }
+                outputSetRules[o] = toArrays(groups);
+            }
+        } else {
+            outputSetRules = null;
+        }
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        int[][] arrays = new int[lists.size()][];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return arrays;
+    }
+
+    private int slotOf(String variable, String fuzzySet, String ruleName) {
+        int v = indexOfInput(variable);
+        if (v < 0) {
+            throw new IllegalArgumentException("Rule " + ruleName + " references unknown input variable: " + variable);
+        }
+        for (int s = setOffset[v]; s < setOffset[v + 1]; s++) {
+            if (setNames[s].equals(fuzzySet)) return s;
+        }
+        throw new IllegalArgumentException("Rule " + ruleName + " references unknown fuzzy set: " + variable + "." + fuzzySet);
+    }
+
+    public double[] calculate(double[] crispInputs) {
+        double[] crispOutputs = new double[outputNames.length];
+        calculate(crispInputs, crispOutputs);
+        return crispOutputs;
+    }
+
+    public void calculate(double[] crispInputs, double[] crispOutputs) {
+        calculate(crispInputs, crispOutputs, new Workspace());
+    }
+
+    // pipeline: fuzzify → infer → aggregate → defuzzify
+    // a NaN input is treated as missing and replaced by the variable's midpoint.
+    // The model itself is never written, so any number of threads may call this,
+    // each passing its own workspace.
+    public void calculate(double[] crispInputs, double[] crispOutputs, Workspace workspace) {
+        if (crispInputs.length != inputNames.length) {
+            throw new IllegalArgumentException("Expected " + inputNames.length + " inputs, got " + crispInputs.length);
+        }
+        if (workspace.owner != this) {
+            throw new IllegalArgumentException("Workspace belongs to another compiled system");
+        }
+
+        InferenceMetrics meter = metrics;
+        if (meter != null) {
+            calculateMetered(crispInputs, crispOutputs, workspace, meter);
+            return;
+        }
+
+        double[] memberships = workspace.memberships;
+        fuzzify(crispInputs, memberships);
+
+        double[] strengths = workspace.strengths;
+        for (int r = 0; r < ruleNames.length; r++) {
+            strengths[r] = ruleOutput[r] < 0 ? 0.0 : ruleStrength(r, memberships);
+        }
+
+        if (mode == Mode.MAMDANI) {
+            inferMamdani(strengths, crispOutputs, workspace);
+        } else {
+            inferSugeno(strengths, crispOutputs, workspace.inputs(crispInputs));
+        }
+    }
+
+    // calculate() with a timestamp between stages; same arithmetic in the same order
+    private void calculateMetered(double[] crispInputs, double[] crispOutputs, Workspace workspace, InferenceMetrics meter) {
+        long start = System.nanoTime();
+        double[] memberships = workspace.memberships;
+        fuzzify(crispInputs, memberships);
+        long fuzzified = System.nanoTime();
+
+        double[] strengths = workspace.strengths;
+        for (int r = 0; r < ruleNames.length; r++) {
+            strengths[r] = ruleOutput[r] < 0 ? 0.0 : ruleStrength(r, memberships);
+        }
+        long inferred = System.nanoTime();
+
+        long aggregated;
+        if (mode == Mode.MAMDANI) {
+            for (int o = 0; o < outputNames.length; o++) {
+                aggregateMamdani(o, strengths, workspace);
+            }
+            aggregated = System.nanoTime();
+            for (int o = 0; o < outputNames.length; o++) {
+                crispOutputs[o] = defuzzifyMamdani(o, workspace);
+            }
+        } else {
+            inferSugeno(strengths, crispOutputs, workspace.inputs(crispInputs));
+            aggregated = System.nanoTime();
+        }
+        long end = System.nanoTime();
+
+        meter.recordStage(InferenceMetrics.Stage.FUZZIFY, fuzzified - start);
+        meter.recordStage(InferenceMetrics.Stage.INFER, inferred - fuzzified);
+        meter.recordStage(InferenceMetrics.Stage.AGGREGATE, aggregated - inferred);
+        if (mode == Mode.MAMDANI) meter.recordStage(InferenceMetrics.Stage.DEFUZZIFY, end - aggregated);
+        meter.recordStage(InferenceMetrics.Stage.TOTAL, end - start);
+        long fired = 0;
+        for (double strength : strengths) {
+            if (strength > 0) fired++;
+        }
+        recordRules(meter, 1, fired);
+    }
+
+    // rules without a resolvable consequent are never evaluated and count as skipped
+    private void recordRules(InferenceMetrics meter, int samples, long fired) {
+        int active = 0;
+        for (int r = 0; r < ruleNames.length; r++) {
+            if (ruleOutput[r] >= 0) active++;
+        }
+        meter.recordRules((long) active * samples, fired, (long) (ruleNames.length - active) * samples);
+        meter.recordSamples(samples);
+    }
+
+    public Workspace newWorkspace() {
+        return new Workspace();
+    }
+
+    public Session newSession() {
+        return new Session();
+    }
+
+    // columnar batch: inputColumns[v][row] in, outputColumns[o][row] out
+    public void calculateBatch(double[][] inputColumns, double[][] outputColumns, int count) {
+        if (inputColumns.length != inputNames.length || outputColumns.length != outputNames.length) {
+            throw new IllegalArgumentException("Expected " + inputNames.length + " input and "
+                    + outputNames.length + " output columns");
+        }
+        if (count < 0) throw new IllegalArgumentException("Row count must not be negative");
+        for (double[][] columns : new double[][][]{inputColumns, outputColumns}) {
+            for (double[] column : columns) {
+                if (column.length < count) throw new IllegalArgumentException("Columns too short for " + count + " rows");
+            }
+        }
+
+        BatchBuffers buffers = new BatchBuffers(Math.min(count, BATCH_BLOCK));
+        for (int from = 0; from < count; from += BATCH_BLOCK) {
+            int n = Math.min(BATCH_BLOCK, count - from);
+            for (int v = 0; v < inputNames.length; v++) {
+                System.arraycopy(inputColumns[v], from, buffers.inputs[v], 0, n);
+            }
+            calculateBlock(buffers, n);
+            for (int o = 0; o < outputNames.length; o++) {
+                System.arraycopy(buffers.outputs[o], 0, outputColumns[o], from, n);
+            }
+        }
+    }
+
+    // row-major batch: inputRows[row * inputCount + v] in, outputRows[row * outputCount + o] out
+    public void calculateBatch(double[] inputRows, double[] outputRows, int count) {
+        int numInputs = inputNames.length;
+        int numOutputs = outputNames.length;
+        if (count < 0) throw new IllegalArgumentException("Row count must not be negative");
+        if (inputRows.length < (long) count * numInputs || outputRows.length < (long) count * numOutputs) {
+            throw new IllegalArgumentException("Row arrays too short for " + count + " rows");
+        }
+
+        BatchBuffers buffers = new BatchBuffers(Math.min(count, BATCH_BLOCK));
+        for (int from = 0; from < count; from += BATCH_BLOCK) {
+            int n = Math.min(BATCH_BLOCK, count - from);
+            for (int i = 0; i < n; i++) {
+                for (int v = 0; v < numInputs; v++) {
+                    buffers.inputs[v][i] = inputRows[(from + i) * numInputs + v];
+                }
+            }
+            calculateBlock(buffers, n);
+            for (int i = 0; i < n; i++) {
+                for (int o = 0; o < numOutputs; o++) {
+                    outputRows[(from + i) * numOutputs + o] = buffers.outputs[o][i];
+                }
+            }
+        }
+    }
+
+    // every stage runs as one loop per variable, set or rule over the whole block
+    private void calculateBlock(BatchBuffers buffers, int n) {
+        InferenceMetrics meter = metrics;
+        long start = meter != null ? System.nanoTime() : 0;
+
+        // fuzzification
+        for (int v = 0; v < inputNames.length; v++) {
+            double[] column = buffers.inputs[v];
+            double min = inputMin[v];
+            double max = inputMax[v];
+            double midpoint = (min + max) / 2.0;
+            for (int i = 0; i < n; i++) {
+                double value = column[i];
+                column[i] = Double.isNaN(value) ? midpoint : Math.max(min, Math.min(max, value));
+            }
+            for (int s = setOffset[v]; s < setOffset[v + 1]; s++) {
+                inputSets[s].evaluate(column, buffers.memberships[s], n);
+            }
+        }
+
+        long fuzzified = meter != null ? System.nanoTime() : 0;
+
+        // rule evaluation
+        for (int r = 0; r < ruleNames.length; r++) {
+            double[] strength = buffers.strengths[r];
+            if (ruleOutput[r] < 0) {
+                Arrays.fill(strength, 0, n, 0.0);
+                continue;
+            }
+
+            int a = ruleStart[r];
+            if (antecedentNot[a]) {
+                notOperator.apply(buffers.memberships[antecedentSlot[a]], strength, n);
+            } else {
+                System.arraycopy(buffers.memberships[antecedentSlot[a]], 0, strength, 0, n);
+            }
+
+            for (a++; a < ruleStart[r + 1]; a++) {
+                double[] values = buffers.memberships[antecedentSlot[a]];
+                if (antecedentNot[a]) {
+                    notOperator.apply(values, buffers.scratch, n);
+                    values = buffers.scratch;
+                }
+                (antecedentAnd[a] ? andOperator : orOperator).applyInPlace(strength, values, n);
+            }
+
+            double weight = ruleWeight[r];
+            for (int i = 0; i < n; i++) {
+                strength[i] *= weight;
+            }
+        }
+
+        long inferred = meter != null ? System.nanoTime() : 0;
+        long defuzzifyNanos = 0;
+
+        // aggregation and defuzzification
+        if (mode == Mode.MAMDANI) {
+            double[] rowStrengths = buffers.workspace.strengths;
+            double[] rowOutputs = new double[outputNames.length];
+            for (int i = 0; i < n; i++) {
+                for (int r = 0; r < ruleNames.length; r++) {
+                    rowStrengths[r] = buffers.strengths[r][i];
+                }
+                if (meter == null) {
+                    inferMamdani(rowStrengths, rowOutputs, buffers.workspace);
+                } else {
+                    for (int o = 0; o < outputNames.length; o++) {
+                        aggregateMamdani(o, rowStrengths, buffers.workspace);
+                    }
+                    long aggregated = System.nanoTime();
+                    for (int o = 0; o < outputNames.length; o++) {
+                        rowOutputs[o] = defuzzifyMamdani(o, buffers.workspace);
+                    }
+                    defuzzifyNanos += System.nanoTime() - aggregated;
+                }
+                for (int o = 0; o < outputNames.length; o++) {
+                    buffers.outputs[o][i] = rowOutputs[o];
+                }
+            }
+        } else {
+            inferSugenoBatch(buffers, n);
+        }
+
+        if (meter != null) {
+            long end = System.nanoTime();
+            meter.recordStage(InferenceMetrics.Stage.FUZZIFY, fuzzified - start, n);
+            meter.recordStage(InferenceMetrics.Stage.INFER, inferred - fuzzified, n);
+            meter.recordStage(InferenceMetrics.Stage.AGGREGATE, end - inferred - defuzzifyNanos, n);
+            if (mode == Mode.MAMDANI) meter.recordStage(InferenceMetrics.Stage.DEFUZZIFY, defuzzifyNanos, n);
+            meter.recordStage(InferenceMetrics.Stage.TOTAL, end - start, n);
+            long fired = 0;
+            for (int r = 0; r < ruleNames.length; r++) {
+                double[] strength = buffers.strengths[r];
+                for (int i = 0; i < n; i++) {
+                    if (strength[i] > 0) fired++;
+                }
+            }
+            recordRules(meter, n, fired);
+        }
+    }
+
+    // writes the membership of every input set into its slot
+    public void fuzzify(double[] crispInputs, double[] memberships) {
+        for (int v = 0; v < inputNames.length; v++) {
+            double value = crispInputs[v];
+            if (Double.isNaN(value)) {
+                value = (inputMin[v] + inputMax[v]) / 2.0;
+            }
+            value = Math.max(inputMin[v], Math.min(inputMax[v], value));
+            inputKernels[v].evaluate(value, memberships, setOffset[v]);
+        }
+    }
+
+    private double ruleStrength(int r, double[] memberships) {
+        int a = ruleStart[r];
+        double strength = memberships[antecedentSlot[a]];
+        if (antecedentNot[a]) {
+            strength = notOperator.apply(strength);
+        }
+
+        for (a++; a < ruleStart[r + 1]; a++) {
+            double value = memberships[antecedentSlot[a]];
+            if (antecedentNot[a]) {
+                value = notOperator.apply(value);
+            }
+
+            strength = antecedentAnd[a] ? andOperator.apply(strength, value) : orOperator.apply(strength, value);
+        }
+
+        return strength * ruleWeight[r];
+    }
+
+    private void inferMamdani(double[] strengths, double[] crispOutputs, Workspace workspace) {
+        for (int o = 0; o < outputNames.length; o++) {
+            crispOutputs[o] = inferMamdani(o, strengths, workspace);
+        }
+    }
+
+    private double inferMamdani(int o, double[] strengths, Workspace workspace) {
+        aggregateMamdani(o, strengths, workspace);
+        return defuzzifyMamdani(o, workspace);
+    }
+
+    // folds the implied sets of output o's rules into the workspace grid or fired-set list
+    private void aggregateMamdani(int o, double[] strengths, Workspace workspace) {
+        AnalyticDefuzzification.FiredSets fired = workspace.fired[o];
+        double[] grid = workspace.aggregated[o];
+        if (fired != null) {
+            fired.clear();
+        } else {
+            Arrays.fill(grid, 0.0);
+        }
+
+        if (fired == null && outputSetRules != null) {
+            // clip each consequent set once, at the strongest firing into it
+            for (int[] group : outputSetRules[o]) {
+                double strength = 0.0;
+                for (int r : group) {
+                    strength = Math.max(strength, strengths[r]);
+                }
+                if (strength > 0) clip(group[0], strength, grid);
+            }
+            return;
+        }
+
+        for (int r : outputRules[o]) {
+            double strength = strengths[r];
+            if (strength > 0) {
+                if (fired != null) {
+                    fired.add(ruleOutputFunction[r], strength);
+                    continue;
+                }
+                clip(r, strength, grid);
+            }
+        }
+    }
+
+    private void clip(int r, double strength, double[] grid) {
+        double[] samples = ruleOutputSamples[r];
+        for (int i = ruleFrom[r]; i < ruleTo[r]; i++) {
+            double implied = implicationOperator.apply(strength, samples[i]);
+            grid[i] = aggregationOperator.apply(grid[i], implied);
+        }
+    }
+
+    private double defuzzifyMamdani(int o, Workspace workspace) {
+        AnalyticDefuzzification.FiredSets fired = workspace.fired[o];
+        double[] grid = workspace.aggregated[o];
+        if (fired != null) {
+            return analyticDefuzzification.defuzzify(fired, implicationOperator, aggregationOperator, outputMin[o], outputMax[o]);
+        }
+        if (outputGrid[o] != null) {
+            return defuzzificationMethod.defuzzify(outputGrid[o], grid, grid.length);
+        }
+        return defuzzificationMethod.defuzzify(grid, outputMin[o], outputMax[o], numSteps);
+    }
+
+    // inputs are the clamped crisp inputs, only read for first- and higher-order consequents
+    private void inferSugeno(double[] strengths, double[] crispOutputs, double[] inputs) {
+        for (int o = 0; o < outputNames.length; o++) {
+            crispOutputs[o] = inferSugeno(o, strengths, inputs);
+        }
+    }
+
+    // consequents are evaluated in the same pass, and only for rules that fire
+    private double inferSugeno(int o, double[] strengths, double[] inputs) {
+        double numerator = 0.0;
+        double denominator = 0.0;
+        for (int r : outputRules[o]) {
+            double strength = strengths[r];
+            if (strength > 0) {
+                double consequent = consequentDegree == 0 ? ruleCoefficients[r] : consequent(r, inputs);
+                numerator += strength * consequent;
+                denominator += strength;
+            }
+        }
+        return denominator > 0 ? numerator / denominator : (outputMin[o] + outputMax[o]) / 2;
+    }
+
+    // same term order and Horner's rule as SugenoInferenceEngine.PolynomialFunction
+    private double consequent(int r, double[] inputs) {
+        int row = r * consequentStride;
+        double value = ruleCoefficients[row];
+        for (int v = 0; v < inputNames.length; v++) {
+            double x = inputs[v];
+            int at = row + 1 + v * consequentDegree;
+            double p = 0.0;
+            for (int k = consequentDegree - 1; k >= 0; k--) {
+                p = p * x + ruleCoefficients[at + k];
+            }
+            value += p * x;
+        }
+        return value;
+    }
+
+    // buffers.inputs already hold the clamped inputs of the block
+    private void inferSugenoBatch(BatchBuffers buffers, int n) {
+        for (int o = 0; o < outputNames.length; o++) {
+            Arrays.fill(buffers.numerators[o], 0, n, 0.0);
+            Arrays.fill(buffers.denominators[o], 0, n, 0.0);
+        }
+
+        // strengths are never negative, so non-firing rules add exact zeros
+        for (int r = 0; r < ruleNames.length; r++) {
+            int o = ruleOutput[r];
+            if (o < 0) continue;
+
+            double[] strength = buffers.strengths[r];
+            double[] numerator = buffers.numerators[o];
+            double[] denominator = buffers.denominators[o];
+            if (consequentDegree == 0) {
+                double constant = ruleCoefficients[r];
+                for (int i = 0; i < n; i++) {
+                    numerator[i] += strength[i] * constant;
+                    denominator[i] += strength[i];
+                }
+                continue;
+            }
+
+            // consequent column for the block, one input's terms at a time
+            int row = r * consequentStride;
+            double[] consequent = buffers.scratch;
+            Arrays.fill(consequent, 0, n, ruleCoefficients[row]);
+            for (int v = 0; v < inputNames.length; v++) {
+                double[] x = buffers.inputs[v];
+                int at = row + 1 + v * consequentDegree;
+                for (int i = 0; i < n; i++) {
+                    double p = 0.0;
+                    for (int k = consequentDegree - 1; k >= 0; k--) {
+                        p = p * x[i] + ruleCoefficients[at + k];
+                    }
+                    consequent[i] += p * x[i];
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                numerator[i] += strength[i] * consequent[i];
+                denominator[i] += strength[i];
+            }
+        }
+
+        for (int o = 0; o < outputNames.length; o++) {
+            double midpoint = (outputMin[o] + outputMax[o]) / 2;
+            double[] numerator = buffers.numerators[o];
+            double[] denominator = buffers.denominators[o];
+            double[] out = buffers.outputs[o];
+            for (int i = 0; i < n; i++) {
+                out[i] = denominator[i] > 0 ? numerator[i] / denominator[i] : midpoint;
+            }
+        }
+    }
+
+    public int indexOfInput(String name) {
+        for (int v = 0; v < inputNames.length; v++) {
+            if (inputNames[v].equals(name)) return v;
+        }
+        return -1;
+    }
+
+    public int indexOfOutput(String name) {
+        for (int o = 0; o < outputNames.length; o++) {
+            if (outputNames[o].equals(name)) return o;
+        }
+        return -1;
+    }
+
+    // attaches a sink for stage timings and rule counts, or detaches it when null; the
+    // incremental Session is not metered
+    public void setMetrics(InferenceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public InferenceMetrics getMetrics() { return metrics; }
+    public Mode getMode() { return mode; }
+    // highest power of any Sugeno consequent term: 0 for constants, 1 for linear consequents
+    public int getConsequentDegree() { return consequentDegree; }
+    public int getInputCount() { return inputNames.length; }
+    public int getOutputCount() { return outputNames.length; }
+    public int getRuleCount() { return ruleNames.length; }
+    public int getMembershipSlotCount() { return inputSets.length; }
+    public String[] getInputNames() { return Arrays.copyOf(inputNames, inputNames.length); }
+    public String[] getOutputNames() { return Arrays.copyOf(outputNames, outputNames.length); }
+    public double[] getInputMinValues() { return Arrays.copyOf(inputMin, inputMin.length); }
+    public double[] getInputMaxValues() { return Arrays.copyOf(inputMax, inputMax.length); }
+
+    // caller-owned scratch buffers for one evaluation at a time; not shared between threads
+    public final class Workspace {
+        private final CompiledFuzzySystem owner = CompiledFuzzySystem.this;
+        private final double[] memberships = new double[inputSets.length];
+        private final double[] strengths = new double[ruleNames.length];
+        private final double[] clamped = new double[inputNames.length];
+        private final double[][] aggregated = new double[outputNames.length][];
+        private final AnalyticDefuzzification.FiredSets[] fired = new AnalyticDefuzzification.FiredSets[outputNames.length];
+
+        private Workspace() {
+            if (mode == Mode.MAMDANI) {
+                for (int o = 0; o < outputNames.length; o++) {
+                    if (outputAnalytic[o]) {
+                        fired[o] = new AnalyticDefuzzification.FiredSets();
+                    } else {
+                        aggregated[o] = new double[outputGrid[o] != null ? outputGrid[o].length : numSteps];
+                    }
+                }
+            }
+        }
+
+        // crispInputs clamped as fuzzify() does, when the consequents read them
+        private double[] inputs(double[] crispInputs) {
+            if (consequentDegree == 0) return clamped;
+            for (int v = 0; v < inputNames.length; v++) {
+                double value = crispInputs[v];
+                if (Double.isNaN(value)) {
+                    value = (inputMin[v] + inputMax[v]) / 2.0;
+                }
+                clamped[v] = Math.max(inputMin[v], Math.min(inputMax[v], value));
+            }
+            return clamped;
+        }
+    }
+
+    // Stateful evaluation for a stream of related inputs, e.g. one user's ticks. It keeps the last
+    // memberships, rule strengths and outputs, and on update() recomputes only the sets of inputs
+    // whose value changed, the rules reading a set whose membership changed, and the outputs of
+    // rules whose strength changed. Results are identical to calculate(). Not thread-safe.
+    public final class Session {
+        private final double[] inputs = new double[inputNames.length];
+        private final double[] memberships = new double[inputSets.length];
+        private final double[] fresh = new double[inputSets.length];
+        private final double[] strengths = new double[ruleNames.length];
+        private final double[] outputs = new double[outputNames.length];
+        private final Workspace workspace = new Workspace();
+        private final int[] ruleStamp = new int[ruleNames.length];
+        private final int[] dirtyRules = new int[ruleNames.length];
+        private final boolean[] dirtyOutputs = new boolean[outputNames.length];
+        private int stamp;
+        private boolean primed;
+        private int lastRuleEvaluations;
+        private int lastOutputEvaluations;
+
+        private Session() {
+        }
+
+        public double[] update(double[] crispInputs) {
+            double[] crispOutputs = new double[outputNames.length];
+            update(crispInputs, crispOutputs);
+            return crispOutputs;
+        }
+
+        public void update(double[] crispInputs, double[] crispOutputs) {
+            if (crispInputs.length != inputNames.length) {
+                throw new IllegalArgumentException("Expected " + inputNames.length + " inputs, got " + crispInputs.length);
+            }
+            if (!primed) {
+                prime(crispInputs);
+                System.arraycopy(outputs, 0, crispOutputs, 0, outputs.length);
+                return;
+            }
+
+            // fuzzify changed inputs and collect the rules reading a changed membership
+            int numDirty = 0;
+            boolean inputsChanged = false;
+            stamp++;
+            for (int v = 0; v < inputNames.length; v++) {
+                double value = clamp(v, crispInputs[v]);
+                if (Double.compare(value, inputs[v]) == 0) continue;
+                inputs[v] = value;
+                inputsChanged = true;
+
+                inputKernels[v].evaluate(value, fresh, setOffset[v]);
+                for (int s = setOffset[v]; s < setOffset[v + 1]; s++) {
+                    double membership = fresh[s];
+                    if (Double.compare(membership, memberships[s]) == 0) continue;
+                    memberships[s] = membership;
+                    for (int r : slotRules[s]) {
+                        if (ruleStamp[r] != stamp) {
+                            ruleStamp[r] = stamp;
+                            dirtyRules[numDirty++] = r;
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < numDirty; i++) {
+                int r = dirtyRules[i];
+                if (ruleOutput[r] < 0) continue;
+                double strength = ruleStrength(r, memberships);
+                if (Double.compare(strength, strengths[r]) != 0) {
+                    strengths[r] = strength;
+                    dirtyOutputs[ruleOutput[r]] = true;
+                }
+            }
+            lastRuleEvaluations = numDirty;
+
+            // first- and higher-order consequents move with the inputs even where strengths stay put
+            if (inputsChanged && mode == Mode.SUGENO && consequentDegree > 0) {
+                Arrays.fill(dirtyOutputs, true);
+            }
+
+            lastOutputEvaluations = 0;
+            for (int o = 0; o < outputNames.length; o++) {
+                if (dirtyOutputs[o]) {
+                    dirtyOutputs[o] = false;
+                    outputs[o] = mode == Mode.MAMDANI ? inferMamdani(o, strengths, workspace) : inferSugeno(o, strengths, inputs);
+                    lastOutputEvaluations++;
+                }
+            }
+            System.arraycopy(outputs, 0, crispOutputs, 0, outputs.length);
+        }
+
+        private void prime(double[] crispInputs) {
+            for (int v = 0; v < inputNames.length; v++) {
+                inputs[v] = clamp(v, crispInputs[v]);
+            }
+            fuzzify(inputs, memberships);
+            for (int r = 0; r < ruleNames.length; r++) {
+                strengths[r] = ruleOutput[r] < 0 ? 0.0 : ruleStrength(r, memberships);
+            }
+            if (mode == Mode.MAMDANI) {
+                inferMamdani(strengths, outputs, workspace);
+            } else {
+                inferSugeno(strengths, outputs, inputs);
+            }
+            lastRuleEvaluations = ruleNames.length;
+            lastOutputEvaluations = outputNames.length;
+            primed = true;
+        }
+
+        private double clamp(int v, double value) {
+            if (Double.isNaN(value)) {
+                value = (inputMin[v] + inputMax[v]) / 2.0;
+            }
+            return Math.max(inputMin[v], Math.min(inputMax[v], value));
+        }
+
+        // forget all state; the next update evaluates everything
+        public void reset() { primed = false; }
+
+        public int getLastRuleEvaluations() { return lastRuleEvaluations; }
+        public int getLastOutputEvaluations() { return lastOutputEvaluations; }
+    }
+
+    // per-batch working columns, reused across blocks
+    private class BatchBuffers {
+        final double[][] inputs;
+        final double[][] memberships;
+        final double[][] strengths;
+        final double[][] numerators;
+        final double[][] denominators;
+        final double[][] outputs;
+        final double[] scratch;
+        final Workspace workspace = new Workspace();
+
+        BatchBuffers(int size) {
+            inputs = new double[inputNames.length][size];
+            memberships = new double[inputSets.length][size];
+            strengths = new double[ruleNames.length][size];
+            numerators = mode == Mode.SUGENO ? new double[outputNames.length][size] : null;
+            denominators = mode == Mode.SUGENO ? new double[outputNames.length][size] : null;
+            outputs = new double[outputNames.length][size];
+            scratch = new double[size];
+        }
+    }
+}
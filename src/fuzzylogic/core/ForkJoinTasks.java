@@ -0,0 +1,33 @@
+package fuzzylogic.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Runs independent pieces of work as fork/join tasks and waits for all of them. Called from a
+// pool worker they are forked in that pool, so nested parallel sections never block a worker;
+// otherwise they run on the given pool. Public only so the tuning package can share it.
+public final class ForkJoinTasks {
+    private ForkJoinTasks() {}
+
+    public static void invokeAll(ForkJoinPool pool, List<Runnable> bodies) {
+        List<RecursiveAction> tasks = new ArrayList<>(bodies.size());
+        for (Runnable body : bodies) tasks.add(task(body));
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(task(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+    }
+
+    private static RecursiveAction task(Runnable body) {
+        return new RecursiveAction() {
+            @Override
+            protected void compute() {
+                body.run();
+            }
+        };
+    }
+}
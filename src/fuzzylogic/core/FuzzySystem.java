@@ -1,75 +1,178 @@
 package fuzzylogic.core;
 
 import fuzzylogic.inference.InferenceEngine;
+import fuzzylogic.metrics.InferenceMetrics;
 import fuzzylogic.rules.FuzzyRule;
 import fuzzylogic.rules.RuleBase;
+import fuzzylogic.rules.RuleFileWatcher;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class FuzzySystem {
-    private final Map<String, LinguisticVariable> inputVariables;
-    private final Map<String, LinguisticVariable> outputVariables;
     private final RuleBase ruleBase;
-    private InferenceEngine inferenceEngine;
 
-    private Map<String, Map<String, Double>> lastFuzzifiedInputs;
-    private Map<String, Double> lastCrispOutputs;
+    // variables and engine are published together; evaluation reads one snapshot per call
+    private volatile Model model;
+
+    private volatile InferenceResult lastResult;
+
+    private volatile CalculationCache cache;
+
+    private volatile InferenceMetrics metrics;
 
     public FuzzySystem(InferenceEngine inferenceEngine) {
-        this.inputVariables = new LinkedHashMap<>();
-        this.outputVariables = new LinkedHashMap<>();
         this.ruleBase = new RuleBase();
-        this.inferenceEngine = inferenceEngine;
+        this.model = new Model(Collections.emptyMap(), Collections.emptyMap(), inferenceEngine);
     }
 
-    public void addInputVariable(LinguisticVariable variable) {
-        inputVariables.put(variable.getName(), variable);
+    public synchronized void addInputVariable(LinguisticVariable variable) {
+        Map<String, LinguisticVariable> inputs = new LinkedHashMap<>(model.inputVariables);
+        inputs.put(variable.getName(), variable);
+        model = new Model(Collections.unmodifiableMap(inputs), model.outputVariables, model.inferenceEngine);
     }
 
-    public void addOutputVariable(LinguisticVariable variable) {
-        outputVariables.put(variable.getName(), variable);
+    public synchronized void addOutputVariable(LinguisticVariable variable) {
+        Map<String, LinguisticVariable> outputs = new LinkedHashMap<>(model.outputVariables);
+        outputs.put(variable.getName(), variable);
+        model = new Model(model.inputVariables, Collections.unmodifiableMap(outputs), model.inferenceEngine);
     }
 
     public void addRule(FuzzyRule rule) {
         ruleBase.addRule(rule);
     }
 
-    public void setInferenceEngine(InferenceEngine engine) {
-        this.inferenceEngine = engine;
+    public synchronized void setInferenceEngine(InferenceEngine engine) {
+        model = new Model(model.inputVariables, model.outputVariables, engine);
     }
 
     // pipeline: fuzzify → infer → aggregate → defuzzify
-    public Map<String, Double> calculate(Map<String, Double> crispInputs) {
+    // reentrant: all per-call state lives in the returned result
+    public InferenceResult evaluate(Map<String, Double> crispInputs) {
+        return evaluate(model, ruleBase.getSnapshot(), crispInputs);
+    }
 
-        Map<String, Double> validatedInputs = validateAndClampInputs(crispInputs);
+    // the call works on one model and one rule snapshot throughout, whatever is swapped in meanwhile
+    private InferenceResult evaluate(Model m, RuleBase.Snapshot rules, Map<String, Double> crispInputs) {
+        InferenceMetrics meter = metrics;
+        long start = meter != null ? System.nanoTime() : 0;
+        Map<String, Double> validatedInputs = validateAndClampInputs(m, crispInputs);
 
         // Fuzzify inputs
-        lastFuzzifiedInputs = new HashMap<>();
+        Map<String, Map<String, Double>> fuzzifiedInputs = new HashMap<>();
         for (Map.Entry<String, Double> entry : validatedInputs.entrySet()) {
-            LinguisticVariable var = inputVariables.get(entry.getKey());
+            LinguisticVariable var = m.inputVariables.get(entry.getKey());
             if (var != null) {
-                lastFuzzifiedInputs.put(entry.getKey(), var.fuzzify(entry.getValue()));
+                fuzzifiedInputs.put(entry.getKey(), var.fuzzify(entry.getValue()));
             }
         }
 
         // Infer (rule evaluation, aggregation, and defuzzification)
-        lastCrispOutputs = inferenceEngine.infer(
-                validatedInputs,
-                inputVariables,
-                outputVariables,
-                ruleBase.getAllRules()
-        );
+        List<FuzzyRule> candidates = rules.getCandidateRules(validatedInputs, m.inputVariables, m.inferenceEngine.getAndOperator());
+        if (meter == null) {
+            Map<String, Double> crispOutputs = m.inferenceEngine.infer(validatedInputs, m.inputVariables, m.outputVariables, candidates);
+            return new InferenceResult(fuzzifiedInputs, crispOutputs);
+        }
+
+        Map<String, Double> crispOutputs = m.inferenceEngine.infer(validatedInputs, m.inputVariables, m.outputVariables, candidates, meter);
+        // rules the index ruled out count as skipped
+        meter.recordRules(0, 0, rules.size() - candidates.size());
+        meter.recordSamples(1);
+        meter.recordStage(InferenceMetrics.Stage.TOTAL, System.nanoTime() - start);
+        return new InferenceResult(fuzzifiedInputs, crispOutputs);
+    }
+
+    public Map<String, Double> calculate(Map<String, Double> crispInputs) {
+        CalculationCache c = cache;
+        InferenceResult result;
+        if (c != null) {
+            Model m = model;
+            RuleBase.Snapshot rules = ruleBase.getSnapshot();
+            result = c.lookup(m, rules.getVersion(), m.inputVariables, crispInputs,
+                    snapped -> evaluate(m, rules, snapped));
+        } else {
+            result = evaluate(crispInputs);
+        }
+        lastResult = result;
+        return new HashMap<>(result.getCrispOutputs());
+    }
+
+    // calculate() answers from a bounded cache of quantized inputs until disableCache();
+    // edits made directly on a FuzzyRule or on the engine's operators need cache.clear()
+    public void enableCache(int capacity, Map<String, Double> tolerances) {
+        cache = new CalculationCache(capacity, tolerances);
+    }
 
-        return new HashMap<>(lastCrispOutputs);
+    public void disableCache() {
+        cache = null;
     }
 
+    public CalculationCache getCache() { return cache; }
+
+    // records stage latencies and rule counts for every evaluation until disableMetrics();
+    // systems compiled while metrics are enabled record into the same instance
+    public void enableMetrics(InferenceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void disableMetrics() {
+        metrics = null;
+    }
 
-    private Map<String, Double> validateAndClampInputs(Map<String, Double> inputs) {
+    public InferenceMetrics getMetrics() { return metrics; }
+
+    // keeps the rule base in sync with a RuleTextFormat file; rules naming unknown
+    // variables or sets are rejected and the previous rules stay in place
+    public RuleFileWatcher watchRuleFile(Path file) throws IOException {
+        RuleFileWatcher watcher = new RuleFileWatcher(ruleBase, file, this::validateRules);
+        watcher.start();
+        return watcher;
+    }
+
+    private void validateRules(List<FuzzyRule> rules) {
+        Model m = model;
+        for (FuzzyRule rule : rules) {
+            for (FuzzyRule.Antecedent ant : rule.getAntecedents()) {
+                LinguisticVariable var = m.inputVariables.get(ant.getVariable());
+                if (var == null) {
+                    throw new IllegalArgumentException("Rule " + rule.getName() + " references unknown input variable: " + ant.getVariable());
+                }
+                if (!var.getFuzzySets().containsKey(ant.getFuzzySet())) {
+                    throw new IllegalArgumentException("Rule " + rule.getName() + " references unknown fuzzy set: "
+                            + ant.getVariable() + "." + ant.getFuzzySet());
+                }
+            }
+            FuzzyRule.Consequent consequent = rule.getConsequent();
+            if (consequent == null) continue;
+            LinguisticVariable output = m.outputVariables.get(consequent.getVariable());
+            if (output == null) {
+                throw new IllegalArgumentException("Rule " + rule.getName() + " references unknown output variable: " + consequent.getVariable());
+            }
+            if (!output.getFuzzySets().containsKey(consequent.getFuzzySet())) {
+                throw new IllegalArgumentException("Rule " + rule.getName() + " references unknown fuzzy set: "
+                        + consequent.getVariable() + "." + consequent.getFuzzySet());
+            }
+        }
+    }
+
+    // freezes the current variables, enabled rules and engine configuration into an index-based model
+    public CompiledFuzzySystem compile() {
+        Model m = model;
+        CompiledFuzzySystem compiled = new CompiledFuzzySystem(m.inputVariables, m.outputVariables,
+                ruleBase.getSnapshot().getRules(), m.inferenceEngine);
+        compiled.setMetrics(metrics);
+        return compiled;
+    }
+
+    private static Map<String, Double> validateAndClampInputs(Model m, Map<String, Double> inputs) {
         Map<String, Double> validated = new HashMap<>();
 
-        for (Map.Entry<String, LinguisticVariable> entry : inputVariables.entrySet()) {
+        for (Map.Entry<String, LinguisticVariable> entry : m.inputVariables.entrySet()) {
             String varName = entry.getKey();
             LinguisticVariable var = entry.getValue();
 
@@ -86,10 +189,27 @@ public class FuzzySystem {
         return validated;
     }
 
-    public Map<String, Map<String, Double>> getLastFuzzifiedInputs() { return lastFuzzifiedInputs != null ? new HashMap<>(lastFuzzifiedInputs) : null; }
-    public Map<String, Double> getLastCrispOutputs() { return lastCrispOutputs != null ? new HashMap<>(lastCrispOutputs) : null; }
-    public Map<String, LinguisticVariable> getInputVariables() { return new HashMap<>(inputVariables); }
-    public Map<String, LinguisticVariable> getOutputVariables() { return new HashMap<>(outputVariables); }
+    // last result of calculate() on any thread; concurrent callers should use evaluate() instead
+    @Deprecated
+    public Map<String, Map<String, Double>> getLastFuzzifiedInputs() {
+        InferenceResult result = lastResult;
+        return result != null ? new HashMap<>(result.getFuzzifiedInputs()) : null;
+    }
+
+    @Deprecated
+    public Map<String, Double> getLastCrispOutputs() {
+        InferenceResult result = lastResult;
+        return result != null ? new HashMap<>(result.getCrispOutputs()) : null;
+    }
+
+    // copies in declaration order
+    public Map<String, LinguisticVariable> getInputVariables() { return new LinkedHashMap<>(model.inputVariables); }
+    public Map<String, LinguisticVariable> getOutputVariables() { return new LinkedHashMap<>(model.outputVariables); }
     public RuleBase getRuleBase() { return ruleBase; }
-    public InferenceEngine getInferenceEngine() { return inferenceEngine; }
-}
\ No newline at end of file
+    public InferenceEngine getInferenceEngine() { return model.inferenceEngine; }
+
+    private record Model(Map<String, LinguisticVariable> inputVariables,
+                         Map<String, LinguisticVariable> outputVariables,
+                         InferenceEngine inferenceEngine) {
+    }
+}
@@ -0,0 +1,262 @@
+package fuzzylogic.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+// Cascade of FuzzySystems wired into a DAG by variable name: a stage input is fed by the
+// earlier stage output of the same name (or of the name given in its input sources), and
+// otherwise by an external input. A stage can only read stages added before it, so the graph
+// is acyclic by construction, and rule counts add up across stages instead of multiplying.
+//
+// Stages are compiled and grouped into levels, where every stage reads only lower levels.
+// Batches flow through the levels column by column, and the stages of one level run in
+// parallel once the batch has at least threshold rows. A stage whose rule base version moves
+// is recompiled on the next call; call refresh() after changing its variables or engine.
+public class HierarchicalFuzzySystem {
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final List<StageSpec> specs = new ArrayList<>();
+    private volatile Plan plan = new Plan(List.of());
+
+    public HierarchicalFuzzySystem() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    // batches shorter than threshold run every stage on the calling thread
+    public HierarchicalFuzzySystem(ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive");
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    public void addStage(String name, FuzzySystem system) {
+        addStage(name, system, Map.of());
+    }
+
+    // inputSources maps a stage input to the external input or earlier stage output feeding it
+    public synchronized void addStage(String name, FuzzySystem system, Map<String, String> inputSources) {
+        for (StageSpec spec : specs) {
+            if (spec.name.equals(name)) throw new IllegalArgumentException("Duplicate stage: " + name);
+        }
+        for (String input : inputSources.keySet()) {
+            if (!system.getInputVariables().containsKey(input)) {
+                throw new IllegalArgumentException("Stage " + name + " has no input variable: " + input);
+            }
+        }
+        // the plan is built first, so a stage that fails to wire leaves the system unchanged
+        StageSpec spec = new StageSpec(name, system, Map.copyOf(inputSources));
+        List<StageSpec> next = new ArrayList<>(specs);
+        next.add(spec);
+        plan = new Plan(next);
+        specs.add(spec);
+    }
+
+    // recompiles every stage from its system's current variables, rules and engine
+    public synchronized void refresh() {
+        plan = new Plan(specs);
+    }
+
+    private Plan currentPlan() {
+        Plan p = plan;
+        for (Stage stage : p.stages) {
+            if (stage.spec.system.getRuleBase().getVersion() != stage.ruleBaseVersion) {
+                synchronized (this) {
+                    if (plan == p) plan = new Plan(specs);
+                    return plan;
+                }
+            }
+        }
+        return p;
+    }
+
+    // missing external inputs take their variable's midpoint; the result holds every stage output
+    public Map<String, Double> calculate(Map<String, Double> crispInputs) {
+        Plan p = currentPlan();
+        double[] inputs = new double[p.inputNames.length];
+        for (int i = 0; i < inputs.length; i++) {
+            Double value = crispInputs.get(p.inputNames[i]);
+            inputs[i] = value != null ? value : Double.NaN;
+        }
+        double[] outputs = calculate(p, inputs);
+        Map<String, Double> crispOutputs = new LinkedHashMap<>();
+        for (int o = 0; o < outputs.length; o++) {
+            crispOutputs.put(p.outputNames[o], outputs[o]);
+        }
+        return crispOutputs;
+    }
+
+    // inputs in getInputNames() order, NaN for missing; outputs in getOutputNames() order
+    public double[] calculate(double[] crispInputs) {
+        return calculate(currentPlan(), crispInputs);
+    }
+
+    private static double[] calculate(Plan p, double[] crispInputs) {
+        if (crispInputs.length != p.inputNames.length) {
+            throw new IllegalArgumentException("Expected " + p.inputNames.length + " inputs, got " + crispInputs.length);
+        }
+        double[] signals = new double[p.signalCount];
+        System.arraycopy(crispInputs, 0, signals, 0, crispInputs.length);
+        for (Stage stage : p.stages) {
+            double[] in = new double[stage.inputSignals.length];
+            for (int v = 0; v < in.length; v++) in[v] = signals[stage.inputSignals[v]];
+            double[] out = stage.compiled.calculate(in);
+            for (int o = 0; o < out.length; o++) signals[stage.outputSignals[o]] = out[o];
+        }
+        return Arrays.copyOfRange(signals, crispInputs.length, p.signalCount);
+    }
+
+    // columnar batch: inputColumns[i][row] in getInputNames() order, outputColumns[o][row] out
+    public void calculateBatch(double[][] inputColumns, double[][] outputColumns, int count) {
+        Plan p = currentPlan();
+        if (inputColumns.length != p.inputNames.length || outputColumns.length != p.outputNames.length) {
+            throw new IllegalArgumentException("Expected " + p.inputNames.length + " input and "
+                    + p.outputNames.length + " output columns");
+        }
+
+        // stage outputs are written straight into the caller's output columns
+        double[][] signals = new double[p.signalCount][];
+        System.arraycopy(inputColumns, 0, signals, 0, inputColumns.length);
+        System.arraycopy(outputColumns, 0, signals, inputColumns.length, outputColumns.length);
+        for (Stage[] level : p.levels) {
+            if (level.length == 1 || count < threshold) {
+                for (Stage stage : level) stage.calculateBatch(signals, count);
+            } else {
+                List<Runnable> tasks = new ArrayList<>();
+                for (Stage stage : level) tasks.add(() -> stage.calculateBatch(signals, count));
+                ForkJoinTasks.invokeAll(pool, tasks);
+            }
+        }
+    }
+
+    public String[] getInputNames() { return currentPlan().inputNames.clone(); }
+    public String[] getOutputNames() { return currentPlan().outputNames.clone(); }
+    public int getStageCount() { return currentPlan().stages.length; }
+    public int getLevelCount() { return currentPlan().levels.length; }
+
+    public int getRuleCount() {
+        int rules = 0;
+        for (Stage stage : currentPlan().stages) rules += stage.compiled.getRuleCount();
+        return rules;
+    }
+
+    private record StageSpec(String name, FuzzySystem system, Map<String, String> inputSources) {
+    }
+
+    private static final class Stage {
+        final StageSpec spec;
+        final long ruleBaseVersion;
+        final CompiledFuzzySystem compiled;
+        final int[] inputSignals;
+        final int[] outputSignals;
+        final int level;
+
+        Stage(StageSpec spec, long ruleBaseVersion, CompiledFuzzySystem compiled, int[] inputSignals, int[] outputSignals, int level) {
+            this.spec = spec;
+            this.ruleBaseVersion = ruleBaseVersion;
+            this.compiled = compiled;
+            this.inputSignals = inputSignals;
+            this.outputSignals = outputSignals;
+            this.level = level;
+        }
+
+        void calculateBatch(double[][] signals, int count) {
+            double[][] in = new double[inputSignals.length][];
+            for (int v = 0; v < in.length; v++) in[v] = signals[inputSignals[v]];
+            double[][] out = new double[outputSignals.length][];
+            for (int o = 0; o < out.length; o++) out[o] = signals[outputSignals[o]];
+            compiled.calculateBatch(in, out, count);
+        }
+    }
+
+    // Signals are numbered external inputs first, then stage outputs in stage order, so the
+    // outputs of a calculation are the tail of the signal array.
+    private static final class Plan {
+        final Stage[] stages;
+        final Stage[][] levels;
+        final String[] inputNames;
+        final String[] outputNames;
+        final int signalCount;
+
+        Plan(List<StageSpec> specs) {
+            // wire by name first, numbering outputs locally and inputs as they appear
+            List<String> inputs = new ArrayList<>();
+            List<String> outputs = new ArrayList<>();
+            Map<String, Integer> outputIds = new LinkedHashMap<>();
+            List<int[]> stageInputs = new ArrayList<>();
+            List<CompiledFuzzySystem> compiled = new ArrayList<>();
+            List<Long> versions = new ArrayList<>();
+            for (StageSpec spec : specs) {
+                long version = spec.system.getRuleBase().getVersion();
+                CompiledFuzzySystem model = spec.system.compile();
+                int[] in = new int[model.getInputCount()];
+                String[] names = model.getInputNames();
+                for (int v = 0; v < in.length; v++) {
+                    String source = spec.inputSources.getOrDefault(names[v], names[v]);
+                    Integer output = outputIds.get(source);
+                    if (output != null) {
+                        in[v] = -1 - output;
+                    } else {
+                        int external = inputs.indexOf(source);
+                        if (external < 0) {
+                            external = inputs.size();
+                            inputs.add(source);
+                        }
+                        in[v] = external;
+                    }
+                }
+                for (String name : model.getOutputNames()) {
+                    if (outputIds.containsKey(name) || inputs.contains(name)) {
+                        throw new IllegalArgumentException("Stage " + spec.name + " output " + name
+                                + " is already " + (outputIds.containsKey(name) ? "an output" : "an external input"));
+                    }
+                    outputIds.put(name, outputs.size());
+                    outputs.add(name);
+                }
+                stageInputs.add(in);
+                compiled.add(model);
+                versions.add(version);
+            }
+
+            inputNames = inputs.toArray(new String[0]);
+            outputNames = outputs.toArray(new String[0]);
+            signalCount = inputNames.length + outputNames.length;
+
+            stages = new Stage[specs.size()];
+            int[] outputLevel = new int[outputNames.length];
+            int numLevels = 0;
+            int nextOutput = 0;
+            for (int s = 0; s < stages.length; s++) {
+                int[] in = stageInputs.get(s);
+                int level = 0;
+                for (int v = 0; v < in.length; v++) {
+                    if (in[v] < 0) {
+                        int output = -1 - in[v];
+                        level = Math.max(level, outputLevel[output] + 1);
+                        in[v] = inputNames.length + output;
+                    }
+                }
+                int[] out = new int[compiled.get(s).getOutputCount()];
+                for (int o = 0; o < out.length; o++) {
+                    outputLevel[nextOutput] = level;
+                    out[o] = inputNames.length + nextOutput++;
+                }
+                stages[s] = new Stage(specs.get(s), versions.get(s), compiled.get(s), in, out, level);
+                numLevels = Math.max(numLevels, level + 1);
+            }
+
+            levels = new Stage[numLevels][];
+            for (int l = 0; l < numLevels; l++) {
+                int level = l;
+                levels[l] = Arrays.stream(stages).filter(stage -> stage.level == level).toArray(Stage[]::new);
+            }
+        }
+    }
+}
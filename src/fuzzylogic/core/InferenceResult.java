@@ -0,0 +1,19 @@
+package fuzzylogic.core;
+
+import java.util.Collections;
+import java.util.Map;
+
+// Outcome of one FuzzySystem evaluation, owned by the caller rather than the system.
+public final class InferenceResult {
+    private final Map<String, Map<String, Double>> fuzzifiedInputs;
+    private final Map<String, Double> crispOutputs;
+
+    public InferenceResult(Map<String, Map<String, Double>> fuzzifiedInputs, Map<String, Double> crispOutputs) {
+        this.fuzzifiedInputs = Collections.unmodifiableMap(fuzzifiedInputs);
+        this.crispOutputs = Collections.unmodifiableMap(crispOutputs);
+    }
+
+    public Map<String, Map<String, Double>> getFuzzifiedInputs() { return fuzzifiedInputs; }
+    public Map<String, Double> getCrispOutputs() { return crispOutputs; }
+    public Double getCrispOutput(String outputVariable) { return crispOutputs.get(outputVariable); }
+}
@@ -1,37 +1,66 @@
 package fuzzylogic.core;
 
+import fuzzylogic.membershipFunction.MembershipFunction;
+import fuzzylogic.membershipFunction.MembershipKernel;
+
 import java.util.*;
 
 public class LinguisticVariable {
     private final String name;
     private final double minValue;
     private final double maxValue;
-    private final Map<String, FuzzySet> fuzzySets;
+    // replaced, never mutated, so fuzzify can run while sets are being added
+    private volatile Sets sets;
 
     public LinguisticVariable(String name, double minValue, double maxValue) {
         this.name = name;
         this.minValue = minValue;
         this.maxValue = maxValue;
-        this.fuzzySets = new LinkedHashMap<>();
+        this.sets = new Sets(Collections.emptyMap(), new MembershipKernel(List.of()));
     }
 
-    public void addFuzzySet(FuzzySet fuzzySet) {
-        fuzzySets.put(fuzzySet.getName(), fuzzySet);
+    public synchronized void addFuzzySet(FuzzySet fuzzySet) {
+        Map<String, FuzzySet> next = new LinkedHashMap<>(sets.byName);
+        next.put(fuzzySet.getName(), fuzzySet);
+        List<MembershipFunction> functions = new ArrayList<>();
+        for (FuzzySet set : next.values()) {
+            functions.add(set.getMembershipFunction());
+        }
+        sets = new Sets(Collections.unmodifiableMap(next), new MembershipKernel(functions));
     }
 
     public Map<String, Double> fuzzify(double crispValue) {
-        double clampedValue = Math.max(minValue, Math.min(maxValue, crispValue));
+        Sets s = sets;
+        double[] memberships = new double[s.kernel.size()];
+        s.kernel.evaluate(clamp(crispValue), memberships, 0);
+
         Map<String, Double> result = new HashMap<>();
+        int i = 0;
+        for (String setName : s.byName.keySet()) {
+            result.put(setName, memberships[i++]);
+        }
+        return result;
+    }
 
-        for (Map.Entry<String, FuzzySet> entry : fuzzySets.entrySet()) {
-            result.put(entry.getKey(), entry.getValue().getMembership(clampedValue));
+    // memberships of the clamped value in getFuzzySets() order, without allocating
+    public void fuzzifyInto(double crispValue, double[] out) {
+        MembershipKernel kernel = sets.kernel;
+        if (out.length < kernel.size()) {
+            throw new IllegalArgumentException("Expected room for " + kernel.size() + " memberships, got " + out.length);
         }
+        kernel.evaluate(clamp(crispValue), out, 0);
+    }
 
-        return result;
+    private double clamp(double crispValue) {
+        return Math.max(minValue, Math.min(maxValue, crispValue));
     }
 
     public String getName() { return name; }
     public double getMinValue() { return minValue; }
     public double getMaxValue() { return maxValue; }
-    public Map<String, FuzzySet> getFuzzySets() { return fuzzySets; }
-}
\ No newline at end of file
+    public Map<String, FuzzySet> getFuzzySets() { return sets.byName; }
+    public MembershipKernel getMembershipKernel() { return sets.kernel; }
+
+    private record Sets(Map<String, FuzzySet> byName, MembershipKernel kernel) {
+    }
+}
@@ -0,0 +1,179 @@
+package fuzzylogic.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Dense N-dimensional table of crisp outputs baked from a FuzzySystem and answered by
+// multilinear interpolation. Meant for low-dimensional models, where a table lookup
+// replaces a full inference; the table grows as the product of the points per input.
+public final class LookupTableSurrogate {
+    public static final int DEFAULT_VALIDATION_SAMPLES = 10_000;
+
+    private final String[] inputNames;
+    private final String[] outputNames;
+    private final double[] inputMin;
+    private final double[] inputMax;
+    private final int[] points;
+    private final int[] strides;
+    private final double[] table;
+    private final double[] maxError;
+
+    private LookupTableSurrogate(CompiledFuzzySystem exact, int[] points, double[] inputMin, double[] inputMax) {
+        this.inputNames = exact.getInputNames();
+        this.outputNames = exact.getOutputNames();
+        this.inputMin = inputMin;
+        this.inputMax = inputMax;
+        this.points = points;
+
+        int numInputs = inputNames.length;
+        int numOutputs = outputNames.length;
+        strides = new int[numInputs];
+        long cells = 1;
+        for (int v = numInputs - 1; v >= 0; v--) {
+            strides[v] = (int) cells;
+            cells *= points[v];
+            if (cells * Math.max(numInputs, numOutputs) > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Lookup table too large: " + Arrays.toString(points));
+            }
+        }
+
+        // evaluate every grid node in one batch, outputs interleaved per node
+        int numNodes = (int) cells;
+        double[] nodes = new double[numNodes * numInputs];
+        for (int n = 0; n < numNodes; n++) {
+            for (int v = 0; v < numInputs; v++) {
+                int i = (n / strides[v]) % points[v];
+                nodes[n * numInputs + v] = gridValue(v, i);
+            }
+        }
+        table = new double[numNodes * numOutputs];
+        exact.calculateBatch(nodes, table, numNodes);
+
+        maxError = measureMaxError(exact, DEFAULT_VALIDATION_SAMPLES, 1L);
+    }
+
+    public static LookupTableSurrogate bake(FuzzySystem system, int pointsPerInput) {
+        CompiledFuzzySystem exact = system.compile();
+        int[] points = new int[exact.getInputCount()];
+        Arrays.fill(points, pointsPerInput);
+        return bake(exact, points);
+    }
+
+    // points[v] grid nodes along input v, spanning the variable's full range
+    public static LookupTableSurrogate bake(CompiledFuzzySystem exact, int[] points) {
+        if (points.length != exact.getInputCount()) {
+            throw new IllegalArgumentException("Expected " + exact.getInputCount() + " resolutions, got " + points.length);
+        }
+        for (int p : points) {
+            if (p < 2) throw new IllegalArgumentException("Each input needs at least 2 grid points");
+        }
+        return new LookupTableSurrogate(exact, points.clone(), exact.getInputMinValues(), exact.getInputMaxValues());
+    }
+
+    private double gridValue(int v, int i) {
+        return inputMin[v] + (inputMax[v] - inputMin[v]) * i / (points[v] - 1);
+    }
+
+    public double[] calculate(double[] crispInputs) {
+        double[] crispOutputs = new double[outputNames.length];
+        calculate(crispInputs, crispOutputs);
+        return crispOutputs;
+    }
+
+    // inputs are clamped like the exact model; a NaN input means the variable's midpoint
+    public void calculate(double[] crispInputs, double[] crispOutputs) {
+        calculate(crispInputs, crispOutputs, new Workspace());
+    }
+
+    // the table is never written, so any number of threads may call this, each with its own workspace
+    public void calculate(double[] crispInputs, double[] crispOutputs, Workspace workspace) {
+        int numInputs = inputNames.length;
+        int numOutputs = outputNames.length;
+        if (crispInputs.length != numInputs) {
+            throw new IllegalArgumentException("Expected " + numInputs + " inputs, got " + crispInputs.length);
+        }
+
+        // base node and fractional offset along each axis
+        if (workspace.owner != this) {
+            throw new IllegalArgumentException("Workspace belongs to a different surrogate");
+        }
+        int base = 0;
+        double[] fraction = workspace.fraction;
+        for (int v = 0; v < numInputs; v++) {
+            double x = crispInputs[v];
+            if (Double.isNaN(x)) x = (inputMin[v] + inputMax[v]) / 2.0;
+            double range = inputMax[v] - inputMin[v];
+            double position = range > 0
+                    ? (Math.max(inputMin[v], Math.min(inputMax[v], x)) - inputMin[v]) / range * (points[v] - 1)
+                    : 0.0;
+            int cell = Math.min((int) position, points[v] - 2);
+            fraction[v] = position - cell;
+            base += cell * strides[v];
+        }
+
+        Arrays.fill(crispOutputs, 0, numOutputs, 0.0);
+        for (int corner = 0; corner < (1 << numInputs); corner++) {
+            double weight = 1.0;
+            int node = base;
+            for (int v = 0; v < numInputs; v++) {
+                if ((corner & (1 << v)) != 0) {
+                    weight *= fraction[v];
+                    node += strides[v];
+                } else {
+                    weight *= 1.0 - fraction[v];
+                }
+            }
+            if (weight == 0.0) continue;
+            for (int o = 0; o < numOutputs; o++) {
+                crispOutputs[o] += weight * table[node * numOutputs + o];
+            }
+        }
+    }
+
+    // largest absolute difference per output against the exact model over uniform random inputs
+    public double[] measureMaxError(CompiledFuzzySystem exact, int samples, long seed) {
+        int numInputs = inputNames.length;
+        int numOutputs = outputNames.length;
+        Random random = new Random(seed);
+        double[] inputs = new double[samples * numInputs];
+        for (int i = 0; i < inputs.length; i++) {
+            int v = i % numInputs;
+            inputs[i] = inputMin[v] + random.nextDouble() * (inputMax[v] - inputMin[v]);
+        }
+        double[] expected = new double[samples * numOutputs];
+        exact.calculateBatch(inputs, expected, samples);
+
+        double[] errors = new double[numOutputs];
+        double[] row = new double[numInputs];
+        double[] approx = new double[numOutputs];
+        Workspace workspace = new Workspace();
+        for (int s = 0; s < samples; s++) {
+            System.arraycopy(inputs, s * numInputs, row, 0, numInputs);
+            calculate(row, approx, workspace);
+            for (int o = 0; o < numOutputs; o++) {
+                errors[o] = Math.max(errors[o], Math.abs(approx[o] - expected[s * numOutputs + o]));
+            }
+        }
+        return errors;
+    }
+
+    public Workspace newWorkspace() {
+        return new Workspace();
+    }
+
+    // error measured when the table was baked
+    public double[] getMaxError() { return maxError.clone(); }
+    public int getTableSize() { return table.length; }
+    public int[] getPoints() { return points.clone(); }
+    public String[] getInputNames() { return inputNames.clone(); }
+    public String[] getOutputNames() { return outputNames.clone(); }
+
+    // caller-owned interpolation weights for one lookup at a time; not shared between threads
+    public final class Workspace {
+        private final LookupTableSurrogate owner = LookupTableSurrogate.this;
+        private final double[] fraction = new double[inputNames.length];
+
+        private Workspace() {
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package fuzzylogic.core;
+
+import fuzzylogic.inference.InferenceEngine;
+import fuzzylogic.inference.MamdaniInferenceEngine;
+import fuzzylogic.inference.ParallelInferenceEngine;
+import fuzzylogic.operators.AndMin;
+import fuzzylogic.operators.OrMax;
+import fuzzylogic.rules.FuzzyRule;
+import fuzzylogic.rules.RuleBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Offline rule-base compression that never changes a system's outputs.
+//
+// Disabled and zero-weight rules are always dropped, as no engine lets them contribute. The
+// structural steps need a Mamdani engine where rules firing one set may be merged (min or
+// product implication, max aggregation) with min AND and max OR, over pure-AND rules:
+//   duplicates  same antecedents and consequent: keep the largest weight
+//   subsumed    a rule whose antecedents include another's, with the same consequent and no
+//               larger weight, never fires stronger than it
+//   merged      rules equal but for one antecedent's set, with the same consequent and weight,
+//               become one rule OR-ing those sets (min distributes over max)
+// The result is checked against the original on a grid over the inputs before it is returned.
+// Merged rules contain OR, so the rule index always visits them.
+public final class RuleBaseCompressor {
+    public static final int DEFAULT_GRID_POINTS = 11;
+    public static final double DEFAULT_TOLERANCE = 1e-9;
+    private static final int MAX_SUBSET_ANTECEDENTS = 12;
+
+    private RuleBaseCompressor() {
+    }
+
+    public static Result compress(FuzzySystem system) {
+        return compress(system, DEFAULT_GRID_POINTS, DEFAULT_TOLERANCE);
+    }
+
+    // throws IllegalStateException if any output moves by more than tolerance on the grid
+    public static Result compress(FuzzySystem system, int pointsPerInput, double tolerance) {
+        if (pointsPerInput < 2) throw new IllegalArgumentException("Each input needs at least 2 grid points");
+        // one view of the system throughout, so the verification compares against what was compressed
+        RuleBase.Snapshot snapshot = system.getRuleBase().getSnapshot();
+        List<FuzzyRule> rules = snapshot.getRules();
+        Map<String, LinguisticVariable> inputs = system.getInputVariables();
+        Map<String, LinguisticVariable> outputs = system.getOutputVariables();
+        InferenceEngine systemEngine = system.getInferenceEngine();
+
+        List<FuzzyRule> kept = new ArrayList<>();
+        for (FuzzyRule rule : rules) {
+            if (rule.isEnabled() && rule.getWeight() > 0) kept.add(rule);
+        }
+        int dropped = rules.size() - kept.size();
+
+        int duplicates = 0, subsumed = 0, merged = 0;
+        InferenceEngine engine = systemEngine;
+        if (engine instanceof ParallelInferenceEngine parallel) {
+            engine = parallel.getDelegate();
+        }
+        if (engine instanceof MamdaniInferenceEngine mamdani
+                && MamdaniInferenceEngine.mergesFirings(mamdani.getImplicationOperator(), mamdani.getAggregationOperator())
+                && mamdani.getAndOperator() instanceof AndMin && mamdani.getOrOperator() instanceof OrMax) {
+            int before = kept.size();
+            kept = removeDuplicates(kept);
+            duplicates = before - kept.size();
+
+            before = kept.size();
+            kept = removeSubsumed(kept);
+            subsumed = before - kept.size();
+
+            before = kept.size();
+            for (String variable : inputs.keySet()) {
+                kept = mergeAlternatives(kept, variable);
+            }
+            merged = before - kept.size();
+        }
+
+        double deviation = maxDeviation(new CompiledFuzzySystem(inputs, outputs, rules, systemEngine),
+                new CompiledFuzzySystem(inputs, outputs, kept, systemEngine), pointsPerInput);
+        if (!(deviation <= tolerance)) {
+            throw new IllegalStateException("Compressed rule base deviates by " + deviation + " (tolerance " + tolerance + ")");
+        }
+        return new Result(system, snapshot.getVersion(), rules.size(), List.copyOf(kept),
+                dropped, duplicates, subsumed, merged, deviation);
+    }
+
+    // distinct literals of a pure-AND rule, sorted so equal sets compare equal (min(a, a) = a);
+    // null for any other rule
+    private static String[] literals(FuzzyRule rule) {
+        List<FuzzyRule.Antecedent> antecedents = rule.getAntecedents();
+        if (antecedents.isEmpty() || rule.getConsequent() == null) return null;
+        String[] literals = new String[antecedents.size()];
+        for (int i = 0; i < literals.length; i++) {
+            FuzzyRule.Antecedent ant = antecedents.get(i);
+            if (i > 0 && !ant.isAnd()) return null;
+            literals[i] = literal(ant);
+        }
+        Arrays.sort(literals);
+        int n = 0;
+        for (int i = 0; i < literals.length; i++) {
+            if (i == 0 || !literals[i].equals(literals[n - 1])) literals[n++] = literals[i];
+        }
+        return n == literals.length ? literals : Arrays.copyOf(literals, n);
+    }
+
+    private static String literal(FuzzyRule.Antecedent ant) {
+        return ant.getVariable() + '\0' + ant.getFuzzySet() + (ant.isNot() ? "\0!" : "");
+    }
+
+    private static String consequentKey(FuzzyRule rule) {
+        return rule.getConsequent().getVariable() + '\0' + rule.getConsequent().getFuzzySet();
+    }
+
+    private static String key(String consequent, String[] literals, int from, int to) {
+        StringBuilder sb = new StringBuilder(consequent);
+        for (int i = from; i < to; i++) sb.append('\1').append(literals[i]);
+        return sb.toString();
+    }
+
+    // the heaviest of each group of equal rules takes the group's first position
+    private static List<FuzzyRule> removeDuplicates(List<FuzzyRule> rules) {
+        List<FuzzyRule> kept = new ArrayList<>();
+        Map<String, Integer> positions = new HashMap<>();
+        for (FuzzyRule rule : rules) {
+            String[] literals = literals(rule);
+            if (literals == null) {
+                kept.add(rule);
+                continue;
+            }
+            String key = key(consequentKey(rule), literals, 0, literals.length);
+            Integer at = positions.get(key);
+            if (at == null) {
+                positions.put(key, kept.size());
+                kept.add(rule);
+            } else if (rule.getWeight() > kept.get(at).getWeight()) {
+                kept.set(at, rule);
+            }
+        }
+        return kept;
+    }
+
+    private static List<FuzzyRule> removeSubsumed(List<FuzzyRule> rules) {
+        Map<String, Double> weights = new HashMap<>();
+        for (FuzzyRule rule : rules) {
+            String[] literals = literals(rule);
+            if (literals != null) {
+                weights.merge(key(consequentKey(rule), literals, 0, literals.length), rule.getWeight(), Math::max);
+            }
+        }
+
+        List<FuzzyRule> kept = new ArrayList<>();
+        for (FuzzyRule rule : rules) {
+            String[] literals = literals(rule);
+            if (literals == null || !isSubsumed(consequentKey(rule), literals, rule.getWeight(), weights)) {
+                kept.add(rule);
+            }
+        }
+        return kept;
+    }
+
+    // looks up every proper, non-empty subset of the rule's literals
+    private static boolean isSubsumed(String consequent, String[] literals, double weight, Map<String, Double> weights) {
+        int n = literals.length;
+        if (n < 2 || n > MAX_SUBSET_ANTECEDENTS) return false;
+        String[] subset = new String[n];
+        for (int mask = 1; mask < (1 << n) - 1; mask++) {
+            int size = 0;
+            for (int i = 0; i < n; i++) {
+                if ((mask & (1 << i)) != 0) subset[size++] = literals[i];
+            }
+            Double other = weights.get(key(consequent, subset, 0, size));
+            if (other != null && other >= weight) return true;
+        }
+        return false;
+    }
+
+    // rules with one plain literal on variable, equal in everything else, become one OR rule
+    private static List<FuzzyRule> mergeAlternatives(List<FuzzyRule> rules, String variable) {
+        Map<String, List<FuzzyRule>> groups = new LinkedHashMap<>();
+        List<Object> order = new ArrayList<>();
+        for (FuzzyRule rule : rules) {
+            String[] literals = literals(rule);
+            int on = -1;
+            if (literals != null) {
+                for (int i = 0; i < rule.getAntecedents().size(); i++) {
+                    if (rule.getAntecedents().get(i).getVariable().equals(variable)) {
+                        on = on < 0 ? i : -2;
+                    }
+                }
+            }
+            if (on < 0) {
+                order.add(rule);
+                continue;
+            }
+            // the variable's literal is the only one on it, so the rest is every other literal
+            String own = literal(rule.getAntecedents().get(on));
+            String[] rest = new String[literals.length - 1];
+            int n = 0;
+            for (String literal : literals) {
+                if (!literal.equals(own)) rest[n++] = literal;
+            }
+            String key = key(consequentKey(rule) + '\2' + Double.doubleToLongBits(rule.getWeight()), rest, 0, n);
+            List<FuzzyRule> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+                order.add(group);
+            }
+            group.add(rule);
+        }
+
+        List<FuzzyRule> merged = new ArrayList<>();
+        for (Object item : order) {
+            if (item instanceof FuzzyRule rule) {
+                merged.add(rule);
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            List<FuzzyRule> group = (List<FuzzyRule>) item;
+            merged.add(group.size() == 1 ? group.get(0) : orOf(group, variable));
+        }
+        return merged;
+    }
+
+    // (v IS a1 OR v IS a2 ...) AND the shared antecedents, named after the first rule
+    private static FuzzyRule orOf(List<FuzzyRule> group, String variable) {
+        FuzzyRule first = group.get(0);
+        FuzzyRule rule = new FuzzyRule(first.getName());
+        boolean isAnd = true;
+        for (FuzzyRule member : group) {
+            for (FuzzyRule.Antecedent ant : member.getAntecedents()) {
+                if (ant.getVariable().equals(variable)) {
+                    rule.addAntecedent(variable, ant.getFuzzySet(), isAnd, ant.isNot());
+                    isAnd = false;
+                }
+            }
+        }
+        for (FuzzyRule.Antecedent ant : first.getAntecedents()) {
+            if (!ant.getVariable().equals(variable)) {
+                rule.addAntecedent(ant.getVariable(), ant.getFuzzySet(), true, ant.isNot());
+            }
+        }
+        rule.setConsequent(first.getConsequent().getVariable(), first.getConsequent().getFuzzySet());
+        rule.setWeight(first.getWeight());
+        return rule;
+    }
+
+    // largest absolute output difference over a grid spanning every input's range
+    private static double maxDeviation(CompiledFuzzySystem original, CompiledFuzzySystem compressed, int pointsPerInput) {
+        int numInputs = original.getInputCount();
+        int numOutputs = original.getOutputCount();
+        long cells = 1;
+        for (int v = 0; v < numInputs; v++) {
+            cells *= pointsPerInput;
+            if (cells * Math.max(numInputs, numOutputs) > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Verification grid too large: " + pointsPerInput + "^" + numInputs);
+            }
+        }
+        int numNodes = (int) cells;
+        double[] min = original.getInputMinValues();
+        double[] max = original.getInputMaxValues();
+        double[] nodes = new double[numNodes * numInputs];
+        for (int n = 0; n < numNodes; n++) {
+            int code = n;
+            for (int v = 0; v < numInputs; v++) {
+                int i = code % pointsPerInput;
+                code /= pointsPerInput;
+                nodes[n * numInputs + v] = min[v] + (max[v] - min[v]) * i / (pointsPerInput - 1);
+            }
+        }
+
+        double[] expected = new double[numNodes * numOutputs];
+        double[] actual = new double[numNodes * numOutputs];
+        original.calculateBatch(nodes, expected, numNodes);
+        compressed.calculateBatch(nodes, actual, numNodes);
+        double deviation = 0.0;
+        for (int i = 0; i < expected.length; i++) {
+            deviation = Math.max(deviation, Math.abs(expected[i] - actual[i]));
+        }
+        return deviation;
+    }
+
+    public static final class Result {
+        private final FuzzySystem system;
+        private final long ruleBaseVersion;
+        private final int rulesBefore;
+        private final List<FuzzyRule> rules;
+        private final int dropped;
+        private final int duplicates;
+        private final int subsumed;
+        private final int merged;
+        private final double maxDeviation;
+
+        private Result(FuzzySystem system, long ruleBaseVersion, int rulesBefore, List<FuzzyRule> rules,
+                       int dropped, int duplicates, int subsumed, int merged, double maxDeviation) {
+            this.system = system;
+            this.ruleBaseVersion = ruleBaseVersion;
+            this.rulesBefore = rulesBefore;
+            this.rules = rules;
+            this.dropped = dropped;
+            this.duplicates = duplicates;
+            this.subsumed = subsumed;
+            this.merged = merged;
+            this.maxDeviation = maxDeviation;
+        }
+
+        // swaps the compressed rules in, unless the rule base changed since it was compressed
+        public boolean apply() {
+            return system.getRuleBase().compareAndReplace(ruleBaseVersion, rules);
+        }
+
+        public List<FuzzyRule> getRules() { return rules; }
+        public int getRulesBefore() { return rulesBefore; }
+        public int getRulesAfter() { return rules.size(); }
+        public int getDroppedCount() { return dropped; }
+        public int getDuplicateCount() { return duplicates; }
+        public int getSubsumedCount() { return subsumed; }
+        public int getMergedCount() { return merged; }
+        public double getMaxDeviation() { return maxDeviation; }
+        public double getReduction() { return rulesBefore == 0 ? 0.0 : 1.0 - (double) rules.size() / rulesBefore; }
+
+        @Override
+        public String toString() {
+            return String.format("%d -> %d rules (%.1f%% smaller): %d dropped, %d duplicates, %d subsumed, %d merged; max deviation %.3g",
+                    rulesBefore, rules.size(), 100 * getReduction(), dropped, duplicates, subsumed, merged, maxDeviation);
+        }
+    }
+}
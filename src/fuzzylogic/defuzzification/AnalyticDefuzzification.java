@@ -0,0 +1,392 @@
+package fuzzylogic.defuzzification;
+
+import fuzzylogic.core.FuzzySet;
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.membershipFunction.MembershipFunction;
+import fuzzylogic.membershipFunction.PiecewiseLinearMF;
+import fuzzylogic.operators.aggregation.AggregationOperator;
+import fuzzylogic.operators.aggregation.MaxAggregation;
+import fuzzylogic.operators.aggregation.SumAggregation;
+import fuzzylogic.operators.implication.ImplicationOperator;
+import fuzzylogic.operators.implication.MinImplication;
+import fuzzylogic.operators.implication.ProductImplication;
+
+import java.util.Arrays;
+
+// Exact defuzzification for piecewise-linear output sets.
+// The clipped/scaled aggregate is built as a polygon from the set breakpoints,
+// so no numSteps grid is sampled. Under max aggregation each set enters once, at its
+// strongest firing, so the work grows with the distinct sets fired rather than the rules.
+public class AnalyticDefuzzification {
+
+    public enum Method { CENTROID, BISECTOR, MEAN_OF_MAXIMUM }
+
+    private static final double EPSILON = 1e-9;
+
+    private final Method method;
+
+    public AnalyticDefuzzification(Method method) {
+        this.method = method;
+    }
+
+    public Method getMethod() { return method; }
+
+    public boolean supports(ImplicationOperator implOp, AggregationOperator aggOp) {
+        return (implOp instanceof MinImplication || implOp instanceof ProductImplication)
+                && (aggOp instanceof MaxAggregation || aggOp instanceof SumAggregation);
+    }
+
+    public boolean supports(LinguisticVariable outputVar) {
+        for (FuzzySet set : outputVar.getFuzzySets().values()) {
+            if (!(set.getMembershipFunction() instanceof PiecewiseLinearMF)) return false;
+        }
+        return true;
+    }
+
+    public double defuzzify(FiredSets fired, ImplicationOperator implOp, AggregationOperator aggOp,
+                            double minValue, double maxValue) {
+        if (fired.count == 0 || maxValue <= minValue) {
+            return (minValue + maxValue) / 2;
+        }
+
+        boolean max = aggOp instanceof MaxAggregation;
+        Scratch scratch = fired.scratch();
+        int numSegments = buildPolygon(max ? fired.strongest(scratch) : fired, scratch, implOp instanceof MinImplication,
+                max, minValue, maxValue);
+        double[] segments = scratch.segments;
+
+        return switch (method) {
+            case CENTROID -> centroid(segments, numSegments, minValue, maxValue);
+            case BISECTOR -> bisector(segments, numSegments, minValue, maxValue);
+            case MEAN_OF_MAXIMUM -> meanOfMaximum(segments, numSegments, minValue, maxValue);
+        };
+    }
+
+    // Segments are packed into scratch.segments as (x0, y0, x1, y1), and the aggregate is linear
+    // on each one; returns the number of segments.
+    private static int buildPolygon(FiredSets fired, Scratch scratch, boolean clip, boolean max,
+                                    double minValue, double maxValue) {
+        int n = fired.count;
+        scratch.ensure(n);
+
+        // each implied set as a polygon over its breakpoints plus the kinks where clipping cuts
+        // it, zero outside its first and last vertex
+        int[] start = scratch.vertexStart;
+        double[] cuts = scratch.cuts;
+        int numCuts = 0;
+        cuts[numCuts++] = minValue;
+        cuts[numCuts++] = maxValue;
+        int v = 0;
+        for (int j = 0; j < n; j++) {
+            start[j] = v;
+            MembershipFunction set = fired.sets[j];
+            double strength = fired.strengths[j];
+            double[] breakpoints = ((PiecewiseLinearMF) set).getBreakpoints();
+            scratch.ensureVertices(v + 2 * breakpoints.length);
+            double px = 0.0, py = 0.0;
+            for (int k = 0; k < breakpoints.length; k++) {
+                double x = breakpoints[k];
+                double y = set.evaluate(x);
+                if (clip && k > 0 && x > px && (py - strength) * (y - strength) < 0) {
+                    v = scratch.vertex(v, px + (strength - py) * (x - px) / (y - py), strength);
+                }
+                v = scratch.vertex(v, x, clip ? Math.min(strength, y) : strength * y);
+                px = x;
+                py = y;
+            }
+            for (int k = start[j]; k < v; k++) {
+                double x = scratch.vx[k];
+                if (x > minValue && x < maxValue) {
+                    if (numCuts == cuts.length) cuts = scratch.cuts = Arrays.copyOf(cuts, numCuts * 2);
+                    cuts[numCuts++] = x;
+                }
+            }
+        }
+        start[n] = v;
+        sort(cuts, numCuts);
+
+        double[] vx = scratch.vx;
+        double[] vy = scratch.vy;
+        int[] at = scratch.cursor;
+        System.arraycopy(start, 0, at, 0, n);
+        double[] g0 = scratch.g0;
+        double[] g1 = scratch.g1;
+        double[] subSplits = scratch.subSplits;
+        scratch.size = 0;
+
+        for (int c = 1; c < numCuts; c++) {
+            double x0 = cuts[c - 1];
+            double x1 = cuts[c];
+            if (x1 <= x0) continue;
+
+            // no vertex lies strictly inside the interval, so each covering polygon is one line on it
+            int numActive = 0;
+            for (int j = 0; j < n; j++) {
+                int last = start[j + 1] - 1;
+                if (vx[start[j]] > x0 || vx[last] < x1) continue;
+                int p = at[j];
+                while (p < last - 1 && vx[p + 1] <= x0) p++;
+                at[j] = p;
+                double slope = (vy[p + 1] - vy[p]) / (vx[p + 1] - vx[p]);
+                g0[numActive] = x0 == vx[p] ? vy[p] : vy[p] + slope * (x0 - vx[p]);
+                g1[numActive] = x1 == vx[p + 1] ? vy[p + 1] : vy[p] + slope * (x1 - vx[p]);
+                numActive++;
+            }
+            if (numActive == 0) continue;
+            if (numActive == 1 && max) {
+                scratch.add(x0, g0[0], x1, g1[0]);
+                continue;
+            }
+
+            // aggregation adds kinks where the envelope switches lines or the bounded sum saturates
+            int numSubSplits = max ? envelope(g0, g1, numActive, subSplits) : saturation(g0, g1, numActive, subSplits);
+            double w = x1 - x0;
+            for (int q = 1; q < numSubSplits; q++) {
+                double u0 = subSplits[q - 1];
+                double u1 = subSplits[q];
+                if (u1 <= u0) continue;
+                scratch.add(x0 + w * u0, aggregate(g0, g1, numActive, u0, max),
+                        x0 + w * u1, aggregate(g0, g1, numActive, u1, max));
+            }
+        }
+
+        return scratch.size / 4;
+    }
+
+    // insertion sort for the usual handful of values
+    private static void sort(double[] values, int count) {
+        if (count > 32) {
+            Arrays.sort(values, 0, count);
+            return;
+        }
+        for (int i = 1; i < count; i++) {
+            double value = values[i];
+            int j = i - 1;
+            while (j >= 0 && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    // Breakpoints of the upper envelope of the lines g0 + (g1 - g0) * u over [0, 1], in order.
+    // Each switch moves to a strictly steeper line, so there are at most n + 1 of them.
+    private static int envelope(double[] g0, double[] g1, int n, double[] splits) {
+        int count = 0;
+        splits[count++] = 0.0;
+        int top = 0;
+        for (int j = 1; j < n; j++) {
+            if (g0[j] > g0[top] || (g0[j] == g0[top] && g1[j] - g0[j] > g1[top] - g0[top])) top = j;
+        }
+        double u = 0.0;
+        while (true) {
+            double topSlope = g1[top] - g0[top];
+            double next = 1.0;
+            int nextTop = -1;
+            for (int j = 0; j < n; j++) {
+                double slope = g1[j] - g0[j];
+                if (slope <= topSlope) continue;
+                double cross = (g0[top] - g0[j]) / (slope - topSlope);
+                if (cross > u && (cross < next || (nextTop >= 0 && cross == next && slope > g1[nextTop] - g0[nextTop]))) {
+                    next = cross;
+                    nextTop = j;
+                }
+            }
+            if (nextTop < 0) break;
+            splits[count++] = next;
+            u = next;
+            top = nextTop;
+        }
+        splits[count++] = 1.0;
+        return count;
+    }
+
+    private static int saturation(double[] g0, double[] g1, int n, double[] splits) {
+        double s0 = 0.0;
+        double s1 = 0.0;
+        for (int j = 0; j < n; j++) {
+            s0 += g0[j];
+            s1 += g1[j];
+        }
+        int count = 0;
+        splits[count++] = 0.0;
+        if ((s0 - 1.0) * (s1 - 1.0) < 0) {
+            splits[count++] = (1.0 - s0) / (s1 - s0);
+        }
+        splits[count++] = 1.0;
+        return count;
+    }
+
+    private static double aggregate(double[] g0, double[] g1, int n, double u, boolean max) {
+        double result = 0.0;
+        for (int j = 0; j < n; j++) {
+            double value = g0[j] + (g1[j] - g0[j]) * u;
+            result = max ? Math.max(result, value) : result + value;
+        }
+        return max ? result : Math.min(1.0, result);
+    }
+
+    private static double centroid(double[] seg, int numSegments, double minValue, double maxValue) {
+        double area = 0.0;
+        double moment = 0.0;
+        for (int i = 0; i < numSegments * 4; i += 4) {
+            double x0 = seg[i], y0 = seg[i + 1], x1 = seg[i + 2], y1 = seg[i + 3];
+            double w = x1 - x0;
+            area += w * (y0 + y1) / 2;
+            moment += w / 6 * (x0 * (2 * y0 + y1) + x1 * (y0 + 2 * y1));
+        }
+        return area <= 0 ? (minValue + maxValue) / 2 : moment / area;
+    }
+
+    private static double bisector(double[] seg, int numSegments, double minValue, double maxValue) {
+        double area = 0.0;
+        for (int i = 0; i < numSegments * 4; i += 4) {
+            area += (seg[i + 2] - seg[i]) * (seg[i + 1] + seg[i + 3]) / 2;
+        }
+        if (area <= 0) return (minValue + maxValue) / 2;
+
+        double remaining = area / 2;
+        for (int i = 0; i < numSegments * 4; i += 4) {
+            double x0 = seg[i], y0 = seg[i + 1], x1 = seg[i + 2], y1 = seg[i + 3];
+            double w = x1 - x0;
+            double segmentArea = w * (y0 + y1) / 2;
+            if (segmentArea < remaining) {
+                remaining -= segmentArea;
+                continue;
+            }
+
+            // solve y0 * u + slope * u^2 / 2 = remaining for the offset u into the segment
+            double slope = (y1 - y0) / w;
+            double u = Math.abs(slope) < EPSILON
+                    ? remaining / y0
+                    : (-y0 + Math.sqrt(Math.max(0, y0 * y0 + 2 * slope * remaining))) / slope;
+            return x0 + Math.max(0, Math.min(w, u));
+        }
+        return seg[numSegments * 4 - 2];
+    }
+
+    private static double meanOfMaximum(double[] seg, int numSegments, double minValue, double maxValue) {
+        double maxMembership = 0.0;
+        for (int i = 0; i < numSegments * 4; i += 4) {
+            maxMembership = Math.max(maxMembership, Math.max(seg[i + 1], seg[i + 3]));
+        }
+        if (maxMembership == 0.0) return (minValue + maxValue) / 2;
+
+        // plateaus at the maximum carry all the weight; isolated peaks only matter when there is none
+        double plateauLength = 0.0;
+        double plateauMoment = 0.0;
+        double peakSum = 0.0;
+        int peakCount = 0;
+        double lastPeak = Double.NaN;
+        for (int i = 0; i < numSegments * 4; i += 4) {
+            boolean atMax0 = maxMembership - seg[i + 1] < EPSILON;
+            boolean atMax1 = maxMembership - seg[i + 3] < EPSILON;
+            if (atMax0 && atMax1) {
+                double w = seg[i + 2] - seg[i];
+                plateauLength += w;
+                plateauMoment += w * (seg[i] + seg[i + 2]) / 2;
+            }
+            for (int e = 0; e <= 2; e += 2) {
+                if (maxMembership - seg[i + e + 1] < EPSILON && seg[i + e] != lastPeak) {
+                    lastPeak = seg[i + e];
+                    peakSum += lastPeak;
+                    peakCount++;
+                }
+            }
+        }
+
+        return plateauLength > 0 ? plateauMoment / plateauLength : peakSum / peakCount;
+    }
+
+    // output sets fired into one output variable, with their rule strengths
+    public static class FiredSets {
+        private MembershipFunction[] sets = new MembershipFunction[8];
+        private double[] strengths = new double[8];
+        private int count;
+        private Scratch scratch;
+
+        public void add(MembershipFunction set, double strength) {
+            if (count == sets.length) {
+                sets = Arrays.copyOf(sets, count * 2);
+                strengths = Arrays.copyOf(strengths, count * 2);
+            }
+            sets[count] = set;
+            strengths[count] = strength;
+            count++;
+        }
+
+        public void addAll(FiredSets other) {
+            for (int j = 0; j < other.count; j++) {
+                add(other.sets[j], other.strengths[j]);
+            }
+        }
+
+        public void clear() { count = 0; }
+        public int size() { return count; }
+
+        // the owner reuses one scratch, so a FiredSets must stay confined to one thread at a time
+        private Scratch scratch() {
+            if (scratch == null) scratch = new Scratch();
+            return scratch;
+        }
+
+        // one entry per distinct set at its highest strength, in first-fired order; under max
+        // aggregation a weaker firing of the same set never shows in the aggregate
+        private FiredSets strongest(Scratch scratch) {
+            FiredSets merged = scratch.merged;
+            merged.clear();
+            for (int j = 0; j < count; j++) {
+                int k = 0;
+                while (k < merged.count && merged.sets[k] != sets[j]) k++;
+                if (k == merged.count) merged.add(sets[j], strengths[j]);
+                else merged.strengths[k] = Math.max(merged.strengths[k], strengths[j]);
+            }
+            return merged;
+        }
+    }
+
+    // per-FiredSets working buffers, grown to the largest firing count seen
+    private static final class Scratch {
+        private final FiredSets merged = new FiredSets();
+        private double[] cuts = new double[16];
+        private double[] vx = new double[32];
+        private double[] vy = new double[32];
+        private int[] vertexStart = new int[1];
+        private int[] cursor = new int[0];
+        private double[] g0 = new double[0];
+        private double[] g1 = new double[0];
+        private double[] subSplits = new double[3];
+        private double[] segments = new double[64];
+        private int size;
+
+        void ensure(int n) {
+            if (cursor.length >= n) return;
+            vertexStart = new int[n + 1];
+            cursor = new int[n];
+            g0 = new double[n];
+            g1 = new double[n];
+            subSplits = new double[2 + n];
+        }
+
+        void ensureVertices(int capacity) {
+            if (vx.length >= capacity) return;
+            vx = Arrays.copyOf(vx, Math.max(capacity, vx.length * 2));
+            vy = Arrays.copyOf(vy, vx.length);
+        }
+
+        int vertex(int v, double x, double y) {
+            vx[v] = x;
+            vy[v] = y;
+            return v + 1;
+        }
+
+        void add(double x0, double y0, double x1, double y1) {
+            if (size + 4 > segments.length) segments = Arrays.copyOf(segments, segments.length * 2);
+            segments[size++] = x0;
+            segments[size++] = y0;
+            segments[size++] = x1;
+            segments[size++] = y1;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package fuzzylogic.defuzzification;
+
+public class BisectorDefuzzification implements DefuzzificationMethod {
+
+    @Override
+    public double defuzzify(double[] membershipValues, double minValue, double maxValue, int numSteps) {
+        double total = 0.0;
+        for (int i = 0; i < numSteps; i++) {
+            total += membershipValues[i];
+        }
+
+        if (total == 0) {
+            return (minValue + maxValue) / 2;
+        }
+
+        // first grid point where the accumulated area reaches half of the total
+        double step = (maxValue - minValue) / (numSteps - 1);
+        double accumulated = 0.0;
+        for (int i = 0; i < numSteps; i++) {
+            accumulated += membershipValues[i];
+            if (accumulated >= total / 2) {
+                return minValue + i * step;
+            }
+        }
+
+        return maxValue;
+    }
+
+    // point splitting the area under the piecewise-linear curve through the samples in half
+    @Override
+    public double defuzzify(double[] xs, double[] membershipValues, int count) {
+        double total = 0.0;
+        for (int i = 0; i + 1 < count; i++) {
+            total += (xs[i + 1] - xs[i]) * (membershipValues[i] + membershipValues[i + 1]) / 2;
+        }
+        if (total == 0) {
+            return (xs[0] + xs[count - 1]) / 2;
+        }
+
+        double remaining = total / 2;
+        for (int i = 0; i + 1 < count; i++) {
+            double h = xs[i + 1] - xs[i];
+            double y0 = membershipValues[i];
+            double y1 = membershipValues[i + 1];
+            double area = h * (y0 + y1) / 2;
+            if (area < remaining) {
+                remaining -= area;
+                continue;
+            }
+            // solve y0 * u + slope * u^2 / 2 = remaining for the offset u into the segment
+            double slope = (y1 - y0) / h;
+            double u = Math.abs(slope) < 1e-12
+                    ? remaining / y0
+                    : (-y0 + Math.sqrt(Math.max(0.0, y0 * y0 + 2 * slope * remaining))) / slope;
+            return xs[i] + Math.max(0.0, Math.min(h, u));
+        }
+        return xs[count - 1];
+    }
+}
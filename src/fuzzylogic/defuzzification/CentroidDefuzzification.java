@@ -16,4 +16,19 @@ public class CentroidDefuzzification implements DefuzzificationMethod {
 
         return denominator == 0 ? (minValue + maxValue) / 2 : numerator / denominator;
     }
+
+    // exact centroid of the piecewise-linear curve through the samples
+    @Override
+    public double defuzzify(double[] xs, double[] membershipValues, int count) {
+        double area = 0.0;
+        double moment = 0.0;
+        for (int i = 0; i + 1 < count; i++) {
+            double x0 = xs[i], x1 = xs[i + 1];
+            double y0 = membershipValues[i], y1 = membershipValues[i + 1];
+            double h = x1 - x0;
+            area += h * (y0 + y1) / 2;
+            moment += h * (x0 * (2 * y0 + y1) + x1 * (y0 + 2 * y1)) / 6;
+        }
+        return area == 0 ? (xs[0] + xs[count - 1]) / 2 : moment / area;
+    }
 }
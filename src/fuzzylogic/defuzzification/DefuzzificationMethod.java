@@ -2,4 +2,24 @@ package fuzzylogic.defuzzification;
 
 public interface DefuzzificationMethod {
     double defuzzify(double[] membershipValues, double minValue, double maxValue, int numSteps);
+
+    // Non-uniform grid, as used by adaptive resolution: membershipValues[i] at xs[i] for the
+    // first count points in ascending order, linear in between. The default resamples onto
+    // count evenly spaced points and defers to the uniform form.
+    default double defuzzify(double[] xs, double[] membershipValues, int count) {
+        double minValue = xs[0];
+        double maxValue = xs[count - 1];
+        if (count < 2) return minValue;
+
+        double[] uniform = new double[count];
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            double x = minValue + (maxValue - minValue) * i / (count - 1);
+            while (j < count - 2 && xs[j + 1] < x) j++;
+            double span = xs[j + 1] - xs[j];
+            double t = span > 0 ? Math.max(0.0, Math.min(1.0, (x - xs[j]) / span)) : 0.0;
+            uniform[i] = membershipValues[j] + t * (membershipValues[j + 1] - membershipValues[j]);
+        }
+        return defuzzify(uniform, minValue, maxValue, count);
+    }
 }
@@ -24,4 +24,32 @@ public class MeanOfMaximumDefuzzification implements DefuzzificationMethod {
 
         return count > 0 ? sum / count : (minValue + maxValue) / 2;
     }
+
+    // plateaus at the maximum are weighted by their length; isolated peaks only count when there is none
+    @Override
+    public double defuzzify(double[] xs, double[] membershipValues, int count) {
+        double maxMembership = 0.0;
+        for (int i = 0; i < count; i++) {
+            maxMembership = Math.max(maxMembership, membershipValues[i]);
+        }
+        if (maxMembership == 0.0) {
+            return (xs[0] + xs[count - 1]) / 2;
+        }
+
+        double length = 0.0;
+        double moment = 0.0;
+        double peakSum = 0.0;
+        int peaks = 0;
+        for (int i = 0; i < count; i++) {
+            if (Math.abs(membershipValues[i] - maxMembership) >= 0.0000001) continue;
+            peakSum += xs[i];
+            peaks++;
+            if (i + 1 < count && Math.abs(membershipValues[i + 1] - maxMembership) < 0.0000001) {
+                double h = xs[i + 1] - xs[i];
+                length += h;
+                moment += h * (xs[i] + xs[i + 1]) / 2;
+            }
+        }
+        return length > 0 ? moment / length : peakSum / peaks;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package fuzzylogic.inference;
+
+import fuzzylogic.core.FuzzySet;
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.membershipFunction.GaussianMF;
+import fuzzylogic.membershipFunction.MembershipFunction;
+import fuzzylogic.membershipFunction.PiecewiseLinearMF;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+// Non-uniform sampling grids for Mamdani outputs, chosen from the output sets instead of a
+// global numSteps. A grid starts from the variable's range, every set's support and
+// breakpoints (the mean, for Gaussians), then bisects an interval while a straight line
+// between its end samples could be off by more than tolerance (in membership units):
+// where a set bends away from its chord, or where a set rises or falls by more than
+// 4 * tolerance, since clipping it at any height could hide a kink that deep inside.
+// Stretches where every set is flat get no interior points.
+public final class AdaptiveResolution {
+    // bisection stops at 2^-24 of an interval between seeds
+    private static final int MAX_DEPTH = 24;
+
+    private AdaptiveResolution() {
+    }
+
+    public static double[] grid(LinguisticVariable outputVar, double tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Tolerance must be positive: " + tolerance);
+        }
+        double min = outputVar.getMinValue();
+        double max = outputVar.getMaxValue();
+        if (!(max > min)) return new double[]{min};
+
+        List<MembershipFunction> functions = new ArrayList<>();
+        TreeSet<Double> seeds = new TreeSet<>();
+        seeds.add(min);
+        seeds.add(max);
+        for (FuzzySet set : outputVar.getFuzzySets().values()) {
+            MembershipFunction function = set.getMembershipFunction();
+            functions.add(function);
+            addSeed(seeds, function.getStart(), min, max);
+            addSeed(seeds, function.getEnd(), min, max);
+            if (function instanceof PiecewiseLinearMF linear) {
+                for (double x : linear.getBreakpoints()) addSeed(seeds, x, min, max);
+            } else if (function instanceof GaussianMF gaussian) {
+                addSeed(seeds, gaussian.getMean(), min, max);
+            }
+        }
+
+        List<Double> points = new ArrayList<>();
+        Double previous = null;
+        for (double x : seeds) {
+            if (previous != null) {
+                points.add(previous);
+                refine(functions, previous, x, tolerance, 0, points);
+            }
+            previous = x;
+        }
+        points.add(max);
+
+        double[] xs = new double[points.size()];
+        for (int i = 0; i < xs.length; i++) xs[i] = points.get(i);
+        return xs;
+    }
+
+    private static void addSeed(TreeSet<Double> seeds, double x, double min, double max) {
+        if (x > min && x < max) seeds.add(x);
+    }
+
+    // appends the interior points of (a, b) in ascending order
+    private static void refine(List<MembershipFunction> functions, double a, double b, double tolerance,
+                               int depth, List<Double> points) {
+        if (depth >= MAX_DEPTH) return;
+        double mid = (a + b) / 2;
+        for (MembershipFunction function : functions) {
+            double fa = function.evaluate(a);
+            double fb = function.evaluate(b);
+            double fm = function.evaluate(mid);
+            if (Math.abs(fm - (fa + fb) / 2) > tolerance || Math.abs(fb - fa) > 4 * tolerance) {
+                refine(functions, a, mid, tolerance, depth + 1, points);
+                points.add(mid);
+                refine(functions, mid, b, tolerance, depth + 1, points);
+                return;
+            }
+        }
+    }
+
+    public static double[] sample(FuzzySet set, double[] xs) {
+        double[] samples = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            samples[i] = set.getMembership(xs[i]);
+        }
+        return samples;
+    }
+}
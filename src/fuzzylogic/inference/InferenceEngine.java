@@ -1,6 +1,8 @@
 package fuzzylogic.inference;
 
 import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.metrics.InferenceMetrics;
+import fuzzylogic.operators.BinaryOperator;
 import fuzzylogic.rules.FuzzyRule;
 
 import java.util.List;
@@ -8,4 +10,15 @@ import java.util.Map;
 
 public interface InferenceEngine {
     Map<String, Double> infer(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables, Map<String, LinguisticVariable> outputVariables, List<FuzzyRule> rules);
+
+    // infer() that also records stage timings and rule counts; engines that cannot split
+    // their stages just run infer() and leave the caller to time the whole call
+    default Map<String, Double> infer(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables,
+                                      Map<String, LinguisticVariable> outputVariables, List<FuzzyRule> rules,
+                                      InferenceMetrics metrics) {
+        return infer(crispInputs, inputVariables, outputVariables, rules);
+    }
+
+    // AND operator used for rule strength, or null if unknown; lets callers prune rules that cannot fire
+    default BinaryOperator getAndOperator() { return null; }
 }
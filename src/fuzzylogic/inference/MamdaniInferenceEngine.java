@@ -2,40 +2,66 @@ package fuzzylogic.inference;
 
 import fuzzylogic.core.FuzzySet;
 import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.defuzzification.AnalyticDefuzzification;
+import fuzzylogic.metrics.InferenceMetrics;
 import fuzzylogic.defuzzification.DefuzzificationMethod;
 import fuzzylogic.operators.BinaryOperator;
 import fuzzylogic.operators.UnaryOperator;
 import fuzzylogic.operators.aggregation.AggregationOperator;
+import fuzzylogic.operators.aggregation.MaxAggregation;
+import fuzzylogic.operators.aggregation.SumAggregation;
 import fuzzylogic.operators.implication.ImplicationOperator;
+import fuzzylogic.operators.implication.MinImplication;
+import fuzzylogic.operators.implication.ProductImplication;
 import fuzzylogic.rules.FuzzyRule;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MamdaniInferenceEngine implements InferenceEngine {
-    private BinaryOperator andOperator;
-    private BinaryOperator orOperator;
-    private UnaryOperator notOperator;
-    private ImplicationOperator implicationOperator;
-    private AggregationOperator aggregationOperator;
-    private DefuzzificationMethod defuzzificationMethod;
-    private int numSteps;
+
+    // setters publish a new Config, so a running infer call never sees a half-applied change
+    private volatile Config config;
 
     public MamdaniInferenceEngine(BinaryOperator andOp, BinaryOperator orOp, UnaryOperator notOp,
                                   ImplicationOperator implOp, AggregationOperator aggOp,
                                   DefuzzificationMethod defuzzMethod, int numSteps) {
-        this.andOperator = andOp;
-        this.orOperator = orOp;
-        this.notOperator = notOp;
-        this.implicationOperator = implOp;
-        this.aggregationOperator = aggOp;
-        this.defuzzificationMethod = defuzzMethod;
-        this.numSteps = numSteps;
+        Config initial = new Config();
+        initial.andOperator = andOp;
+        initial.orOperator = orOp;
+        initial.notOperator = notOp;
+        initial.implicationOperator = implOp;
+        initial.aggregationOperator = aggOp;
+        initial.defuzzificationMethod = defuzzMethod;
+        initial.numSteps = numSteps;
+        this.config = initial;
     }
 
     @Override
     public Map<String, Double> infer(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables, Map<String, LinguisticVariable> outputVariables, List<FuzzyRule> rules) {
+        return beginPass(crispInputs, inputVariables, outputVariables).run(rules);
+    }
+
+    @Override
+    public Map<String, Double> infer(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables,
+                                     Map<String, LinguisticVariable> outputVariables, List<FuzzyRule> rules,
+                                     InferenceMetrics metrics) {
+        long start = System.nanoTime();
+        RulePass<Aggregate> pass = beginPass(crispInputs, inputVariables, outputVariables);
+        metrics.recordStage(InferenceMetrics.Stage.FUZZIFY, System.nanoTime() - start);
+        pass.metrics = metrics;
+        return pass.run(rules);
+    }
+
+    RulePass<Aggregate> beginPass(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables, Map<String, LinguisticVariable> outputVariables) {
+        Config c = config;
 
         // fuzzification
         Map<String, Map<String, Double>> fuzzifiedInputs = new HashMap<>();
@@ -46,64 +72,325 @@ public class MamdaniInferenceEngine implements InferenceEngine {
             }
         }
 
-        // rule evaluation
-        Map<String, double[]> aggregatedOutputs = new HashMap<>();
-
+        // outputs made only of piecewise-linear sets skip the grid when analytic defuzzification is on
+        boolean analytic = c.analyticDefuzzification != null
+                && c.analyticDefuzzification.supports(c.implicationOperator, c.aggregationOperator);
+        Set<String> analyticOutputs = new HashSet<>();
+        // the rest sample on an adaptive grid when a tolerance is set, else on numSteps points
+        Map<String, OutputGrid> grids = new HashMap<>();
         for (LinguisticVariable outputVar : outputVariables.values()) {
-            aggregatedOutputs.put(outputVar.getName(), new double[numSteps]);
+            if (analytic && c.analyticDefuzzification.supports(outputVar)) {
+                analyticOutputs.add(outputVar.getName());
+            } else {
+                grids.put(outputVar.getName(), c.adaptiveTolerance > 0 ? getOutputGrid(c, outputVar) : getUniformGrid(c, outputVar));
+            }
         }
 
-        for (FuzzyRule rule : rules) {
-            if (!rule.isEnabled()) continue;
+        boolean sparse = clipsToSupport(c.implicationOperator, c.aggregationOperator);
+        boolean merge = mergesFirings(c.implicationOperator, c.aggregationOperator);
 
-            double ruleStrength = rule.evaluateStrength(
-                    fuzzifiedInputs, andOperator, orOperator, notOperator
-            );
+        return new RulePass<>() {
+            @Override
+            Aggregate newAccumulator() {
+                Aggregate aggregate = new Aggregate();
+                for (LinguisticVariable outputVar : outputVariables.values()) {
+                    if (analyticOutputs.contains(outputVar.getName())) {
+                        aggregate.firedSets.put(outputVar.getName(), new AnalyticDefuzzification.FiredSets());
+                    } else {
+                        aggregate.grids.put(outputVar.getName(), new double[grids.get(outputVar.getName()).xs.length]);
+                    }
+                }
+                return aggregate;
+            }
 
-            if (ruleStrength > 0) {
-                FuzzyRule.Consequent consequent = rule.getConsequent();
-                if (consequent == null) continue;
+            // rule evaluation
+            @Override
+            boolean accumulate(Aggregate aggregate, FuzzyRule rule) {
+                if (!rule.isEnabled()) return false;
 
-                String outputVarName = consequent.getVariable();
-                String outputSetName = consequent.getFuzzySet();
+                double ruleStrength = rule.evaluateStrength(
+                        fuzzifiedInputs, c.andOperator, c.orOperator, c.notOperator
+                );
 
-                LinguisticVariable outputVar = outputVariables.get(outputVarName);
-                if (outputVar == null) continue;
+                if (ruleStrength > 0) {
+                    FuzzyRule.Consequent consequent = rule.getConsequent();
+                    if (consequent == null) return true;
 
-                FuzzySet outputSet = outputVar.getFuzzySets().get(outputSetName);
-                if (outputSet == null) continue;
+                    String outputVarName = consequent.getVariable();
+                    String outputSetName = consequent.getFuzzySet();
 
-                double[] aggregated = aggregatedOutputs.get(outputVarName);
-                double min = outputVar.getMinValue();
-                double max = outputVar.getMaxValue();
-                double step = (max - min) / (numSteps - 1);
+                    LinguisticVariable outputVar = outputVariables.get(outputVarName);
+                    if (outputVar == null) return true;
 
-                for (int i = 0; i < numSteps; i++) {
-                    double x = min + i * step;
-                    double membership = outputSet.getMembership(x);
-                    double impliedMembership = implicationOperator.apply(ruleStrength, membership);
-                    aggregated[i] = aggregationOperator.apply(aggregated[i], impliedMembership);
+                    FuzzySet outputSet = outputVar.getFuzzySets().get(outputSetName);
+                    if (outputSet == null) return true;
+
+                    AnalyticDefuzzification.FiredSets fired = aggregate.firedSets.get(outputVarName);
+                    if (fired != null) {
+                        fired.add(outputSet.getMembershipFunction(), ruleStrength);
+                        return true;
+                    }
+
+                    SampledSet samples = grids.get(outputVarName).samples(outputSet);
+
+                    // rules sharing a set are merged and the set is clipped once, in finish
+                    if (merge) {
+                        aggregate.strongest(outputVarName, samples, ruleStrength);
+                        return true;
+                    }
+                    clip(c, aggregate.grids.get(outputVarName), samples, ruleStrength, sparse);
+                    return true;
                 }
+                return false;
             }
+
+            @Override
+            void combine(Aggregate target, Aggregate other) {
+                for (Map.Entry<String, double[]> entry : target.grids.entrySet()) {
+                    double[] aggregated = entry.getValue();
+                    double[] partial = other.grids.get(entry.getKey());
+                    for (int i = 0; i < aggregated.length; i++) {
+                        aggregated[i] = c.aggregationOperator.apply(aggregated[i], partial[i]);
+                    }
+                }
+                for (Map.Entry<String, AnalyticDefuzzification.FiredSets> entry : target.firedSets.entrySet()) {
+                    entry.getValue().addAll(other.firedSets.get(entry.getKey()));
+                }
+                for (Strongest firing : other.strongest.values()) {
+                    target.strongest(firing.output, firing.samples, firing.strength);
+                }
+            }
+
+            // defuzzification
+            @Override
+            Map<String, Double> finish(Aggregate aggregate) {
+                for (Strongest firing : aggregate.strongest.values()) {
+                    clip(c, aggregate.grids.get(firing.output), firing.samples, firing.strength, sparse);
+                }
+
+                Map<String, Double> crispOutputs = new HashMap<>();
+                for (Map.Entry<String, double[]> entry : aggregate.grids.entrySet()) {
+                    LinguisticVariable outputVar = outputVariables.get(entry.getKey());
+                    OutputGrid grid = grids.get(entry.getKey());
+                    double crispValue = c.adaptiveTolerance > 0
+                            ? c.defuzzificationMethod.defuzzify(grid.xs, entry.getValue(), grid.xs.length)
+                            : c.defuzzificationMethod.defuzzify(entry.getValue(), outputVar.getMinValue(), outputVar.getMaxValue(), c.numSteps);
+                    crispOutputs.put(entry.getKey(), crispValue);
+                }
+                for (Map.Entry<String, AnalyticDefuzzification.FiredSets> entry : aggregate.firedSets.entrySet()) {
+                    LinguisticVariable outputVar = outputVariables.get(entry.getKey());
+                    double crispValue = c.analyticDefuzzification.defuzzify(entry.getValue(), c.implicationOperator,
+                            c.aggregationOperator, outputVar.getMinValue(), outputVar.getMaxValue());
+                    crispOutputs.put(entry.getKey(), crispValue);
+                }
+                return crispOutputs;
+            }
+        };
+    }
+
+    private static void clip(Config c, double[] aggregated, SampledSet samples, double strength, boolean sparse) {
+        int from = sparse ? samples.from : 0;
+        int to = sparse ? samples.to : samples.values.length;
+        for (int i = from; i < to; i++) {
+            double impliedMembership = c.implicationOperator.apply(strength, samples.values[i]);
+            aggregated[i] = c.aggregationOperator.apply(aggregated[i], impliedMembership);
         }
+    }
+
+    // Min and product implication map a zero sample to zero, which max and bounded sum leave
+    // alone, so only the samples inside a set's support can change the aggregate.
+    public static boolean clipsToSupport(ImplicationOperator implOp, AggregationOperator aggOp) {
+        return (implOp instanceof MinImplication || implOp instanceof ProductImplication)
+                && (aggOp instanceof MaxAggregation || aggOp instanceof SumAggregation);
+    }
+
+    // Under max aggregation, implication is monotone in the strength, so the rules firing one
+    // set contribute exactly the set clipped (or scaled) at their largest strength.
+    public static boolean mergesFirings(ImplicationOperator implOp, AggregationOperator aggOp) {
+        return (implOp instanceof MinImplication || implOp instanceof ProductImplication)
+                && aggOp instanceof MaxAggregation;
+    }
+
+    // [from, to) of the nonzero samples; empty (0, 0) when all are zero
+    public static int[] support(double[] samples) {
+        int from = 0;
+        while (from < samples.length && samples[from] == 0.0) from++;
+        int to = samples.length;
+        while (to > from && samples[to - 1] == 0.0) to--;
+        return from < to ? new int[]{from, to} : new int[]{0, 0};
+    }
 
-        // defuzzification
-        Map<String, Double> crispOutputs = new HashMap<>();
-        for (Map.Entry<String, double[]> entry : aggregatedOutputs.entrySet()) {
-            LinguisticVariable outputVar = outputVariables.get(entry.getKey());
-            double crispValue = defuzzificationMethod.defuzzify(entry.getValue(), outputVar.getMinValue(), outputVar.getMaxValue(), numSteps);
-            crispOutputs.put(entry.getKey(), crispValue);
+    // Both grids are rebuilt whenever the variable's set map is replaced, i.e. a set was added,
+    // which drops the samples of its old sets. Variables are weak keys, so the grids of variables
+    // no longer in use (e.g. tuning candidates) are dropped with them.
+    private static OutputGrid getUniformGrid(Config c, LinguisticVariable outputVar) {
+        OutputGrid grid = c.samplingTables.get(outputVar);
+        if (grid == null || grid.sets != outputVar.getFuzzySets()) {
+            grid = new OutputGrid(outputVar.getFuzzySets(), uniformGrid(outputVar.getMinValue(), outputVar.getMaxValue(), c.numSteps));
+            c.samplingTables.put(outputVar, grid);
         }
+        return grid;
+    }
 
-        return crispOutputs;
+    private static OutputGrid getOutputGrid(Config c, LinguisticVariable outputVar) {
+        OutputGrid grid = c.outputGrids.get(outputVar);
+        if (grid == null || grid.sets != outputVar.getFuzzySets()) {
+            grid = new OutputGrid(outputVar.getFuzzySets(), AdaptiveResolution.grid(outputVar, c.adaptiveTolerance));
+            c.outputGrids.put(outputVar, grid);
+        }
+        return grid;
     }
 
-    public void setAndOperator(BinaryOperator op) { this.andOperator = op; }
-    public void setOrOperator(BinaryOperator op) { this.orOperator = op; }
-    public void setNotOperator(UnaryOperator op) { this.notOperator = op; }
-    public void setImplicationOperator(ImplicationOperator op) { this.implicationOperator = op; }
-    public void setAggregationOperator(AggregationOperator op) { this.aggregationOperator = op; }
-    public void setDefuzzificationMethod(DefuzzificationMethod method) { this.defuzzificationMethod = method; }
-    public void setResolution(int numSteps) { this.numSteps = numSteps; }
-}
+    // the numSteps points sample() evaluates a set at
+    private static double[] uniformGrid(double min, double max, int numSteps) {
+        double[] xs = new double[numSteps];
+        double step = (max - min) / (numSteps - 1);
+        for (int i = 0; i < numSteps; i++) {
+            xs[i] = min + i * step;
+        }
+        return xs;
+    }
+
+    // sample points used for outputVar, or null when it is sampled on the uniform numSteps grid
+    public double[] getOutputGrid(LinguisticVariable outputVar) {
+        Config c = config;
+        return c.adaptiveTolerance > 0 ? getOutputGrid(c, outputVar).xs.clone() : null;
+    }
+
+    public static double[] sample(FuzzySet set, double min, double max, int numSteps) {
+        double[] samples = new double[numSteps];
+        double step = (max - min) / (numSteps - 1);
+        for (int i = 0; i < numSteps; i++) {
+            samples[i] = set.getMembership(min + i * step);
+        }
+        return samples;
+    }
+
+    public synchronized void invalidateSamplingTables() {
+        Config next = config.copy();
+        next.samplingTables = grids();
+        next.outputGrids = grids();
+        config = next;
+    }
 
+    public synchronized void setAndOperator(BinaryOperator op) { Config next = config.copy(); next.andOperator = op; config = next; }
+    public synchronized void setOrOperator(BinaryOperator op) { Config next = config.copy(); next.orOperator = op; config = next; }
+    public synchronized void setNotOperator(UnaryOperator op) { Config next = config.copy(); next.notOperator = op; config = next; }
+    public synchronized void setImplicationOperator(ImplicationOperator op) { Config next = config.copy(); next.implicationOperator = op; config = next; }
+    public synchronized void setAggregationOperator(AggregationOperator op) { Config next = config.copy(); next.aggregationOperator = op; config = next; }
+    public synchronized void setDefuzzificationMethod(DefuzzificationMethod method) { Config next = config.copy(); next.defuzzificationMethod = method; config = next; }
+    // null restores grid defuzzification for every output
+    public synchronized void setAnalyticDefuzzification(AnalyticDefuzzification method) { Config next = config.copy(); next.analyticDefuzzification = method; config = next; }
+    // tolerance > 0 samples each output on its own AdaptiveResolution grid instead of numSteps
+    // points; 0 restores the uniform grid. Analytic defuzzification still takes precedence.
+    public synchronized void setAdaptiveResolution(double tolerance) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+        }
+        Config next = config.copy();
+        next.adaptiveTolerance = tolerance;
+        next.outputGrids = grids();
+        config = next;
+    }
+
+    public synchronized void setResolution(int numSteps) {
+        Config next = config.copy();
+        next.numSteps = numSteps;
+        next.samplingTables = grids();
+        config = next;
+    }
+
+    @Override
+    public BinaryOperator getAndOperator() { return config.andOperator; }
+    public BinaryOperator getOrOperator() { return config.orOperator; }
+    public UnaryOperator getNotOperator() { return config.notOperator; }
+    public ImplicationOperator getImplicationOperator() { return config.implicationOperator; }
+    public AggregationOperator getAggregationOperator() { return config.aggregationOperator; }
+    public DefuzzificationMethod getDefuzzificationMethod() { return config.defuzzificationMethod; }
+    public AnalyticDefuzzification getAnalyticDefuzzification() { return config.analyticDefuzzification; }
+    public int getResolution() { return config.numSteps; }
+    public double getAdaptiveResolution() { return config.adaptiveTolerance; }
+
+    // per-output grids, or fired sets for analytically defuzzified outputs
+    static class Aggregate {
+        final Map<String, double[]> grids = new HashMap<>();
+        final Map<String, AnalyticDefuzzification.FiredSets> firedSets = new HashMap<>();
+        // strongest firing of each sampled set, when firings are merged before clipping
+        final Map<SampledSet, Strongest> strongest = new IdentityHashMap<>();
+
+        void strongest(String output, SampledSet samples, double strength) {
+            Strongest firing = strongest.get(samples);
+            if (firing == null) {
+                strongest.put(samples, new Strongest(output, samples, strength));
+            } else {
+                firing.strength = Math.max(firing.strength, strength);
+            }
+        }
+    }
+
+    static final class Strongest {
+        final String output;
+        final SampledSet samples;
+        double strength;
+
+        Strongest(String output, SampledSet samples, double strength) {
+            this.output = output;
+            this.samples = samples;
+            this.strength = strength;
+        }
+    }
+
+    private static Map<LinguisticVariable, OutputGrid> grids() {
+        return Collections.synchronizedMap(new WeakHashMap<>());
+    }
+
+    // sample points of one output variable and its sets sampled on them
+    private static final class OutputGrid {
+        final Map<String, FuzzySet> sets;
+        final double[] xs;
+        final Map<FuzzySet, SampledSet> samples = new ConcurrentHashMap<>();
+
+        OutputGrid(Map<String, FuzzySet> sets, double[] xs) {
+            this.sets = sets;
+            this.xs = xs;
+        }
+
+        SampledSet samples(FuzzySet set) {
+            return samples.computeIfAbsent(set, s -> new SampledSet(AdaptiveResolution.sample(s, xs)));
+        }
+    }
+
+    // only mutated before being published through the volatile field
+    private static class Config {
+        BinaryOperator andOperator;
+        BinaryOperator orOperator;
+        UnaryOperator notOperator;
+        ImplicationOperator implicationOperator;
+        AggregationOperator aggregationOperator;
+        DefuzzificationMethod defuzzificationMethod;
+        int numSteps;
+        AnalyticDefuzzification analyticDefuzzification;
+        double adaptiveTolerance;
+        // per output variable, its sets sampled on the adaptive grid
+        Map<LinguisticVariable, OutputGrid> outputGrids = grids();
+
+        // per output variable, its sets sampled on the numSteps grid
+        Map<LinguisticVariable, OutputGrid> samplingTables = grids();
+
+        Config copy() {
+            Config copy = new Config();
+            copy.andOperator = andOperator;
+            copy.orOperator = orOperator;
+            copy.notOperator = notOperator;
+            copy.implicationOperator = implicationOperator;
+            copy.aggregationOperator = aggregationOperator;
+            copy.defuzzificationMethod = defuzzificationMethod;
+            copy.numSteps = numSteps;
+            copy.analyticDefuzzification = analyticDefuzzification;
+            copy.adaptiveTolerance = adaptiveTolerance;
+            copy.outputGrids = outputGrids;
+            copy.samplingTables = samplingTables;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package fuzzylogic.inference;
+
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.metrics.InferenceMetrics;
+import fuzzylogic.operators.BinaryOperator;
+import fuzzylogic.rules.FuzzyRule;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Runs the rule loop of a Mamdani or Sugeno engine across a ForkJoinPool.
+// Each leaf task aggregates its slice of rules into its own buffer, and buffers are merged
+// with the delegate's aggregation (max, bounded sum, or Sugeno weighted sums), all associative.
+public class ParallelInferenceEngine implements InferenceEngine {
+    public static final int DEFAULT_THRESHOLD = 2048;
+
+    private final InferenceEngine delegate;
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public ParallelInferenceEngine(InferenceEngine delegate) {
+        this(delegate, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    // rule lists shorter than threshold run sequentially, and no task is split below it
+    public ParallelInferenceEngine(InferenceEngine delegate, ForkJoinPool pool, int threshold) {
+        if (!(delegate instanceof MamdaniInferenceEngine) && !(delegate instanceof SugenoInferenceEngine)) {
+            throw new IllegalArgumentException("Unsupported inference engine: " + delegate.getClass().getName());
+        }
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive");
+        }
+        this.delegate = delegate;
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Map<String, Double> infer(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables,
+                                     Map<String, LinguisticVariable> outputVariables, List<FuzzyRule> rules) {
+        return run(beginPass(crispInputs, inputVariables, outputVariables), rules);
+    }
+
+    @Override
+    public Map<String, Double> infer(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables,
+                                     Map<String, LinguisticVariable> outputVariables, List<FuzzyRule> rules,
+                                     InferenceMetrics metrics) {
+        long start = System.nanoTime();
+        RulePass<?> pass = beginPass(crispInputs, inputVariables, outputVariables);
+        metrics.recordStage(InferenceMetrics.Stage.FUZZIFY, System.nanoTime() - start);
+        pass.metrics = metrics;
+        return run(pass, rules);
+    }
+
+    private RulePass<?> beginPass(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables,
+                                  Map<String, LinguisticVariable> outputVariables) {
+        return delegate instanceof MamdaniInferenceEngine mamdani
+                ? mamdani.beginPass(crispInputs, inputVariables, outputVariables)
+                : ((SugenoInferenceEngine) delegate).beginPass(crispInputs, inputVariables, outputVariables);
+    }
+
+    private <A> Map<String, Double> run(RulePass<A> pass, List<FuzzyRule> rules) {
+        if (rules.size() < threshold) {
+            return pass.run(rules);
+        }
+        if (pass.metrics == null) {
+            return pass.finish(pool.invoke(new RuleTask<>(pass, rules, 0, rules.size())));
+        }
+        long start = System.nanoTime();
+        return pass.finishTimed(pool.invoke(new RuleTask<>(pass, rules, 0, rules.size())), start);
+    }
+
+    @Override
+    public BinaryOperator getAndOperator() { return delegate.getAndOperator(); }
+
+    public InferenceEngine getDelegate() { return delegate; }
+    public int getThreshold() { return threshold; }
+
+    // ForkJoinTask is Serializable, but a task is only ever forked in this JVM
+    @SuppressWarnings("serial")
+    private class RuleTask<A> extends RecursiveTask<A> {
+        private final RulePass<A> pass;
+        private final List<FuzzyRule> rules;
+        private final int from;
+        private final int to;
+
+        RuleTask(RulePass<A> pass, List<FuzzyRule> rules, int from, int to) {
+            this.pass = pass;
+            this.rules = rules;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= threshold) {
+                return pass.accumulate(rules, from, to);
+            }
+
+            int mid = (from + to) >>> 1;
+            RuleTask<A> left = new RuleTask<>(pass, rules, from, mid);
+            left.fork();
+            A right = new RuleTask<>(pass, rules, mid, to).compute();
+            A result = left.join();
+            pass.combine(result, right);
+            return result;
+        }
+    }
+}
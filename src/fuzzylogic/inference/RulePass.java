@@ -0,0 +1,65 @@
+package fuzzylogic.inference;
+
+import fuzzylogic.metrics.InferenceMetrics;
+import fuzzylogic.rules.FuzzyRule;
+
+import java.util.List;
+import java.util.Map;
+
+// One inference call with its inputs already fuzzified. Rules are folded into
+// accumulators that can be filled independently and combined afterwards,
+// which lets the rule loop be split across threads.
+abstract class RulePass<A> {
+
+    // set before the pass runs to count rules and time the infer and defuzzify stages
+    InferenceMetrics metrics;
+
+    abstract A newAccumulator();
+
+    // returns whether the rule fired
+    abstract boolean accumulate(A accumulator, FuzzyRule rule);
+
+    // folds other into target; must be associative for the split to be valid
+    abstract void combine(A target, A other);
+
+    abstract Map<String, Double> finish(A accumulator);
+
+    A accumulate(List<FuzzyRule> rules, int from, int to) {
+        A accumulator = newAccumulator();
+        InferenceMetrics m = metrics;
+        if (m == null) {
+            for (int i = from; i < to; i++) {
+                accumulate(accumulator, rules.get(i));
+            }
+            return accumulator;
+        }
+
+        int evaluated = 0;
+        int fired = 0;
+        for (int i = from; i < to; i++) {
+            FuzzyRule rule = rules.get(i);
+            if (!rule.isEnabled()) continue;
+            evaluated++;
+            if (accumulate(accumulator, rule)) fired++;
+        }
+        m.recordRules(evaluated, fired, (to - from) - evaluated);
+        return accumulator;
+    }
+
+    Map<String, Double> run(List<FuzzyRule> rules) {
+        if (metrics == null) {
+            return finish(accumulate(rules, 0, rules.size()));
+        }
+        long start = System.nanoTime();
+        return finishTimed(accumulate(rules, 0, rules.size()), start);
+    }
+
+    // records everything since inferStart as INFER, then times finish as DEFUZZIFY
+    Map<String, Double> finishTimed(A accumulator, long inferStart) {
+        long finishStart = System.nanoTime();
+        metrics.recordStage(InferenceMetrics.Stage.INFER, finishStart - inferStart);
+        Map<String, Double> crispOutputs = finish(accumulator);
+        metrics.recordStage(InferenceMetrics.Stage.DEFUZZIFY, System.nanoTime() - finishStart);
+        return crispOutputs;
+    }
+}
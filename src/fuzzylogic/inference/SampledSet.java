@@ -0,0 +1,16 @@
+package fuzzylogic.inference;
+
+// An output set sampled on its variable's grid, with the index range [from, to) outside
+// which every sample is 0.
+final class SampledSet {
+    final double[] values;
+    final int from;
+    final int to;
+
+    SampledSet(double[] values) {
+        int[] support = MamdaniInferenceEngine.support(values);
+        this.values = values;
+        this.from = support[0];
+        this.to = support[1];
+    }
+}
@@ -1,35 +1,77 @@
 package fuzzylogic.inference;
 
 import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.metrics.InferenceMetrics;
 import fuzzylogic.operators.BinaryOperator;
 import fuzzylogic.operators.UnaryOperator;
 import fuzzylogic.rules.FuzzyRule;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SugenoInferenceEngine implements InferenceEngine {
 
     private final BinaryOperator andOperator;
     private final BinaryOperator orOperator;
     private final UnaryOperator notOperator;
-    private final Map<String, Map<String, ConstantFunction>> consequentFunctions;
+    private final Map<String, Map<String, PolynomialFunction>> consequentFunctions;
 
     public SugenoInferenceEngine(BinaryOperator andOp, BinaryOperator orOp, UnaryOperator notOp) {
         this.andOperator = andOp;
         this.orOperator = orOp;
         this.notOperator = notOp;
-        this.consequentFunctions = new HashMap<>();
+        this.consequentFunctions = new ConcurrentHashMap<>();
     }
 
-    public void setConsequentFunction(String outputVar, String fuzzySet, ConstantFunction function) {
-        consequentFunctions.computeIfAbsent(outputVar, k -> new HashMap<>()).put(fuzzySet, function);
+    // a ConstantFunction gives zero-order rules, linear or polynomial functions first- or higher-order ones
+    public void setConsequentFunction(String outputVar, String fuzzySet, PolynomialFunction function) {
+        consequentFunctions.computeIfAbsent(outputVar, k -> new ConcurrentHashMap<>()).put(fuzzySet, function);
+    }
+
+    public PolynomialFunction getConsequentFunction(String outputVar, String fuzzySet) {
+        Map<String, PolynomialFunction> functions = consequentFunctions.get(outputVar);
+        return functions != null ? functions.get(fuzzySet) : null;
+    }
+
+    // snapshot of every registered function, output variable -> fuzzy set -> function
+    public Map<String, Map<String, PolynomialFunction>> getConsequentFunctions() {
+        Map<String, Map<String, PolynomialFunction>> copy = new HashMap<>();
+        for (Map.Entry<String, Map<String, PolynomialFunction>> entry : consequentFunctions.entrySet()) {
+            copy.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+        return copy;
     }
 
+    @Override
+    public BinaryOperator getAndOperator() { return andOperator; }
+    public BinaryOperator getOrOperator() { return orOperator; }
+    public UnaryOperator getNotOperator() { return notOperator; }
+
     @Override
     public Map<String, Double> infer(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables,
             Map<String, LinguisticVariable> outputVariables, List<FuzzyRule> rules) {
+        return beginPass(crispInputs, inputVariables, outputVariables).run(rules);
+    }
+
+    @Override
+    public Map<String, Double> infer(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables,
+                                     Map<String, LinguisticVariable> outputVariables, List<FuzzyRule> rules,
+                                     InferenceMetrics metrics) {
+        long start = System.nanoTime();
+        RulePass<Map<String, double[]>> pass = beginPass(crispInputs, inputVariables, outputVariables);
+        metrics.recordStage(InferenceMetrics.Stage.FUZZIFY, System.nanoTime() - start);
+        pass.metrics = metrics;
+        return pass.run(rules);
+    }
+
+    // accumulator maps each output variable to {numerator, denominator}
+    RulePass<Map<String, double[]>> beginPass(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables,
+            Map<String, LinguisticVariable> outputVariables) {
 
         // fuzzification
         Map<String, Map<String, Double>> fuzzifiedInputs = new HashMap<>();
@@ -40,71 +82,166 @@ public class SugenoInferenceEngine implements InferenceEngine {
             }
         }
 
-        // weighted average calculation
-        Map<String, Double> numerators = new HashMap<>();
-        Map<String, Double> denominators = new HashMap<>();
+        return new RulePass<>() {
+            // weighted average calculation
+            @Override
+            Map<String, double[]> newAccumulator() {
+                Map<String, double[]> sums = new HashMap<>();
+                for (LinguisticVariable outputVar : outputVariables.values()) {
+                    sums.put(outputVar.getName(), new double[2]);
+                }
+                return sums;
+            }
 
-        for (LinguisticVariable outputVar : outputVariables.values()) {
-            numerators.put(outputVar.getName(), 0.0);
-            denominators.put(outputVar.getName(), 0.0);
-        }
+            @Override
+            boolean accumulate(Map<String, double[]> sums, FuzzyRule rule) {
+                if (!rule.isEnabled()) return false;
 
-        for (FuzzyRule rule : rules) {
-            if (!rule.isEnabled()) continue;
+                // evaluate rule strength
+                double ruleStrength = rule.evaluateStrength(fuzzifiedInputs, andOperator, orOperator, notOperator);
 
-            // evaluate rule strength
-            double ruleStrength = rule.evaluateStrength(fuzzifiedInputs, andOperator, orOperator, notOperator);
+                if (ruleStrength > 0) {
+                    FuzzyRule.Consequent consequent = rule.getConsequent();
+                    if (consequent == null) return true;
 
-            if (ruleStrength > 0) {
-                FuzzyRule.Consequent consequent = rule.getConsequent();
-                if (consequent == null) continue;
+                    double[] sum = sums.get(consequent.getVariable());
+                    if (sum == null) return true;
 
-                String outputVarName = consequent.getVariable();
-                String outputSetName = consequent.getFuzzySet();
+                    PolynomialFunction function = getConsequentFunction(consequent.getVariable(), consequent.getFuzzySet());
 
-                ConstantFunction function = null;
-                if (consequentFunctions.containsKey(outputVarName)) {
-                    function = consequentFunctions.get(outputVarName).get(outputSetName);
+                    double consequentValue;
+                    if (function != null) {
+                        function.checkInputs(rule.getName(), inputVariables.keySet());
+                        consequentValue = function.evaluate(crispInputs, inputVariables);
+                    } else {
+                        consequentValue = 0.5;
+                    }
+
+                    sum[0] += ruleStrength * consequentValue;
+                    sum[1] += ruleStrength;
+                    return true;
                 }
+                return false;
+            }
 
-                double consequentValue;
-                if (function != null) {
-                    consequentValue = function.evaluate();
-                } else {
-                    consequentValue = 0.5;
+            @Override
+            void combine(Map<String, double[]> target, Map<String, double[]> other) {
+                for (Map.Entry<String, double[]> entry : target.entrySet()) {
+                    double[] partial = other.get(entry.getKey());
+                    entry.getValue()[0] += partial[0];
+                    entry.getValue()[1] += partial[1];
                 }
+            }
 
-                numerators.put(outputVarName, numerators.get(outputVarName) + ruleStrength * consequentValue);
-                denominators.put(outputVarName, denominators.get(outputVarName) + ruleStrength);
+            // calculate weighted average
+            @Override
+            Map<String, Double> finish(Map<String, double[]> sums) {
+                Map<String, Double> crispOutputs = new HashMap<>();
+                for (Map.Entry<String, double[]> entry : sums.entrySet()) {
+                    double denominator = entry.getValue()[1];
+                    if (denominator > 0) {
+                        crispOutputs.put(entry.getKey(), entry.getValue()[0] / denominator);
+                    } else {
+                        LinguisticVariable outputVar = outputVariables.get(entry.getKey());
+                        crispOutputs.put(entry.getKey(),
+                                (outputVar.getMinValue() + outputVar.getMaxValue()) / 2);
+                    }
+                }
+                return crispOutputs;
             }
+        };
+    }
+
+    // Rule output z = constant + sum over inputs v of (a1 * x + a2 * x^2 + ... + ad * x^d),
+    // with coefficients[v] = {a1, ..., ad}. Degree 1 is first-order (linear) TSK; terms
+    // mixing different inputs are not supported.
+    public static class PolynomialFunction {
+        private final double constant;
+        private final Map<String, double[]> coefficients;
+        private final int degree;
+
+        public PolynomialFunction(double constant, Map<String, double[]> coefficients) {
+            Map<String, double[]> copy = new LinkedHashMap<>();
+            int maxDegree = 0;
+            for (Map.Entry<String, double[]> entry : coefficients.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue().clone());
+                maxDegree = Math.max(maxDegree, entry.getValue().length);
+            }
+            this.constant = constant;
+            this.coefficients = Collections.unmodifiableMap(copy);
+            this.degree = maxDegree;
+        }
+
+        // first-order: constant + sum of coefficient * input
+        public static PolynomialFunction linear(double constant, Map<String, Double> coefficients) {
+            Map<String, double[]> terms = new LinkedHashMap<>();
+            for (Map.Entry<String, Double> entry : coefficients.entrySet()) {
+                terms.put(entry.getKey(), new double[]{entry.getValue()});
+            }
+            return new PolynomialFunction(constant, terms);
+        }
+
+        // the compiled model and the engine both reject a consequent over an undeclared input
+        public void checkInputs(String ruleName, Collection<String> inputNames) {
+            for (String input : coefficients.keySet()) {
+                if (!inputNames.contains(input)) {
+                    throw new IllegalArgumentException("Consequent of rule " + ruleName
+                            + " references unknown input variable: " + input);
+                }
+            }
+        }
+
+        // inputs are summed in the variables' order, the order the compiled model uses; a missing
+        // input takes its variable's midpoint, as a NaN does there. Inputs must pass checkInputs.
+        public double evaluate(Map<String, Double> crispInputs, Map<String, LinguisticVariable> inputVariables) {
+            double value = constant;
+            if (degree == 0) return value;
+            for (Map.Entry<String, LinguisticVariable> input : inputVariables.entrySet()) {
+                double[] a = coefficients.get(input.getKey());
+                if (a == null) continue;
+                Double x = crispInputs.get(input.getKey());
+                LinguisticVariable var = input.getValue();
+                value += horner(a, x != null ? x : (var.getMinValue() + var.getMaxValue()) / 2.0);
+            }
+            return value;
+        }
+
+        // every input with a coefficient must have a value
+        public double evaluate(Map<String, Double> crispInputs) {
+            double value = constant;
+            for (Map.Entry<String, double[]> term : coefficients.entrySet()) {
+                Double x = crispInputs.get(term.getKey());
+                if (x == null) {
+                    throw new IllegalArgumentException("Missing value for input variable: " + term.getKey());
+                }
+                value += horner(term.getValue(), x);
+            }
+            return value;
         }
 
-        // calculate weighted average
-        Map<String, Double> crispOutputs = new HashMap<>();
-        for (String outputVarName : numerators.keySet()) {
-            double denominator = denominators.get(outputVarName);
-            if (denominator > 0) {
-                crispOutputs.put(outputVarName, numerators.get(outputVarName) / denominator);
-            } else {
-                LinguisticVariable outputVar = outputVariables.get(outputVarName);
-                crispOutputs.put(outputVarName,
-                        (outputVar.getMinValue() + outputVar.getMaxValue()) / 2);
+        // a1 * x + ... + ad * x^d by Horner's rule
+        public static double horner(double[] a, double x) {
+            double p = 0.0;
+            for (int k = a.length - 1; k >= 0; k--) {
+                p = p * x + a[k];
             }
+            return p * x;
         }
 
-        return crispOutputs;
+        public double getConstant() { return constant; }
+        public int getDegree() { return degree; }
+        public Map<String, double[]> getCoefficients() { return coefficients; }
     }
 
     // zero-order function
-    public static class ConstantFunction {
-        private final double constant;
+    public static class ConstantFunction extends PolynomialFunction {
 
         public ConstantFunction(double constant) {
-            this.constant = constant;
+            super(constant, Map.of());
         }
 
         public double evaluate() {
-            return constant;
+            return getConstant();
         }
     }
 }
\ No newline at end of file
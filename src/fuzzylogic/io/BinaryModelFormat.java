@@ -0,0 +1,450 @@
+package fuzzylogic.io;
+
+import fuzzylogic.core.FuzzySet;
+import fuzzylogic.core.FuzzySystem;
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.defuzzification.AnalyticDefuzzification;
+import fuzzylogic.defuzzification.BisectorDefuzzification;
+import fuzzylogic.defuzzification.CentroidDefuzzification;
+import fuzzylogic.defuzzification.DefuzzificationMethod;
+import fuzzylogic.defuzzification.MeanOfMaximumDefuzzification;
+import fuzzylogic.inference.InferenceEngine;
+import fuzzylogic.inference.MamdaniInferenceEngine;
+import fuzzylogic.inference.ParallelInferenceEngine;
+import fuzzylogic.inference.SugenoInferenceEngine;
+import fuzzylogic.membershipFunction.GaussianMF;
+import fuzzylogic.membershipFunction.MembershipFunction;
+import fuzzylogic.membershipFunction.TrapezoidalMF;
+import fuzzylogic.membershipFunction.TriangularMF;
+import fuzzylogic.operators.*;
+import fuzzylogic.operators.aggregation.AggregationOperator;
+import fuzzylogic.operators.aggregation.MaxAggregation;
+import fuzzylogic.operators.aggregation.SumAggregation;
+import fuzzylogic.operators.implication.ImplicationOperator;
+import fuzzylogic.operators.implication.MinImplication;
+import fuzzylogic.operators.implication.ProductImplication;
+import fuzzylogic.rules.FuzzyRule;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact little-endian binary form of a complete FuzzySystem, laid out as fixed-size records
+// so MappedFuzzySystem can evaluate it straight from a memory-mapped file.
+//
+//   header        HEADER_BYTES: magic, version, engine codes, counts, section offsets
+//   strings       per string: int blob offset, int byte length
+//   inputs        VARIABLE_BYTES per variable: int name, int first set, int set count, pad, double min, double max
+//   input sets    SET_BYTES per set: int name, int shape, double[4] parameters
+//   outputs       as inputs, over the output sets
+//   output sets   as input sets
+//   rules         RULE_BYTES per rule (see the RULE_* offsets)
+//   antecedents   ANTECEDENT_BYTES each: int input set slot, int flags
+//   functions     FUNCTION_BYTES per Sugeno constant: int output name, int set name, double constant
+//   blob          UTF-8 string bytes
+public final class BinaryModelFormat {
+    public static final int MAGIC = 0x31535A46; // "FZS1"
+    public static final int VERSION = 1;
+
+    static final int MODE_MAMDANI = 0;
+    static final int MODE_SUGENO = 1;
+
+    static final int SHAPE_TRIANGULAR = 0;
+    static final int SHAPE_TRAPEZOIDAL = 1;
+    static final int SHAPE_GAUSSIAN = 2;
+
+    static final int ANTECEDENT_AND = 1;
+    static final int ANTECEDENT_NOT = 2;
+    static final int RULE_ENABLED = 1;
+
+    // header fields
+    static final int H_MAGIC = 0, H_VERSION = 4, H_MODE = 8;
+    static final int H_AND = 12, H_OR = 16, H_NOT = 20, H_IMPLICATION = 24, H_AGGREGATION = 28;
+    static final int H_DEFUZZIFICATION = 32, H_NUM_STEPS = 36, H_ANALYTIC = 40;
+    static final int H_NUM_INPUTS = 44, H_NUM_OUTPUTS = 48, H_NUM_INPUT_SETS = 52, H_NUM_OUTPUT_SETS = 56;
+    static final int H_NUM_RULES = 60, H_NUM_ANTECEDENTS = 64, H_NUM_FUNCTIONS = 68, H_NUM_STRINGS = 72;
+    static final int H_STRINGS = 80, H_INPUTS = 88, H_INPUT_SETS = 96, H_OUTPUTS = 104, H_OUTPUT_SETS = 112;
+    static final int H_RULES = 120, H_ANTECEDENTS = 128, H_FUNCTIONS = 136, H_BLOB = 144;
+    static final int HEADER_BYTES = 152;
+
+    static final int STRING_BYTES = 8;
+    static final int VARIABLE_BYTES = 32;
+    static final int SET_BYTES = 40;
+    static final int ANTECEDENT_BYTES = 8;
+    static final int FUNCTION_BYTES = 16;
+
+    // rule record; output and output set are -1 when the consequent does not resolve,
+    // and the constant is the Sugeno consequent value already looked up
+    static final int RULE_WEIGHT = 0, RULE_CONSTANT = 8, RULE_FIRST_ANTECEDENT = 16, RULE_ANTECEDENT_COUNT = 20;
+    static final int RULE_OUTPUT = 24, RULE_OUTPUT_SET = 28, RULE_FLAGS = 32, RULE_NAME = 36;
+    static final int RULE_CONSEQUENT_VARIABLE = 40, RULE_CONSEQUENT_SET = 44;
+    static final int RULE_BYTES = 48;
+
+    private BinaryModelFormat() {
+    }
+
+    public static FuzzySystem read(Path path) throws IOException {
+        return MappedFuzzySystem.open(path).toFuzzySystem();
+    }
+
+    public static void write(FuzzySystem system, Path path) throws IOException {
+        ByteBuffer buffer = encode(system);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    static ByteBuffer encode(FuzzySystem system) {
+        Map<String, LinguisticVariable> inputs = system.getInputVariables();
+        Map<String, LinguisticVariable> outputs = system.getOutputVariables();
+        List<FuzzyRule> rules = system.getRuleBase().getAllRules();
+        InferenceEngine engine = system.getInferenceEngine();
+        if (engine instanceof ParallelInferenceEngine parallel) {
+            engine = parallel.getDelegate();
+        }
+        if (engine instanceof MamdaniInferenceEngine mamdani && mamdani.getAdaptiveResolution() > 0) {
+            throw new IllegalArgumentException("Binary model format stores uniform output grids only; disable adaptive resolution first");
+        }
+
+        Strings strings = new Strings();
+        int numInputSets = 0;
+        for (LinguisticVariable var : inputs.values()) numInputSets += var.getFuzzySets().size();
+        int numOutputSets = 0;
+        for (LinguisticVariable var : outputs.values()) numOutputSets += var.getFuzzySets().size();
+        int numAntecedents = 0;
+        for (FuzzyRule rule : rules) numAntecedents += rule.getAntecedents().size();
+
+        List<Object[]> functions = new ArrayList<>();
+        if (engine instanceof SugenoInferenceEngine sugeno) {
+            for (Map.Entry<String, Map<String, SugenoInferenceEngine.PolynomialFunction>> byOutput : sugeno.getConsequentFunctions().entrySet()) {
+                for (Map.Entry<String, SugenoInferenceEngine.PolynomialFunction> entry : byOutput.getValue().entrySet()) {
+                    if (entry.getValue().getDegree() > 0) {
+                        throw new IllegalArgumentException("Binary model format stores zero-order Sugeno consequents only: "
+                                + byOutput.getKey() + "." + entry.getKey());
+                    }
+                    functions.add(new Object[]{byOutput.getKey(), entry.getKey(), entry.getValue().getConstant()});
+                }
+            }
+        }
+
+        // string names are interned first so the blob size is known before laying out sections
+        for (LinguisticVariable var : inputs.values()) internNames(var, strings);
+        for (LinguisticVariable var : outputs.values()) internNames(var, strings);
+        for (FuzzyRule rule : rules) {
+            strings.intern(rule.getName());
+            if (rule.getConsequent() != null) {
+                strings.intern(rule.getConsequent().getVariable());
+                strings.intern(rule.getConsequent().getFuzzySet());
+            }
+        }
+        for (Object[] function : functions) {
+            strings.intern((String) function[0]);
+            strings.intern((String) function[1]);
+        }
+
+        long stringsAt = HEADER_BYTES;
+        long inputsAt = stringsAt + (long) strings.size() * STRING_BYTES;
+        long inputSetsAt = inputsAt + (long) inputs.size() * VARIABLE_BYTES;
+        long outputsAt = inputSetsAt + (long) numInputSets * SET_BYTES;
+        long outputSetsAt = outputsAt + (long) outputs.size() * VARIABLE_BYTES;
+        long rulesAt = outputSetsAt + (long) numOutputSets * SET_BYTES;
+        long antecedentsAt = rulesAt + (long) rules.size() * RULE_BYTES;
+        long functionsAt = antecedentsAt + (long) numAntecedents * ANTECEDENT_BYTES;
+        long blobAt = functionsAt + (long) functions.size() * FUNCTION_BYTES;
+        long total = blobAt + strings.blobSize;
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Model too large for one mapped buffer: " + total + " bytes");
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) total).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(H_MAGIC, MAGIC).putInt(H_VERSION, VERSION);
+        if (engine instanceof MamdaniInferenceEngine mamdani) {
+            out.putInt(H_MODE, MODE_MAMDANI)
+                    .putInt(H_AND, encodeAnd(mamdani.getAndOperator()))
+                    .putInt(H_OR, encodeOr(mamdani.getOrOperator()))
+                    .putInt(H_NOT, encodeNot(mamdani.getNotOperator()))
+                    .putInt(H_IMPLICATION, encodeImplication(mamdani.getImplicationOperator()))
+                    .putInt(H_AGGREGATION, encodeAggregation(mamdani.getAggregationOperator()))
+                    .putInt(H_DEFUZZIFICATION, encodeDefuzzification(mamdani.getDefuzzificationMethod()))
+                    .putInt(H_NUM_STEPS, mamdani.getResolution())
+                    .putInt(H_ANALYTIC, mamdani.getAnalyticDefuzzification() != null
+                            ? mamdani.getAnalyticDefuzzification().getMethod().ordinal() : -1);
+        } else if (engine instanceof SugenoInferenceEngine sugeno) {
+            out.putInt(H_MODE, MODE_SUGENO)
+                    .putInt(H_AND, encodeAnd(sugeno.getAndOperator()))
+                    .putInt(H_OR, encodeOr(sugeno.getOrOperator()))
+                    .putInt(H_NOT, encodeNot(sugeno.getNotOperator()))
+                    .putInt(H_IMPLICATION, -1).putInt(H_AGGREGATION, -1).putInt(H_DEFUZZIFICATION, -1)
+                    .putInt(H_NUM_STEPS, 0).putInt(H_ANALYTIC, -1);
+        } else {
+            throw new IllegalArgumentException("Cannot encode inference engine: " + engine.getClass().getName());
+        }
+        out.putInt(H_NUM_INPUTS, inputs.size()).putInt(H_NUM_OUTPUTS, outputs.size())
+                .putInt(H_NUM_INPUT_SETS, numInputSets).putInt(H_NUM_OUTPUT_SETS, numOutputSets)
+                .putInt(H_NUM_RULES, rules.size()).putInt(H_NUM_ANTECEDENTS, numAntecedents)
+                .putInt(H_NUM_FUNCTIONS, functions.size()).putInt(H_NUM_STRINGS, strings.size());
+        out.putLong(H_STRINGS, stringsAt).putLong(H_INPUTS, inputsAt).putLong(H_INPUT_SETS, inputSetsAt)
+                .putLong(H_OUTPUTS, outputsAt).putLong(H_OUTPUT_SETS, outputSetsAt).putLong(H_RULES, rulesAt)
+                .putLong(H_ANTECEDENTS, antecedentsAt).putLong(H_FUNCTIONS, functionsAt).putLong(H_BLOB, blobAt);
+
+        strings.write(out, (int) stringsAt, (int) blobAt);
+        Map<String, Map<String, Integer>> inputSlots = writeVariables(out, inputs, strings, (int) inputsAt, (int) inputSetsAt);
+        Map<String, Map<String, Integer>> outputSlots = writeVariables(out, outputs, strings, (int) outputsAt, (int) outputSetsAt);
+        List<String> outputNames = new ArrayList<>(outputs.keySet());
+
+        int a = 0;
+        for (int r = 0; r < rules.size(); r++) {
+            FuzzyRule rule = rules.get(r);
+            int base = (int) rulesAt + r * RULE_BYTES;
+            out.putDouble(base + RULE_WEIGHT, rule.getWeight())
+                    .putInt(base + RULE_FIRST_ANTECEDENT, a)
+                    .putInt(base + RULE_ANTECEDENT_COUNT, rule.getAntecedents().size())
+                    .putInt(base + RULE_FLAGS, rule.isEnabled() ? RULE_ENABLED : 0)
+                    .putInt(base + RULE_NAME, strings.intern(rule.getName()));
+
+            for (FuzzyRule.Antecedent ant : rule.getAntecedents()) {
+                Map<String, Integer> slots = inputSlots.get(ant.getVariable());
+                if (slots == null) {
+                    throw new IllegalArgumentException("Rule " + rule.getName() + " references unknown input variable: " + ant.getVariable());
+                }
+                Integer slot = slots.get(ant.getFuzzySet());
+                if (slot == null) {
+                    throw new IllegalArgumentException("Rule " + rule.getName() + " references unknown fuzzy set: "
+                            + ant.getVariable() + "." + ant.getFuzzySet());
+                }
+                int at = (int) antecedentsAt + a * ANTECEDENT_BYTES;
+                out.putInt(at, slot).putInt(at + 4, (ant.isAnd() ? ANTECEDENT_AND : 0) | (ant.isNot() ? ANTECEDENT_NOT : 0));
+                a++;
+            }
+
+            // the same resolution rules as the engines: unknown consequents never fire
+            FuzzyRule.Consequent consequent = rule.getConsequent();
+            int output = -1;
+            int outputSet = -1;
+            double constant = 0.5;
+            if (consequent != null) {
+                out.putInt(base + RULE_CONSEQUENT_VARIABLE, strings.intern(consequent.getVariable()))
+                        .putInt(base + RULE_CONSEQUENT_SET, strings.intern(consequent.getFuzzySet()));
+                output = outputNames.indexOf(consequent.getVariable());
+                Integer set = output >= 0 ? outputSlots.get(consequent.getVariable()).get(consequent.getFuzzySet()) : null;
+                if (engine instanceof SugenoInferenceEngine sugeno) {
+                    SugenoInferenceEngine.PolynomialFunction function =
+                            sugeno.getConsequentFunction(consequent.getVariable(), consequent.getFuzzySet());
+                    if (function != null) constant = function.getConstant();
+                    outputSet = set != null ? set : -1;
+                } else if (set != null) {
+                    outputSet = set;
+                } else {
+                    output = -1;
+                }
+            } else {
+                out.putInt(base + RULE_CONSEQUENT_VARIABLE, -1).putInt(base + RULE_CONSEQUENT_SET, -1);
+            }
+            out.putInt(base + RULE_OUTPUT, output).putInt(base + RULE_OUTPUT_SET, outputSet)
+                    .putDouble(base + RULE_CONSTANT, constant);
+        }
+
+        for (int f = 0; f < functions.size(); f++) {
+            int at = (int) functionsAt + f * FUNCTION_BYTES;
+            Object[] function = functions.get(f);
+            out.putInt(at, strings.intern((String) function[0]))
+                    .putInt(at + 4, strings.intern((String) function[1]))
+                    .putDouble(at + 8, (Double) function[2]);
+        }
+        return out;
+    }
+
+    private static void internNames(LinguisticVariable var, Strings strings) {
+        strings.intern(var.getName());
+        for (String setName : var.getFuzzySets().keySet()) strings.intern(setName);
+    }
+
+    // returns variable -> set -> slot, slots numbered across all variables of the section
+    private static Map<String, Map<String, Integer>> writeVariables(ByteBuffer out, Map<String, LinguisticVariable> vars,
+                                                                   Strings strings, int varsAt, int setsAt) {
+        Map<String, Map<String, Integer>> slots = new HashMap<>();
+        int v = 0;
+        int slot = 0;
+        for (LinguisticVariable var : vars.values()) {
+            int base = varsAt + v * VARIABLE_BYTES;
+            out.putInt(base, strings.intern(var.getName())).putInt(base + 4, slot)
+                    .putInt(base + 8, var.getFuzzySets().size())
+                    .putDouble(base + 16, var.getMinValue()).putDouble(base + 24, var.getMaxValue());
+
+            Map<String, Integer> setSlots = new HashMap<>();
+            for (FuzzySet set : var.getFuzzySets().values()) {
+                int at = setsAt + slot * SET_BYTES;
+                out.putInt(at, strings.intern(set.getName()));
+                writeShape(out, at, set.getMembershipFunction());
+                setSlots.put(set.getName(), slot++);
+            }
+            slots.put(var.getName(), setSlots);
+            v++;
+        }
+        return slots;
+    }
+
+    private static void writeShape(ByteBuffer out, int at, MembershipFunction mf) {
+        double[] params;
+        int shape;
+        if (mf.getClass() == TriangularMF.class) {
+            shape = SHAPE_TRIANGULAR;
+            params = ((TriangularMF) mf).getBreakpoints();
+        } else if (mf.getClass() == TrapezoidalMF.class) {
+            shape = SHAPE_TRAPEZOIDAL;
+            params = ((TrapezoidalMF) mf).getBreakpoints();
+        } else if (mf.getClass() == GaussianMF.class) {
+            shape = SHAPE_GAUSSIAN;
+            params = new double[]{((GaussianMF) mf).getMean(), ((GaussianMF) mf).getSigma()};
+        } else {
+            throw new IllegalArgumentException("Cannot encode membership function: " + mf.getClass().getName());
+        }
+        out.putInt(at + 4, shape);
+        for (int i = 0; i < 4; i++) {
+            out.putDouble(at + 8 + 8 * i, i < params.length ? params[i] : 0.0);
+        }
+    }
+
+    static MembershipFunction readShape(ByteBuffer in, int at) {
+        double p0 = in.getDouble(at + 8), p1 = in.getDouble(at + 16), p2 = in.getDouble(at + 24), p3 = in.getDouble(at + 32);
+        return switch (in.getInt(at + 4)) {
+            case SHAPE_TRIANGULAR -> new TriangularMF(p0, p1, p2);
+            case SHAPE_TRAPEZOIDAL -> new TrapezoidalMF(p0, p1, p2, p3);
+            case SHAPE_GAUSSIAN -> new GaussianMF(p0, p1);
+            default -> throw unknownCode("shape", in.getInt(at + 4));
+        };
+    }
+
+    // operator codes
+    private static int encodeAnd(BinaryOperator op) {
+        if (op instanceof AndMin) return 0;
+        if (op instanceof AndProduct) return 1;
+        throw new IllegalArgumentException("Cannot encode AND operator: " + op.getClass().getName());
+    }
+
+    private static int encodeOr(BinaryOperator op) {
+        if (op instanceof OrMax) return 0;
+        if (op instanceof OrSum) return 1;
+        throw new IllegalArgumentException("Cannot encode OR operator: " + op.getClass().getName());
+    }
+
+    private static int encodeNot(UnaryOperator op) {
+        if (op instanceof NotComplement) return 0;
+        throw new IllegalArgumentException("Cannot encode NOT operator: " + op.getClass().getName());
+    }
+
+    private static int encodeImplication(ImplicationOperator op) {
+        if (op instanceof MinImplication) return 0;
+        if (op instanceof ProductImplication) return 1;
+        throw new IllegalArgumentException("Cannot encode implication operator: " + op.getClass().getName());
+    }
+
+    private static int encodeAggregation(AggregationOperator op) {
+        if (op instanceof MaxAggregation) return 0;
+        if (op instanceof SumAggregation) return 1;
+        throw new IllegalArgumentException("Cannot encode aggregation operator: " + op.getClass().getName());
+    }
+
+    private static int encodeDefuzzification(DefuzzificationMethod method) {
+        if (method instanceof CentroidDefuzzification) return 0;
+        if (method instanceof MeanOfMaximumDefuzzification) return 1;
+        if (method instanceof BisectorDefuzzification) return 2;
+        throw new IllegalArgumentException("Cannot encode defuzzification method: " + method.getClass().getName());
+    }
+
+    static BinaryOperator decodeAnd(int code) {
+        return switch (code) {
+            case 0 -> new AndMin();
+            case 1 -> new AndProduct();
+            default -> throw unknownCode("AND operator", code);
+        };
+    }
+
+    static BinaryOperator decodeOr(int code) {
+        return switch (code) {
+            case 0 -> new OrMax();
+            case 1 -> new OrSum();
+            default -> throw unknownCode("OR operator", code);
+        };
+    }
+
+    static UnaryOperator decodeNot(int code) {
+        if (code != 0) throw unknownCode("NOT operator", code);
+        return new NotComplement();
+    }
+
+    static ImplicationOperator decodeImplication(int code) {
+        return switch (code) {
+            case 0 -> new MinImplication();
+            case 1 -> new ProductImplication();
+            default -> throw unknownCode("implication operator", code);
+        };
+    }
+
+    static AggregationOperator decodeAggregation(int code) {
+        return switch (code) {
+            case 0 -> new MaxAggregation();
+            case 1 -> new SumAggregation();
+            default -> throw unknownCode("aggregation operator", code);
+        };
+    }
+
+    static DefuzzificationMethod decodeDefuzzification(int code) {
+        return switch (code) {
+            case 0 -> new CentroidDefuzzification();
+            case 1 -> new MeanOfMaximumDefuzzification();
+            case 2 -> new BisectorDefuzzification();
+            default -> throw unknownCode("defuzzification method", code);
+        };
+    }
+
+    private static IllegalArgumentException unknownCode(String what, int code) {
+        return new IllegalArgumentException("Unknown " + what + " code: " + code);
+    }
+
+    static AnalyticDefuzzification decodeAnalytic(int code) {
+        if (code == -1) return null;
+        AnalyticDefuzzification.Method[] methods = AnalyticDefuzzification.Method.values();
+        if (code < 0 || code >= methods.length) throw unknownCode("analytic defuzzification method", code);
+        return new AnalyticDefuzzification(methods[code]);
+    }
+
+    // deduplicated string table
+    private static class Strings {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private long blobSize;
+
+        int intern(String value) {
+            return ids.computeIfAbsent(value, v -> {
+                byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+                values.add(bytes);
+                blobSize += bytes.length;
+                return values.size() - 1;
+            });
+        }
+
+        int size() { return values.size(); }
+
+        void write(ByteBuffer out, int indexAt, int blobAt) {
+            int offset = 0;
+            for (int i = 0; i < values.size(); i++) {
+                byte[] bytes = values.get(i);
+                out.putInt(indexAt + i * STRING_BYTES, offset).putInt(indexAt + i * STRING_BYTES + 4, bytes.length);
+                out.put(blobAt + offset, bytes);
+                offset += bytes.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package fuzzylogic.io;
+
+import fuzzylogic.core.FuzzySet;
+import fuzzylogic.core.FuzzySystem;
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.defuzzification.AnalyticDefuzzification;
+import fuzzylogic.defuzzification.DefuzzificationMethod;
+import fuzzylogic.inference.InferenceEngine;
+import fuzzylogic.inference.MamdaniInferenceEngine;
+import fuzzylogic.inference.SugenoInferenceEngine;
+import fuzzylogic.membershipFunction.MembershipFunction;
+import fuzzylogic.membershipFunction.MembershipKernel;
+import fuzzylogic.membershipFunction.PiecewiseLinearMF;
+import fuzzylogic.operators.BinaryOperator;
+import fuzzylogic.operators.UnaryOperator;
+import fuzzylogic.operators.aggregation.AggregationOperator;
+import fuzzylogic.operators.implication.ImplicationOperator;
+import fuzzylogic.rules.FuzzyRule;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static fuzzylogic.io.BinaryModelFormat.*;
+
+// A BinaryModelFormat file evaluated in place. Rules and antecedents, the part that grows with
+// the model, are read straight from the read-only mapping, so processes mapping the same file
+// share its page-cache pages and opening costs no parsing. Variables, sets and operators are
+// small and are decoded onto the heap once. Results match CompiledFuzzySystem exactly.
+// The buffer is only read, so any number of threads may evaluate, each with its own workspace.
+public final class MappedFuzzySystem {
+    private final ByteBuffer buffer;
+    private final int mode;
+
+    private final String[] inputNames;
+    private final double[] inputMin;
+    private final double[] inputMax;
+    private final int[] setOffset;
+    private final MembershipKernel[] inputKernels;
+    private final int numInputSets;
+
+    private final String[] outputNames;
+    private final double[] outputMin;
+    private final double[] outputMax;
+    private final MembershipFunction[] outputSets;
+    private final double[][] outputSamples;
+    private final boolean[] outputAnalytic;
+
+    private final int numRules;
+    private final int rulesAt;
+    private final int antecedentsAt;
+
+    private final BinaryOperator andOperator;
+    private final BinaryOperator orOperator;
+    private final UnaryOperator notOperator;
+    private final ImplicationOperator implicationOperator;
+    private final AggregationOperator aggregationOperator;
+    private final DefuzzificationMethod defuzzificationMethod;
+    private final AnalyticDefuzzification analyticDefuzzification;
+    private final int numSteps;
+
+    private MappedFuzzySystem(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(H_MAGIC) != MAGIC) {
+            throw new IllegalArgumentException("Not a fuzzy model file");
+        }
+        if (buffer.getInt(H_VERSION) != VERSION) {
+            throw new IllegalArgumentException("Unsupported model file version: " + buffer.getInt(H_VERSION));
+        }
+
+        mode = buffer.getInt(H_MODE);
+        andOperator = decodeAnd(buffer.getInt(H_AND));
+        orOperator = decodeOr(buffer.getInt(H_OR));
+        notOperator = decodeNot(buffer.getInt(H_NOT));
+        numSteps = buffer.getInt(H_NUM_STEPS);
+        if (mode == MODE_MAMDANI) {
+            implicationOperator = decodeImplication(buffer.getInt(H_IMPLICATION));
+            aggregationOperator = decodeAggregation(buffer.getInt(H_AGGREGATION));
+            defuzzificationMethod = decodeDefuzzification(buffer.getInt(H_DEFUZZIFICATION));
+            AnalyticDefuzzification analytic = decodeAnalytic(buffer.getInt(H_ANALYTIC));
+            analyticDefuzzification = analytic != null && analytic.supports(implicationOperator, aggregationOperator)
+                    ? analytic : null;
+        } else if (mode == MODE_SUGENO) {
+            implicationOperator = null;
+            aggregationOperator = null;
+            defuzzificationMethod = null;
+            analyticDefuzzification = null;
+        } else {
+            throw new IllegalArgumentException("Unknown inference mode: " + mode);
+        }
+
+        // inputs
+        int numInputs = buffer.getInt(H_NUM_INPUTS);
+        int inputsAt = (int) buffer.getLong(H_INPUTS);
+        int inputSetsAt = (int) buffer.getLong(H_INPUT_SETS);
+        inputNames = new String[numInputs];
+        inputMin = new double[numInputs];
+        inputMax = new double[numInputs];
+        setOffset = new int[numInputs + 1];
+        inputKernels = new MembershipKernel[numInputs];
+        for (int v = 0; v < numInputs; v++) {
+            int base = inputsAt + v * VARIABLE_BYTES;
+            inputNames[v] = string(buffer.getInt(base));
+            setOffset[v] = buffer.getInt(base + 4);
+            inputMin[v] = buffer.getDouble(base + 16);
+            inputMax[v] = buffer.getDouble(base + 24);
+            List<MembershipFunction> functions = new ArrayList<>();
+            for (int s = 0; s < buffer.getInt(base + 8); s++) {
+                functions.add(readShape(buffer, inputSetsAt + (setOffset[v] + s) * SET_BYTES));
+            }
+            inputKernels[v] = new MembershipKernel(functions);
+        }
+        numInputSets = buffer.getInt(H_NUM_INPUT_SETS);
+        setOffset[numInputs] = numInputSets;
+
+        // outputs, with the sampled sets Mamdani aggregation needs
+        int numOutputs = buffer.getInt(H_NUM_OUTPUTS);
+        int outputsAt = (int) buffer.getLong(H_OUTPUTS);
+        int outputSetsAt = (int) buffer.getLong(H_OUTPUT_SETS);
+        outputNames = new String[numOutputs];
+        outputMin = new double[numOutputs];
+        outputMax = new double[numOutputs];
+        outputAnalytic = new boolean[numOutputs];
+        outputSets = new MembershipFunction[buffer.getInt(H_NUM_OUTPUT_SETS)];
+        outputSamples = new double[outputSets.length][];
+        for (int o = 0; o < numOutputs; o++) {
+            int base = outputsAt + o * VARIABLE_BYTES;
+            outputNames[o] = string(buffer.getInt(base));
+            outputMin[o] = buffer.getDouble(base + 16);
+            outputMax[o] = buffer.getDouble(base + 24);
+            int first = buffer.getInt(base + 4);
+            int count = buffer.getInt(base + 8);
+            boolean piecewiseLinear = true;
+            for (int s = first; s < first + count; s++) {
+                outputSets[s] = readShape(buffer, outputSetsAt + s * SET_BYTES);
+                piecewiseLinear &= outputSets[s] instanceof PiecewiseLinearMF;
+                if (mode == MODE_MAMDANI) {
+                    outputSamples[s] = MamdaniInferenceEngine.sample(new FuzzySet("", outputSets[s]),
+                            outputMin[o], outputMax[o], numSteps);
+                }
+            }
+            outputAnalytic[o] = analyticDefuzzification != null && piecewiseLinear;
+        }
+
+        numRules = buffer.getInt(H_NUM_RULES);
+        rulesAt = (int) buffer.getLong(H_RULES);
+        antecedentsAt = (int) buffer.getLong(H_ANTECEDENTS);
+    }
+
+    public static MappedFuzzySystem open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Model file too large to map: " + channel.size() + " bytes");
+            }
+            // the mapping stays valid after the channel is closed
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedFuzzySystem(mapped.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    // evaluates an encoded model held in memory, e.g. one just produced by BinaryModelFormat
+    public static MappedFuzzySystem wrap(ByteBuffer buffer) {
+        return new MappedFuzzySystem(buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    public double[] calculate(double[] crispInputs) {
+        double[] crispOutputs = new double[outputNames.length];
+        calculate(crispInputs, crispOutputs, new Workspace());
+        return crispOutputs;
+    }
+
+    // same contract as CompiledFuzzySystem.calculate: NaN means midpoint, inputs are clamped
+    public void calculate(double[] crispInputs, double[] crispOutputs, Workspace workspace) {
+        if (crispInputs.length != inputNames.length) {
+            throw new IllegalArgumentException("Expected " + inputNames.length + " inputs, got " + crispInputs.length);
+        }
+        if (workspace.owner != this) {
+            throw new IllegalArgumentException("Workspace belongs to another model");
+        }
+
+        double[] memberships = workspace.memberships;
+        for (int v = 0; v < inputNames.length; v++) {
+            double value = crispInputs[v];
+            if (Double.isNaN(value)) {
+                value = (inputMin[v] + inputMax[v]) / 2.0;
+            }
+            value = Math.max(inputMin[v], Math.min(inputMax[v], value));
+            inputKernels[v].evaluate(value, memberships, setOffset[v]);
+        }
+
+        for (int o = 0; o < outputNames.length; o++) {
+            workspace.numerators[o] = 0.0;
+            workspace.denominators[o] = 0.0;
+            if (workspace.fired[o] != null) {
+                workspace.fired[o].clear();
+            } else if (workspace.aggregated[o] != null) {
+                Arrays.fill(workspace.aggregated[o], 0.0);
+            }
+        }
+
+        for (int r = 0; r < numRules; r++) {
+            int base = rulesAt + r * RULE_BYTES;
+            int output = buffer.getInt(base + RULE_OUTPUT);
+            int count = buffer.getInt(base + RULE_ANTECEDENT_COUNT);
+            if (output < 0 || count == 0 || (buffer.getInt(base + RULE_FLAGS) & RULE_ENABLED) == 0) continue;
+
+            double strength = ruleStrength(buffer.getInt(base + RULE_FIRST_ANTECEDENT), count, memberships)
+                    * buffer.getDouble(base + RULE_WEIGHT);
+            if (!(strength > 0)) continue;
+
+            if (mode == MODE_SUGENO) {
+                workspace.numerators[output] += strength * buffer.getDouble(base + RULE_CONSTANT);
+                workspace.denominators[output] += strength;
+                continue;
+            }
+
+            int set = buffer.getInt(base + RULE_OUTPUT_SET);
+            if (workspace.fired[output] != null) {
+                workspace.fired[output].add(outputSets[set], strength);
+                continue;
+            }
+            double[] samples = outputSamples[set];
+            double[] grid = workspace.aggregated[output];
+            for (int i = 0; i < numSteps; i++) {
+                grid[i] = aggregationOperator.apply(grid[i], implicationOperator.apply(strength, samples[i]));
+            }
+        }
+
+        for (int o = 0; o < outputNames.length; o++) {
+            if (mode == MODE_SUGENO) {
+                crispOutputs[o] = workspace.denominators[o] > 0
+                        ? workspace.numerators[o] / workspace.denominators[o]
+                        : (outputMin[o] + outputMax[o]) / 2;
+            } else if (workspace.fired[o] != null) {
+                crispOutputs[o] = analyticDefuzzification.defuzzify(workspace.fired[o], implicationOperator,
+                        aggregationOperator, outputMin[o], outputMax[o]);
+            } else {
+                crispOutputs[o] = defuzzificationMethod.defuzzify(workspace.aggregated[o], outputMin[o], outputMax[o], numSteps);
+            }
+        }
+    }
+
+    private double ruleStrength(int first, int count, double[] memberships) {
+        int at = antecedentsAt + first * ANTECEDENT_BYTES;
+        int flags = buffer.getInt(at + 4);
+        double strength = memberships[buffer.getInt(at)];
+        if ((flags & ANTECEDENT_NOT) != 0) {
+            strength = notOperator.apply(strength);
+        }
+
+        for (int a = 1; a < count; a++) {
+            at += ANTECEDENT_BYTES;
+            flags = buffer.getInt(at + 4);
+            double value = memberships[buffer.getInt(at)];
+            if ((flags & ANTECEDENT_NOT) != 0) {
+                value = notOperator.apply(value);
+            }
+            strength = (flags & ANTECEDENT_AND) != 0 ? andOperator.apply(strength, value) : orOperator.apply(strength, value);
+        }
+        return strength;
+    }
+
+    // rebuilds an editable FuzzySystem with the same variables, rules and engine configuration
+    public FuzzySystem toFuzzySystem() {
+        InferenceEngine engine;
+        if (mode == MODE_MAMDANI) {
+            MamdaniInferenceEngine mamdani = new MamdaniInferenceEngine(andOperator, orOperator, notOperator,
+                    implicationOperator, aggregationOperator, defuzzificationMethod, numSteps);
+            mamdani.setAnalyticDefuzzification(decodeAnalytic(buffer.getInt(H_ANALYTIC)));
+            engine = mamdani;
+        } else {
+            SugenoInferenceEngine sugeno = new SugenoInferenceEngine(andOperator, orOperator, notOperator);
+            int functionsAt = (int) buffer.getLong(H_FUNCTIONS);
+            for (int f = 0; f < buffer.getInt(H_NUM_FUNCTIONS); f++) {
+                int at = functionsAt + f * FUNCTION_BYTES;
+                sugeno.setConsequentFunction(string(buffer.getInt(at)), string(buffer.getInt(at + 4)),
+                        new SugenoInferenceEngine.ConstantFunction(buffer.getDouble(at + 8)));
+            }
+            engine = sugeno;
+        }
+
+        FuzzySystem system = new FuzzySystem(engine);
+        String[] inputSetNames = new String[numInputSets];
+        for (LinguisticVariable var : readVariables(H_NUM_INPUTS, H_INPUTS, H_INPUT_SETS, inputSetNames)) {
+            system.addInputVariable(var);
+        }
+        for (LinguisticVariable var : readVariables(H_NUM_OUTPUTS, H_OUTPUTS, H_OUTPUT_SETS, new String[outputSets.length])) {
+            system.addOutputVariable(var);
+        }
+
+        String[] slotVariables = new String[numInputSets];
+        for (int v = 0; v < inputNames.length; v++) {
+            Arrays.fill(slotVariables, setOffset[v], setOffset[v + 1], inputNames[v]);
+        }
+        for (int r = 0; r < numRules; r++) {
+            int base = rulesAt + r * RULE_BYTES;
+            FuzzyRule rule = new FuzzyRule(string(buffer.getInt(base + RULE_NAME)));
+            int first = buffer.getInt(base + RULE_FIRST_ANTECEDENT);
+            for (int a = first; a < first + buffer.getInt(base + RULE_ANTECEDENT_COUNT); a++) {
+                int at = antecedentsAt + a * ANTECEDENT_BYTES;
+                int slot = buffer.getInt(at);
+                int flags = buffer.getInt(at + 4);
+                rule.addAntecedent(slotVariables[slot], inputSetNames[slot],
+                        (flags & ANTECEDENT_AND) != 0, (flags & ANTECEDENT_NOT) != 0);
+            }
+            int consequentVariable = buffer.getInt(base + RULE_CONSEQUENT_VARIABLE);
+            if (consequentVariable >= 0) {
+                rule.setConsequent(string(consequentVariable), string(buffer.getInt(base + RULE_CONSEQUENT_SET)));
+            }
+            rule.setWeight(buffer.getDouble(base + RULE_WEIGHT));
+            rule.setEnabled((buffer.getInt(base + RULE_FLAGS) & RULE_ENABLED) != 0);
+            system.addRule(rule);
+        }
+        return system;
+    }
+
+    private List<LinguisticVariable> readVariables(int countField, int varsField, int setsField, String[] setNames) {
+        int varsAt = (int) buffer.getLong(varsField);
+        int setsAt = (int) buffer.getLong(setsField);
+        List<LinguisticVariable> vars = new ArrayList<>();
+        for (int v = 0; v < buffer.getInt(countField); v++) {
+            int base = varsAt + v * VARIABLE_BYTES;
+            LinguisticVariable var = new LinguisticVariable(string(buffer.getInt(base)),
+                    buffer.getDouble(base + 16), buffer.getDouble(base + 24));
+            int first = buffer.getInt(base + 4);
+            for (int s = first; s < first + buffer.getInt(base + 8); s++) {
+                int at = setsAt + s * SET_BYTES;
+                setNames[s] = string(buffer.getInt(at));
+                var.addFuzzySet(new FuzzySet(setNames[s], readShape(buffer, at)));
+            }
+            vars.add(var);
+        }
+        return vars;
+    }
+
+    private String string(int id) {
+        int at = (int) buffer.getLong(H_STRINGS) + id * STRING_BYTES;
+        byte[] bytes = new byte[buffer.getInt(at + 4)];
+        buffer.get((int) buffer.getLong(H_BLOB) + buffer.getInt(at), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public Workspace newWorkspace() {
+        return new Workspace();
+    }
+
+    public int getInputCount() { return inputNames.length; }
+    public int getOutputCount() { return outputNames.length; }
+    public int getRuleCount() { return numRules; }
+    public String[] getInputNames() { return inputNames.clone(); }
+    public String[] getOutputNames() { return outputNames.clone(); }
+
+    // per-thread scratch buffers
+    public final class Workspace {
+        private final MappedFuzzySystem owner = MappedFuzzySystem.this;
+        private final double[] memberships = new double[numInputSets];
+        private final double[] numerators = new double[outputNames.length];
+        private final double[] denominators = new double[outputNames.length];
+        private final double[][] aggregated = new double[outputNames.length][];
+        private final AnalyticDefuzzification.FiredSets[] fired = new AnalyticDefuzzification.FiredSets[outputNames.length];
+
+        private Workspace() {
+            if (mode == MODE_MAMDANI) {
+                for (int o = 0; o < outputNames.length; o++) {
+                    if (outputAnalytic[o]) {
+                        fired[o] = new AnalyticDefuzzification.FiredSets();
+                    } else {
+                        aggregated[o] = new double[numSteps];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package fuzzylogic.io;
+
+import fuzzylogic.core.FuzzySet;
+import fuzzylogic.core.FuzzySystem;
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.defuzzification.AnalyticDefuzzification;
+import fuzzylogic.defuzzification.BisectorDefuzzification;
+import fuzzylogic.defuzzification.CentroidDefuzzification;
+import fuzzylogic.defuzzification.DefuzzificationMethod;
+import fuzzylogic.defuzzification.MeanOfMaximumDefuzzification;
+import fuzzylogic.inference.InferenceEngine;
+import fuzzylogic.inference.MamdaniInferenceEngine;
+import fuzzylogic.inference.ParallelInferenceEngine;
+import fuzzylogic.inference.SugenoInferenceEngine;
+import fuzzylogic.membershipFunction.GaussianMF;
+import fuzzylogic.membershipFunction.MembershipFunction;
+import fuzzylogic.membershipFunction.TrapezoidalMF;
+import fuzzylogic.membershipFunction.TriangularMF;
+import fuzzylogic.operators.*;
+import fuzzylogic.operators.aggregation.AggregationOperator;
+import fuzzylogic.operators.aggregation.MaxAggregation;
+import fuzzylogic.operators.aggregation.SumAggregation;
+import fuzzylogic.operators.implication.ImplicationOperator;
+import fuzzylogic.operators.implication.MinImplication;
+import fuzzylogic.operators.implication.ProductImplication;
+import fuzzylogic.rules.FuzzyRule;
+import fuzzylogic.rules.RuleTextFormat;
+import fuzzylogic.rules.TextLexer;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// FCL-style text form of a complete FuzzySystem, as ';'-terminated statements:
+//   ENGINE MAMDANI [AND MIN|PRODUCT] [OR MAX|SUM] [NOT COMPLEMENT] [IMPLICATION MIN|PRODUCT]
+//          [AGGREGATION MAX|SUM] [DEFUZZIFY CENTROID|BISECTOR|MOM] [RESOLUTION steps]
+//          [ANALYTIC CENTROID|BISECTOR|MOM] [ADAPTIVE tolerance] ;
+//   ENGINE SUGENO [AND ...] [OR ...] [NOT ...] ;
+//   INPUT|OUTPUT var RANGE min max ;
+//   TERM var set TRIANGULAR a b c | TRAPEZOIDAL a b c d | GAUSSIAN mean sigma ;
+//   CONSEQUENT var set constant { input a1 .. aD } ;          (Sugeno only)
+//   RULE name : IF ... THEN ... [WITH weight] [DISABLED] ;    (as in RuleTextFormat)
+// Keywords are case-insensitive, '#' or '//' comment out the rest of a line, and every name
+// must be declared before it is used. Without an ENGINE statement the model is Mamdani with
+// min/max/complement operators, centroid defuzzification and 200 steps.
+//
+// The parser makes one pass over a buffered Reader without splitting the text: names are
+// interned, so a rule base of any size shares one String per distinct name.
+public final class ModelTextFormat {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ModelTextFormat() {
+    }
+
+    public static FuzzySystem read(Path path) throws IOException {
+        try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(in);
+        }
+    }
+
+    // a model on the classpath, e.g. one shipped next to the classes that use it
+    public static FuzzySystem readResource(String name) throws IOException {
+        InputStream stream = ModelTextFormat.class.getClassLoader().getResourceAsStream(name);
+        if (stream == null) throw new FileNotFoundException("No model resource " + name);
+        try (Reader in = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            return parse(in);
+        }
+    }
+
+    public static FuzzySystem parse(String text) {
+        try {
+            return new Parser(new TextLexer(new StringReader(text), Math.min(text.length() + 2, BUFFER_SIZE))).parse();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static FuzzySystem parse(Reader in) throws IOException {
+        return new Parser(new TextLexer(in, BUFFER_SIZE)).parse();
+    }
+
+    public static void write(FuzzySystem system, Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(system, out);
+        }
+    }
+
+    public static String format(FuzzySystem system) {
+        StringWriter out = new StringWriter();
+        try {
+            write(system, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    public static void write(FuzzySystem system, Writer out) throws IOException {
+        InferenceEngine engine = system.getInferenceEngine();
+        if (engine instanceof ParallelInferenceEngine parallel) {
+            engine = parallel.getDelegate();
+        }
+        if (engine instanceof MamdaniInferenceEngine mamdani) {
+            out.write("ENGINE MAMDANI AND " + andKeyword(mamdani.getAndOperator())
+                    + " OR " + orKeyword(mamdani.getOrOperator())
+                    + " NOT " + notKeyword(mamdani.getNotOperator())
+                    + " IMPLICATION " + implicationKeyword(mamdani.getImplicationOperator())
+                    + " AGGREGATION " + aggregationKeyword(mamdani.getAggregationOperator())
+                    + " DEFUZZIFY " + defuzzificationKeyword(mamdani.getDefuzzificationMethod())
+                    + " RESOLUTION " + mamdani.getResolution());
+            if (mamdani.getAnalyticDefuzzification() != null) {
+                out.write(" ANALYTIC " + analyticKeyword(mamdani.getAnalyticDefuzzification().getMethod()));
+            }
+            if (mamdani.getAdaptiveResolution() > 0) {
+                out.write(" ADAPTIVE " + number(mamdani.getAdaptiveResolution()));
+            }
+        } else if (engine instanceof SugenoInferenceEngine sugeno) {
+            out.write("ENGINE SUGENO AND " + andKeyword(sugeno.getAndOperator())
+                    + " OR " + orKeyword(sugeno.getOrOperator())
+                    + " NOT " + notKeyword(sugeno.getNotOperator()));
+        } else {
+            throw new IllegalArgumentException("Cannot write inference engine: " + engine.getClass().getName());
+        }
+        out.write(";\n\n");
+
+        for (LinguisticVariable var : system.getInputVariables().values()) writeVariable(out, "INPUT", var);
+        for (LinguisticVariable var : system.getOutputVariables().values()) writeVariable(out, "OUTPUT", var);
+
+        if (engine instanceof SugenoInferenceEngine sugeno) {
+            for (Map.Entry<String, Map<String, SugenoInferenceEngine.PolynomialFunction>> byOutput
+                    : sugeno.getConsequentFunctions().entrySet()) {
+                for (Map.Entry<String, SugenoInferenceEngine.PolynomialFunction> entry : byOutput.getValue().entrySet()) {
+                    SugenoInferenceEngine.PolynomialFunction function = entry.getValue();
+                    out.write("CONSEQUENT " + name(byOutput.getKey()) + " " + name(entry.getKey())
+                            + " " + number(function.getConstant()));
+                    for (Map.Entry<String, double[]> term : function.getCoefficients().entrySet()) {
+                        // a name that starts like a number would be read as another coefficient
+                        if (isNumeric(term.getKey())) {
+                            throw new IllegalArgumentException("Consequent input '" + term.getKey()
+                                    + "' would read back as a coefficient");
+                        }
+                        out.write(" " + name(term.getKey()));
+                        for (double a : term.getValue()) out.write(" " + number(a));
+                    }
+                    out.write(";\n");
+                }
+            }
+            out.write('\n');
+        }
+
+        for (FuzzyRule rule : system.getRuleBase().getAllRules()) {
+            out.write(RuleTextFormat.format(rule));
+            out.write('\n');
+        }
+    }
+
+    private static void writeVariable(Writer out, String kind, LinguisticVariable var) throws IOException {
+        out.write(kind + " " + name(var.getName()) + " RANGE " + number(var.getMinValue()) + " " + number(var.getMaxValue()) + ";\n");
+        for (FuzzySet set : var.getFuzzySets().values()) {
+            MembershipFunction mf = set.getMembershipFunction();
+            String shape;
+            double[] params;
+            if (mf.getClass() == TriangularMF.class) {
+                shape = "TRIANGULAR";
+                params = ((TriangularMF) mf).getBreakpoints();
+            } else if (mf.getClass() == TrapezoidalMF.class) {
+                shape = "TRAPEZOIDAL";
+                params = ((TrapezoidalMF) mf).getBreakpoints();
+            } else if (mf.getClass() == GaussianMF.class) {
+                shape = "GAUSSIAN";
+                params = new double[]{((GaussianMF) mf).getMean(), ((GaussianMF) mf).getSigma()};
+            } else {
+                throw new IllegalArgumentException("Cannot write membership function: " + mf.getClass().getName());
+            }
+            out.write("TERM " + var.getName() + " " + name(set.getName()) + " " + shape);
+            for (double p : params) out.write(" " + number(p));
+            out.write(";\n");
+        }
+        out.write('\n');
+    }
+
+    // names are written bare, so each must read back as one token
+    private static String name(String name) {
+        if (!TextLexer.isWord(name)) {
+            throw new IllegalArgumentException("Name '" + name + "' cannot be written as a single token");
+        }
+        return name;
+    }
+
+    private static boolean isNumeric(String name) {
+        char c = name.charAt(0);
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    // shortest text that parses back to the same double
+    private static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    // operator keywords
+    private static String andKeyword(BinaryOperator op) {
+        if (op instanceof AndMin) return "MIN";
+        if (op instanceof AndProduct) return "PRODUCT";
+        throw new IllegalArgumentException("Cannot write AND operator: " + op.getClass().getName());
+    }
+
+    private static String orKeyword(BinaryOperator op) {
+        if (op instanceof OrMax) return "MAX";
+        if (op instanceof OrSum) return "SUM";
+        throw new IllegalArgumentException("Cannot write OR operator: " + op.getClass().getName());
+    }
+
+    private static String notKeyword(UnaryOperator op) {
+        if (op instanceof NotComplement) return "COMPLEMENT";
+        throw new IllegalArgumentException("Cannot write NOT operator: " + op.getClass().getName());
+    }
+
+    private static String implicationKeyword(ImplicationOperator op) {
+        if (op instanceof MinImplication) return "MIN";
+        if (op instanceof ProductImplication) return "PRODUCT";
+        throw new IllegalArgumentException("Cannot write implication operator: " + op.getClass().getName());
+    }
+
+    private static String aggregationKeyword(AggregationOperator op) {
+        if (op instanceof MaxAggregation) return "MAX";
+        if (op instanceof SumAggregation) return "SUM";
+        throw new IllegalArgumentException("Cannot write aggregation operator: " + op.getClass().getName());
+    }
+
+    private static String defuzzificationKeyword(DefuzzificationMethod method) {
+        if (method instanceof CentroidDefuzzification) return "CENTROID";
+        if (method instanceof BisectorDefuzzification) return "BISECTOR";
+        if (method instanceof MeanOfMaximumDefuzzification) return "MOM";
+        throw new IllegalArgumentException("Cannot write defuzzification method: " + method.getClass().getName());
+    }
+
+    private static String analyticKeyword(AnalyticDefuzzification.Method method) {
+        return switch (method) {
+            case CENTROID -> "CENTROID";
+            case BISECTOR -> "BISECTOR";
+            case MEAN_OF_MAXIMUM -> "MOM";
+        };
+    }
+
+    private static final class Parser {
+        private final TextLexer in;
+        private final Map<String, LinguisticVariable> inputs = new LinkedHashMap<>();
+        private final Map<String, LinguisticVariable> outputs = new LinkedHashMap<>();
+        private final List<FuzzyRule> rules = new ArrayList<>();
+        private final List<Object[]> consequents = new ArrayList<>();
+
+        private boolean engineSeen;
+        private boolean sugeno;
+        private BinaryOperator andOp = new AndMin();
+        private BinaryOperator orOp = new OrMax();
+        private UnaryOperator notOp = new NotComplement();
+        private ImplicationOperator implicationOp = new MinImplication();
+        private AggregationOperator aggregationOp = new MaxAggregation();
+        private DefuzzificationMethod defuzzification = new CentroidDefuzzification();
+        private int resolution = 200;
+        private AnalyticDefuzzification analytic;
+        private double adaptiveTolerance;
+
+        Parser(TextLexer in) {
+            this.in = in;
+        }
+
+        FuzzySystem parse() throws IOException {
+            while (in.advance()) {
+                if (in.accept("RULE")) {
+                    rules.add(RuleTextFormat.parseRule(in, inputs, outputs));
+                } else if (in.accept("TERM")) {
+                    term();
+                } else if (in.accept("INPUT")) {
+                    variable(inputs);
+                } else if (in.accept("OUTPUT")) {
+                    variable(outputs);
+                } else if (in.accept("CONSEQUENT")) {
+                    consequent();
+                } else if (in.accept("ENGINE")) {
+                    engine();
+                } else {
+                    throw in.error("expected a statement but found '" + in.text() + "'");
+                }
+                in.expectEnd();
+            }
+            return build();
+        }
+
+        private void engine() throws IOException {
+            if (engineSeen) throw in.error("duplicate ENGINE statement");
+            if (!inputs.isEmpty() || !outputs.isEmpty()) throw in.error("ENGINE must come before the variables");
+            engineSeen = true;
+            if (in.accept("SUGENO")) {
+                sugeno = true;
+            } else {
+                in.expect("MAMDANI");
+            }
+            while (!in.atEnd()) {
+                if (in.accept("AND")) {
+                    andOp = in.accept("PRODUCT") ? new AndProduct() : expect(in, "MIN", new AndMin());
+                } else if (in.accept("OR")) {
+                    orOp = in.accept("SUM") ? new OrSum() : expect(in, "MAX", new OrMax());
+                } else if (in.accept("NOT")) {
+                    notOp = expect(in, "COMPLEMENT", new NotComplement());
+                } else if (!sugeno && in.accept("IMPLICATION")) {
+                    implicationOp = in.accept("PRODUCT") ? new ProductImplication() : expect(in, "MIN", new MinImplication());
+                } else if (!sugeno && in.accept("AGGREGATION")) {
+                    aggregationOp = in.accept("SUM") ? new SumAggregation() : expect(in, "MAX", new MaxAggregation());
+                } else if (!sugeno && in.accept("DEFUZZIFY")) {
+                    if (in.accept("BISECTOR")) defuzzification = new BisectorDefuzzification();
+                    else if (in.accept("MOM")) defuzzification = new MeanOfMaximumDefuzzification();
+                    else defuzzification = expect(in, "CENTROID", new CentroidDefuzzification());
+                } else if (!sugeno && in.accept("RESOLUTION")) {
+                    double steps = in.number("resolution");
+                    if (steps != (int) steps || steps < 2) throw in.error("resolution must be an integer of at least 2");
+                    resolution = (int) steps;
+                } else if (!sugeno && in.accept("ANALYTIC")) {
+                    AnalyticDefuzzification.Method method = in.accept("BISECTOR") ? AnalyticDefuzzification.Method.BISECTOR
+                            : in.accept("MOM") ? AnalyticDefuzzification.Method.MEAN_OF_MAXIMUM
+                            : expect(in, "CENTROID", AnalyticDefuzzification.Method.CENTROID);
+                    analytic = new AnalyticDefuzzification(method);
+                } else if (!sugeno && in.accept("ADAPTIVE")) {
+                    adaptiveTolerance = in.number("tolerance");
+                } else {
+                    throw in.error("unexpected '" + in.text() + "' in ENGINE");
+                }
+            }
+        }
+
+        private static <T> T expect(TextLexer in, String keyword, T value) throws IOException {
+            in.expect(keyword);
+            return value;
+        }
+
+        private void variable(Map<String, LinguisticVariable> into) throws IOException {
+            String name = in.name("variable name");
+            if (inputs.containsKey(name) || outputs.containsKey(name)) throw in.error("duplicate variable " + name);
+            in.expect("RANGE");
+            double min = in.number("minimum");
+            double max = in.number("maximum");
+            if (!(min <= max)) throw in.error("empty range for " + name);
+            into.put(name, new LinguisticVariable(name, min, max));
+        }
+
+        private void term() throws IOException {
+            String variable = in.name("variable name");
+            LinguisticVariable var = inputs.containsKey(variable) ? inputs.get(variable) : outputs.get(variable);
+            if (var == null) throw in.error("unknown variable " + variable);
+            String name = in.name("fuzzy set");
+            if (var.getFuzzySets().containsKey(name)) throw in.error("duplicate fuzzy set " + variable + "." + name);
+            MembershipFunction mf;
+            if (in.accept("TRIANGULAR")) {
+                mf = new TriangularMF(in.number("a"), in.number("b"), in.number("c"));
+            } else if (in.accept("TRAPEZOIDAL")) {
+                mf = new TrapezoidalMF(in.number("a"), in.number("b"), in.number("c"), in.number("d"));
+            } else if (in.accept("GAUSSIAN")) {
+                mf = new GaussianMF(in.number("mean"), in.number("sigma"));
+            } else {
+                throw in.error("expected TRIANGULAR, TRAPEZOIDAL or GAUSSIAN but found '" + in.text() + "'");
+            }
+            var.addFuzzySet(new FuzzySet(name, mf));
+        }
+
+        private void consequent() throws IOException {
+            if (!sugeno) throw in.error("CONSEQUENT needs ENGINE SUGENO");
+            String variable = in.name("output variable");
+            LinguisticVariable var = outputs.get(variable);
+            if (var == null) throw in.error("unknown output variable " + variable);
+            String set = in.name("fuzzy set");
+            if (!var.getFuzzySets().containsKey(set)) throw in.error("unknown fuzzy set " + variable + "." + set);
+            double constant = in.number("constant");
+
+            Map<String, double[]> coefficients = new LinkedHashMap<>();
+            double[] terms = new double[4];
+            while (!in.atEnd()) {
+                String input = in.name("input variable");
+                if (!inputs.containsKey(input)) throw in.error("unknown input variable " + input);
+                int degree = 0;
+                while (!in.atEnd() && in.isNumber()) {
+                    if (degree == terms.length) terms = Arrays.copyOf(terms, degree * 2);
+                    terms[degree++] = in.number("coefficient");
+                }
+                if (degree == 0) throw in.error("expected coefficients for " + input);
+                coefficients.put(input, Arrays.copyOf(terms, degree));
+            }
+            consequents.add(new Object[]{variable, set, coefficients.isEmpty()
+                    ? new SugenoInferenceEngine.ConstantFunction(constant)
+                    : new SugenoInferenceEngine.PolynomialFunction(constant, coefficients)});
+        }
+
+        private FuzzySystem build() {
+            InferenceEngine engine;
+            if (sugeno) {
+                SugenoInferenceEngine s = new SugenoInferenceEngine(andOp, orOp, notOp);
+                for (Object[] c : consequents) {
+                    s.setConsequentFunction((String) c[0], (String) c[1], (SugenoInferenceEngine.PolynomialFunction) c[2]);
+                }
+                engine = s;
+            } else {
+                MamdaniInferenceEngine m = new MamdaniInferenceEngine(andOp, orOp, notOp, implicationOp, aggregationOp,
+                        defuzzification, resolution);
+                if (analytic != null) m.setAnalyticDefuzzification(analytic);
+                if (adaptiveTolerance > 0) m.setAdaptiveResolution(adaptiveTolerance);
+                engine = m;
+            }
+
+            FuzzySystem system = new FuzzySystem(engine);
+            for (LinguisticVariable var : inputs.values()) system.addInputVariable(var);
+            for (LinguisticVariable var : outputs.values()) system.addOutputVariable(var);
+            // one snapshot for the whole rule base rather than a copy per rule
+            system.getRuleBase().replaceAll(rules);
+            return system;
+        }
+    }
+}
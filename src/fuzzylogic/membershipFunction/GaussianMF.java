@@ -2,6 +2,7 @@ package fuzzylogic.membershipFunction;
 
 public class GaussianMF implements MembershipFunction {
     private final double mean, sigma;
+    private final double twoSigmaSquared;
     private final double start, end;
 
     public GaussianMF(double mean, double sigma) {
@@ -10,19 +11,31 @@ public class GaussianMF implements MembershipFunction {
         }
         this.mean = mean;
         this.sigma = sigma;
+        this.twoSigmaSquared = 2 * sigma * sigma;
         this.start = mean - 3 * sigma;
         this.end = mean + 3 * sigma;
     }
 
     @Override
     public double evaluate(double x) {
-        double exp = -Math.pow(x - mean, 2) / (2 * sigma * sigma);
-        return Math.exp(exp);
+        double d = x - mean;
+        return Math.exp(-(d * d) / twoSigmaSquared);
     }
 
+    @Override
+    public void evaluate(double[] xs, double[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            double d = xs[i] - mean;
+            out[i] = Math.exp(-(d * d) / twoSigmaSquared);
+        }
+    }
+
+    public double getMean() { return mean; }
+    public double getSigma() { return sigma; }
+
     @Override
     public double getStart() { return start; }
 
     @Override
     public double getEnd() { return end; }
-}
\ No newline at end of file
+}
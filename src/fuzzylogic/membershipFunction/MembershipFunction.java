@@ -4,4 +4,11 @@ public interface MembershipFunction {
     double evaluate(double x);
     double getStart();
     double getEnd();
+
+    // bulk form used by batch inference; shapes override it with branch-light loops
+    default void evaluate(double[] xs, double[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = evaluate(xs[i]);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,146 @@
+package fuzzylogic.membershipFunction;
+
+import java.util.List;
+
+// Evaluates a fixed list of membership functions without interface dispatch.
+// The parameters of the built-in shapes are packed into primitive arrays per shape, and the
+// list is cut into runs of consecutive same-shape functions, so each run is one monomorphic
+// loop with contiguous stores. Other implementations fall back to a virtual call.
+// Results are bit-identical to calling evaluate(x) on each function.
+public final class MembershipKernel {
+    private static final int TRIANGULAR = 0;
+    private static final int TRAPEZOIDAL = 1;
+    private static final int GAUSSIAN = 2;
+    private static final int OTHER = 3;
+
+    private final int size;
+
+    // run k covers functions [runStart[k], runStart[k + 1]) and starts at runParam[k] in its shape's arrays
+    private final int[] runShape;
+    private final int[] runStart;
+    private final int[] runParam;
+
+    private final double[] triA, triB, triC;
+    private final double[] trapA, trapB, trapC, trapD;
+    private final double[] gaussMean, gaussTwoSigmaSquared;
+    private final MembershipFunction[] others;
+
+    public MembershipKernel(List<? extends MembershipFunction> functions) {
+        size = functions.size();
+        int[] counts = new int[4];
+        int numRuns = 0;
+        int previous = -1;
+        for (MembershipFunction mf : functions) {
+            int shape = shapeOf(mf);
+            counts[shape]++;
+            if (shape != previous) numRuns++;
+            previous = shape;
+        }
+
+        triA = new double[counts[TRIANGULAR]];
+        triB = new double[counts[TRIANGULAR]];
+        triC = new double[counts[TRIANGULAR]];
+        trapA = new double[counts[TRAPEZOIDAL]];
+        trapB = new double[counts[TRAPEZOIDAL]];
+        trapC = new double[counts[TRAPEZOIDAL]];
+        trapD = new double[counts[TRAPEZOIDAL]];
+        gaussMean = new double[counts[GAUSSIAN]];
+        gaussTwoSigmaSquared = new double[counts[GAUSSIAN]];
+        others = new MembershipFunction[counts[OTHER]];
+
+        runShape = new int[numRuns];
+        runStart = new int[numRuns + 1];
+        runParam = new int[numRuns];
+        int[] filled = new int[4];
+        int run = -1;
+        previous = -1;
+        for (int i = 0; i < size; i++) {
+            MembershipFunction mf = functions.get(i);
+            int shape = shapeOf(mf);
+            if (shape != previous) {
+                run++;
+                runShape[run] = shape;
+                runStart[run] = i;
+                runParam[run] = filled[shape];
+                previous = shape;
+            }
+
+            int p = filled[shape]++;
+            switch (shape) {
+                case TRIANGULAR -> {
+                    double[] points = ((TriangularMF) mf).getBreakpoints();
+                    triA[p] = points[0];
+                    triB[p] = points[1];
+                    triC[p] = points[2];
+                }
+                case TRAPEZOIDAL -> {
+                    double[] points = ((TrapezoidalMF) mf).getBreakpoints();
+                    trapA[p] = points[0];
+                    trapB[p] = points[1];
+                    trapC[p] = points[2];
+                    trapD[p] = points[3];
+                }
+                case GAUSSIAN -> {
+                    GaussianMF gaussian = (GaussianMF) mf;
+                    gaussMean[p] = gaussian.getMean();
+                    gaussTwoSigmaSquared[p] = 2 * gaussian.getSigma() * gaussian.getSigma();
+                }
+                default -> others[p] = mf;
+            }
+        }
+        runStart[numRuns] = size;
+    }
+
+    // exact classes only: a subclass may override evaluate
+    private static int shapeOf(MembershipFunction mf) {
+        if (mf.getClass() == TriangularMF.class) return TRIANGULAR;
+        if (mf.getClass() == TrapezoidalMF.class) return TRAPEZOIDAL;
+        if (mf.getClass() == GaussianMF.class) return GAUSSIAN;
+        return OTHER;
+    }
+
+    // writes the membership of x in function i to out[offset + i]
+    public void evaluate(double x, double[] out, int offset) {
+        for (int run = 0; run < runShape.length; run++) {
+            int from = offset + runStart[run];
+            int to = offset + runStart[run + 1];
+            int p = runParam[run];
+            switch (runShape[run]) {
+                case TRIANGULAR -> triangular(x, out, from, to, p);
+                case TRAPEZOIDAL -> trapezoidal(x, out, from, to, p);
+                case GAUSSIAN -> gaussian(x, out, from, to, p);
+                default -> {
+                    for (int i = from; i < to; i++) out[i] = others[p++].evaluate(x);
+                }
+            }
+        }
+    }
+
+    // same ramp formulas as the shapes' bulk evaluate, which match their scalar evaluate exactly
+    private void triangular(double x, double[] out, int from, int to, int p) {
+        for (int i = from; i < to; i++, p++) {
+            double a = triA[p], b = triB[p], c = triC[p];
+            double up = b > a ? (x - a) / (b - a) : (x >= a ? 1.0 : 0.0);
+            double down = c > b ? (c - x) / (c - b) : (x <= c ? 1.0 : 0.0);
+            out[i] = Math.max(0.0, Math.min(up, down));
+        }
+    }
+
+    private void trapezoidal(double x, double[] out, int from, int to, int p) {
+        for (int i = from; i < to; i++, p++) {
+            double a = trapA[p], b = trapB[p], c = trapC[p], d = trapD[p];
+            double up = b > a ? (x - a) / (b - a) : (x >= a ? 1.0 : 0.0);
+            double down = d > c ? (d - x) / (d - c) : (x <= d ? 1.0 : 0.0);
+            out[i] = Math.max(0.0, Math.min(1.0, Math.min(up, down)));
+        }
+    }
+
+    private void gaussian(double x, double[] out, int from, int to, int p) {
+        for (int i = from; i < to; i++, p++) {
+            double d = x - gaussMean[p];
+            out[i] = Math.exp(-(d * d) / gaussTwoSigmaSquared[p]);
+        }
+    }
+
+    public int size() { return size; }
+}
@@ -0,0 +1,6 @@
+package fuzzylogic.membershipFunction;
+
+public interface PiecewiseLinearMF extends MembershipFunction {
+    // x coordinates where the slope may change, in ascending order
+    double[] getBreakpoints();
+}
@@ -1,6 +1,6 @@
 package fuzzylogic.membershipFunction;
 
-public class TrapezoidalMF implements MembershipFunction {
+public class TrapezoidalMF implements PiecewiseLinearMF {
     private final double a, b, c, d;
 
     public TrapezoidalMF(double a, double b, double c, double d) {
@@ -21,9 +21,24 @@ public class TrapezoidalMF implements MembershipFunction {
         return (d - x) / (d - c);
     }
 
+    @Override
+    public void evaluate(double[] xs, double[] out, int count) {
+        double left = b - a;
+        double right = d - c;
+        for (int i = 0; i < count; i++) {
+            double x = xs[i];
+            double up = left > 0 ? (x - a) / left : (x >= a ? 1.0 : 0.0);
+            double down = right > 0 ? (d - x) / right : (x <= d ? 1.0 : 0.0);
+            out[i] = Math.max(0.0, Math.min(1.0, Math.min(up, down)));
+        }
+    }
+
     @Override
     public double getStart() { return a; }
 
     @Override
     public double getEnd() { return d; }
+
+    @Override
+    public double[] getBreakpoints() { return new double[]{a, b, c, d}; }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package fuzzylogic.membershipFunction;
 
-public class TriangularMF implements MembershipFunction {
+public class TriangularMF implements PiecewiseLinearMF {
     private final double a, b, c;
 
     public TriangularMF(double a, double b, double c) {
@@ -20,9 +20,24 @@ public class TriangularMF implements MembershipFunction {
         return (c - x) / (c - b);
     }
 
+    @Override
+    public void evaluate(double[] xs, double[] out, int count) {
+        double left = b - a;
+        double right = c - b;
+        for (int i = 0; i < count; i++) {
+            double x = xs[i];
+            double up = left > 0 ? (x - a) / left : (x >= a ? 1.0 : 0.0);
+            double down = right > 0 ? (c - x) / right : (x <= c ? 1.0 : 0.0);
+            out[i] = Math.max(0.0, Math.min(up, down));
+        }
+    }
+
     @Override
     public double getStart() { return a; }
 
     @Override
     public double getEnd() { return c; }
+
+    @Override
+    public double[] getBreakpoints() { return new double[]{a, b, c}; }
 }
\ No newline at end of file
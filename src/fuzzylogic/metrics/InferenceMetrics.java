@@ -0,0 +1,135 @@
+package fuzzylogic.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Opt-in latency and throughput figures for the inference pipeline. A FuzzySystem or
+// CompiledFuzzySystem only records into one while it is attached, so detached systems
+// pay a single null check per call.
+//
+// Stages follow the pipeline: fuzzify → infer (rule strengths) → aggregate → defuzzify,
+// plus the whole call as TOTAL. The interpreted engines fold each rule into the output
+// as soon as its strength is known, so there INFER covers rule evaluation and
+// aggregation together and AGGREGATE stays empty. Batch calls record each stage once per
+// block, as the per-sample share of the block's time.
+public final class InferenceMetrics implements InferenceMetricsMXBean {
+
+    public enum Stage { FUZZIFY, INFER, AGGREGATE, DEFUZZIFY, TOTAL }
+
+    private final String name;
+    private final EnumMap<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder rulesEvaluated = new LongAdder();
+    private final LongAdder rulesFired = new LongAdder();
+    private final LongAdder rulesSkipped = new LongAdder();
+    private volatile long startNanos = System.nanoTime();
+    private ObjectName registeredName;
+
+    public InferenceMetrics(String name) {
+        this.name = name;
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        histograms.get(stage).record(nanos);
+    }
+
+    // a batch stage that took nanos for count samples
+    public void recordStage(Stage stage, long nanos, int count) {
+        if (count > 0) histograms.get(stage).record(nanos / count, count);
+    }
+
+    public void recordSamples(int count) {
+        samples.add(count);
+    }
+
+    public void recordRules(long evaluated, long fired, long skipped) {
+        if (evaluated != 0) rulesEvaluated.add(evaluated);
+        if (fired != 0) rulesFired.add(fired);
+        if (skipped != 0) rulesSkipped.add(skipped);
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) histogram.reset();
+        samples.reset();
+        rulesEvaluated.reset();
+        rulesFired.reset();
+        rulesSkipped.reset();
+        startNanos = System.nanoTime();
+    }
+
+    public MetricsSnapshot snapshot() {
+        EnumMap<Stage, StageLatency> latencies = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, histograms.get(stage).summarize());
+        }
+        return new MetricsSnapshot(name, System.currentTimeMillis(), samples.sum(), rulesEvaluated.sum(),
+                rulesFired.sum(), rulesSkipped.sum(), getSamplesPerSecond(), latencies);
+    }
+
+    // publishes a snapshot every period on a daemon thread until the returned handle is closed
+    public AutoCloseable startExporting(MetricsExporter exporter, Duration period) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "fuzzy-metrics-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1, period.toMillis());
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                exporter.export(snapshot());
+            } catch (RuntimeException e) {
+                // a failing exporter must not stop later exports
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+        return scheduler::shutdownNow;
+    }
+
+    // registers under fuzzylogic:type=InferenceMetrics,name=<name> on the platform MBean server
+    public synchronized ObjectName registerMBean() throws JMException {
+        if (registeredName != null) return registeredName;
+        ObjectName objectName = ObjectName.getInstance("fuzzylogic:type=InferenceMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredName = objectName;
+        return objectName;
+    }
+
+    public synchronized void unregisterMBean() throws JMException {
+        if (registeredName == null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(registeredName)) server.unregisterMBean(registeredName);
+        registeredName = null;
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) { return histograms.get(stage); }
+    public String getName() { return name; }
+
+    @Override public long getSampleCount() { return samples.sum(); }
+    @Override public long getRulesEvaluated() { return rulesEvaluated.sum(); }
+    @Override public long getRulesFired() { return rulesFired.sum(); }
+    @Override public long getRulesSkipped() { return rulesSkipped.sum(); }
+
+    // since creation or the last reset
+    @Override
+    public double getSamplesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? samples.sum() / seconds : 0.0;
+    }
+
+    @Override public StageLatency getFuzzifyLatency() { return histograms.get(Stage.FUZZIFY).summarize(); }
+    @Override public StageLatency getInferLatency() { return histograms.get(Stage.INFER).summarize(); }
+    @Override public StageLatency getAggregateLatency() { return histograms.get(Stage.AGGREGATE).summarize(); }
+    @Override public StageLatency getDefuzzifyLatency() { return histograms.get(Stage.DEFUZZIFY).summarize(); }
+    @Override public StageLatency getTotalLatency() { return histograms.get(Stage.TOTAL).summarize(); }
+}
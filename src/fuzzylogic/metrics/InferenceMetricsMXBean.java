@@ -0,0 +1,17 @@
+package fuzzylogic.metrics;
+
+public interface InferenceMetricsMXBean {
+    long getSampleCount();
+    long getRulesEvaluated();
+    long getRulesFired();
+    long getRulesSkipped();
+    double getSamplesPerSecond();
+
+    StageLatency getFuzzifyLatency();
+    StageLatency getInferLatency();
+    StageLatency getAggregateLatency();
+    StageLatency getDefuzzifyLatency();
+    StageLatency getTotalLatency();
+
+    void reset();
+}
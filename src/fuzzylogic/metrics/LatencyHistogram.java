@@ -0,0 +1,89 @@
+package fuzzylogic.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Lock-free latency histogram with HdrHistogram-style log-linear buckets: values below
+// 2^(SUB_BITS+1) get a bucket each, and every power of two above that is split into
+// 2^SUB_BITS equal buckets, so any recorded value is reported within 1/128 of itself.
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int LINEAR_LIMIT = SUB_COUNT << 1;
+    // values are clamped to about 19 minutes in nanoseconds
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) return (int) value;
+        int shift = 64 - Long.numberOfLeadingZeros(value) - (SUB_BITS + 1);
+        return LINEAR_LIMIT + (shift - 1) * SUB_COUNT + (int) ((value >>> shift) - SUB_COUNT);
+    }
+
+    // largest value that lands in the bucket
+    private static long highestValueIn(int index) {
+        if (index < LINEAR_LIMIT) return index;
+        int shift = (index - LINEAR_LIMIT) / SUB_COUNT + 1;
+        long top = SUB_COUNT + (index - LINEAR_LIMIT) % SUB_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    // records value as if it was seen times times, e.g. the per-sample share of a batch
+    public void record(long value, long times) {
+        if (times <= 0) return;
+        long v = Math.max(0, Math.min(MAX_VALUE, value));
+        counts.addAndGet(indexOf(v), times);
+        count.addAndGet(times);
+        sum.addAndGet(v * times);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    // smallest recorded value v such that percentile% of samples are at most v, within bucket precision
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) return Math.min(highestValueIn(i), max.get());
+        }
+        return max.get();
+    }
+
+    // not atomic with respect to concurrent record calls
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public long getCount() { return count.get(); }
+    public long getMax() { return max.get(); }
+
+    public double getMean() {
+        long n = count.get();
+        return n > 0 ? (double) sum.get() / n : 0.0;
+    }
+
+    public StageLatency summarize() {
+        return new StageLatency(getCount(), getMean(), getValueAtPercentile(50), getValueAtPercentile(90),
+                getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+    }
+}
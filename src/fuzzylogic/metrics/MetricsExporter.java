@@ -0,0 +1,25 @@
+package fuzzylogic.metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+// Receives periodic snapshots from InferenceMetrics.startExporting; called on the exporter thread.
+@FunctionalInterface
+public interface MetricsExporter {
+    void export(MetricsSnapshot snapshot);
+
+    static MetricsExporter printing(PrintStream out) {
+        return snapshot -> {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("[%s] samples=%d (%.1f/s) rules evaluated=%d fired=%d skipped=%d",
+                    snapshot.getName(), snapshot.getSamples(), snapshot.getSamplesPerSecond(),
+                    snapshot.getRulesEvaluated(), snapshot.getRulesFired(), snapshot.getRulesSkipped()));
+            for (Map.Entry<InferenceMetrics.Stage, StageLatency> entry : snapshot.getLatencies().entrySet()) {
+                if (entry.getValue().getCount() == 0) continue;
+                sb.append(System.lineSeparator()).append("  ")
+                        .append(entry.getKey().name().toLowerCase()).append(": ").append(entry.getValue());
+            }
+            out.println(sb);
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package fuzzylogic.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Point-in-time copy of an InferenceMetrics, handed to exporters.
+public final class MetricsSnapshot {
+    private final String name;
+    private final long timestampMillis;
+    private final long samples;
+    private final long rulesEvaluated;
+    private final long rulesFired;
+    private final long rulesSkipped;
+    private final double samplesPerSecond;
+    private final Map<InferenceMetrics.Stage, StageLatency> latencies;
+
+    MetricsSnapshot(String name, long timestampMillis, long samples, long rulesEvaluated, long rulesFired,
+                    long rulesSkipped, double samplesPerSecond, EnumMap<InferenceMetrics.Stage, StageLatency> latencies) {
+        this.name = name;
+        this.timestampMillis = timestampMillis;
+        this.samples = samples;
+        this.rulesEvaluated = rulesEvaluated;
+        this.rulesFired = rulesFired;
+        this.rulesSkipped = rulesSkipped;
+        this.samplesPerSecond = samplesPerSecond;
+        this.latencies = Collections.unmodifiableMap(latencies);
+    }
+
+    public String getName() { return name; }
+    public long getTimestampMillis() { return timestampMillis; }
+    public long getSamples() { return samples; }
+    public long getRulesEvaluated() { return rulesEvaluated; }
+    public long getRulesFired() { return rulesFired; }
+    public long getRulesSkipped() { return rulesSkipped; }
+    public double getSamplesPerSecond() { return samplesPerSecond; }
+    public Map<InferenceMetrics.Stage, StageLatency> getLatencies() { return latencies; }
+    public StageLatency getLatency(InferenceMetrics.Stage stage) { return latencies.get(stage); }
+}
@@ -0,0 +1,37 @@
+package fuzzylogic.metrics;
+
+// Summary of one stage's latency histogram, in nanoseconds. Plain getters so JMX can
+// present it as composite data.
+public final class StageLatency {
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    public StageLatency(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public long getCount() { return count; }
+    public double getMeanNanos() { return mean; }
+    public long getP50Nanos() { return p50; }
+    public long getP90Nanos() { return p90; }
+    public long getP99Nanos() { return p99; }
+    public long getP999Nanos() { return p999; }
+    public long getMaxNanos() { return max; }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.0fns p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns",
+                count, mean, p50, p90, p99, p999, max);
+    }
+}
@@ -5,4 +5,11 @@ public class AndMin implements BinaryOperator {
     public double apply(double a, double b) {
         return Math.min(a, b);
     }
+
+    @Override
+    public void applyInPlace(double[] accumulator, double[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            accumulator[i] = Math.min(accumulator[i], values[i]);
+        }
+    }
 }
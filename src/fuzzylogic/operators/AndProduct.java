@@ -5,4 +5,11 @@ public class AndProduct implements BinaryOperator {
     public double apply(double a, double b) {
         return a * b;
     }
+
+    @Override
+    public void applyInPlace(double[] accumulator, double[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            accumulator[i] = accumulator[i] * values[i];
+        }
+    }
 }
@@ -2,4 +2,11 @@ package fuzzylogic.operators;
 
 public interface BinaryOperator {
     double apply(double a, double b);
+
+    // accumulator[i] = apply(accumulator[i], values[i]) for the first count elements
+    default void applyInPlace(double[] accumulator, double[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            accumulator[i] = apply(accumulator[i], values[i]);
+        }
+    }
 }
\ No newline at end of file
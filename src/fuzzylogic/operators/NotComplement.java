@@ -5,4 +5,11 @@ public class NotComplement implements UnaryOperator {
     public double apply(double x) {
         return 1.0 - x;
     }
+
+    @Override
+    public void apply(double[] values, double[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = 1.0 - values[i];
+        }
+    }
 }
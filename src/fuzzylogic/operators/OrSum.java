@@ -5,4 +5,11 @@ public class OrSum implements BinaryOperator {
     public double apply(double a, double b) {
         return a + b - (a * b);
     }
+
+    @Override
+    public void applyInPlace(double[] accumulator, double[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            accumulator[i] = accumulator[i] + values[i] - (accumulator[i] * values[i]);
+        }
+    }
 }
@@ -2,4 +2,10 @@ package fuzzylogic.operators;
 
 public interface UnaryOperator {
     double apply(double x);
+
+    default void apply(double[] values, double[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = apply(values[i]);
+        }
+    }
 }
@@ -9,8 +9,10 @@ public class FuzzyRule {
     private final String name;
     private final List<Antecedent> antecedents;
     private Consequent consequent;
-    private boolean enabled;
-    private double weight;
+    private volatile boolean enabled;
+    private volatile double weight;
+    // set once the rule is in a rule base snapshot, whose index relies on fixed antecedents
+    private volatile boolean published;
 
     public FuzzyRule(String name) {
         this.name = name;
@@ -20,9 +22,24 @@ public class FuzzyRule {
     }
 
     public void addAntecedent(String variable, String fuzzySet, boolean isAnd, boolean isNot) {
+        if (published) {
+            throw new IllegalStateException("Rule " + name + " is already in a rule base; add its antecedents first");
+        }
         antecedents.add(new Antecedent(variable, fuzzySet, isAnd, isNot));
     }
 
+    void publish() { published = true; }
+
+    // independent, unpublished rule with the same name, antecedents, consequent, weight and state
+    FuzzyRule copy() {
+        FuzzyRule copy = new FuzzyRule(name);
+        copy.antecedents.addAll(antecedents);
+        copy.consequent = consequent;
+        copy.enabled = enabled;
+        copy.weight = weight;
+        return copy;
+    }
+
     public void setConsequent(String variable, String fuzzySet) {
         this.consequent = new Consequent(variable, fuzzySet);
     }
@@ -50,6 +67,7 @@ public class FuzzyRule {
     }
 
     public String getName() { return name; }
+    public List<Antecedent> getAntecedents() { return Collections.unmodifiableList(antecedents); }
     public Consequent getConsequent() { return consequent; }
     public boolean isEnabled() { return enabled; }
     public void setEnabled(boolean enabled) { this.enabled = enabled; }
@@ -57,11 +75,11 @@ public class FuzzyRule {
     public void setWeight(double weight) { this.weight = Math.max(0, Math.min(1, weight)); }
 
     // Nested classes
-    private static class Antecedent {
-        String variable;
-        String fuzzySet;
-        boolean isAnd;
-        boolean isNot;
+    public static class Antecedent {
+        private final String variable;
+        private final String fuzzySet;
+        private final boolean isAnd;
+        private final boolean isNot;
 
         Antecedent(String variable, String fuzzySet, boolean isAnd, boolean isNot) {
             this.variable = variable;
@@ -69,6 +87,11 @@ public class FuzzyRule {
             this.isAnd = isAnd;
             this.isNot = isNot;
         }
+
+        public String getVariable() { return variable; }
+        public String getFuzzySet() { return fuzzySet; }
+        public boolean isAnd() { return isAnd; }
+        public boolean isNot() { return isNot; }
     }
 
     public static class Consequent {
@@ -1,44 +1,162 @@
 package fuzzylogic.rules;
 
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.operators.AndMin;
+import fuzzylogic.operators.AndProduct;
+import fuzzylogic.operators.BinaryOperator;
+
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
+// Rules are published as immutable, versioned snapshots through an atomic reference.
+// Every change builds the next snapshot and swaps it in, so an inference call that took a
+// snapshot keeps using it to the end while new calls see the new version. enableRule and
+// setRuleWeight replace the rule with an edited copy for the same reason; calling setEnabled
+// or setWeight on a rule object directly still works but is not isolated from running calls.
+// A rule's antecedents are frozen once it is published; replace the rule to change them.
 public class RuleBase {
-    private final List<FuzzyRule> rules;
+    // below this many rules a full scan is cheaper than an index lookup
+    public static final int INDEX_THRESHOLD = 64;
+
+    private final AtomicReference<Snapshot> current;
 
     public RuleBase() {
-        this.rules = new ArrayList<>();
+        this.current = new AtomicReference<>(new Snapshot(List.of(), 0));
     }
 
     public void addRule(FuzzyRule rule) {
-        rules.add(rule);
+        update(rules -> {
+            List<FuzzyRule> next = new ArrayList<>(rules);
+            next.add(rule);
+            return next;
+        });
     }
 
     public void removeRule(String ruleName) {
-        rules.removeIf(rule -> rule.getName().equals(ruleName));
+        update(rules -> {
+            List<FuzzyRule> next = new ArrayList<>(rules);
+            return next.removeIf(rule -> rule.getName().equals(ruleName)) ? next : null;
+        });
     }
 
-    public FuzzyRule getRule(String ruleName) {
-        return rules.stream()
-                .filter(rule -> rule.getName().equals(ruleName))
-                .findFirst()
-                .orElse(null);
+    // swaps in a whole new rule list in one step, e.g. after reloading a rule file
+    public void replaceAll(Collection<FuzzyRule> rules) {
+        List<FuzzyRule> next = new ArrayList<>(rules);
+        update(previous -> next);
     }
 
-    public List<FuzzyRule> getAllRules() {
-        return new ArrayList<>(rules);
+    // replaceAll only while the rule base is still at expectedVersion, in the same atomic step;
+    // false if another writer got there first
+    public boolean compareAndReplace(long expectedVersion, Collection<FuzzyRule> rules) {
+        List<FuzzyRule> next = new ArrayList<>(rules);
+        while (true) {
+            Snapshot previous = current.get();
+            if (previous.version != expectedVersion) return false;
+            if (current.compareAndSet(previous, new Snapshot(next, previous.version + 1))) return true;
+        }
     }
 
     public void enableRule(String ruleName, boolean enabled) {
-        FuzzyRule rule = getRule(ruleName);
-        if (rule != null) {
-            rule.setEnabled(enabled);
-        }
+        editRule(ruleName, rule -> rule.setEnabled(enabled));
     }
 
     public void setRuleWeight(String ruleName, double weight) {
-        FuzzyRule rule = getRule(ruleName);
-        if (rule != null) {
-            rule.setWeight(weight);
+        editRule(ruleName, rule -> rule.setWeight(weight));
+    }
+
+    private void editRule(String ruleName, Consumer<FuzzyRule> edit) {
+        update(rules -> {
+            for (int i = 0; i < rules.size(); i++) {
+                if (rules.get(i).getName().equals(ruleName)) {
+                    FuzzyRule edited = rules.get(i).copy();
+                    edit.accept(edited);
+                    List<FuzzyRule> next = new ArrayList<>(rules);
+                    next.set(i, edited);
+                    return next;
+                }
+            }
+            return null;
+        });
+    }
+
+    // applies the change to the latest snapshot, retrying if another writer got there first;
+    // a null result means nothing changed
+    private void update(UnaryOperator<List<FuzzyRule>> change) {
+        while (true) {
+            Snapshot previous = current.get();
+            List<FuzzyRule> next = change.apply(previous.rules);
+            if (next == null) return;
+            if (current.compareAndSet(previous, new Snapshot(next, previous.version + 1))) return;
+        }
+    }
+
+    public Snapshot getSnapshot() { return current.get(); }
+    public long getVersion() { return current.get().version; }
+
+    public FuzzyRule getRule(String ruleName) {
+        return current.get().getRule(ruleName);
+    }
+
+    // mutable copy; inference reads getSnapshot().getRules() instead
+    public List<FuzzyRule> getAllRules() {
+        return new ArrayList<>(current.get().rules);
+    }
+
+    public List<FuzzyRule> getCandidateRules(Map<String, Double> crispInputs,
+                                             Map<String, LinguisticVariable> inputVariables,
+                                             BinaryOperator andOperator) {
+        return current.get().getCandidateRules(crispInputs, inputVariables, andOperator);
+    }
+
+    // One published version of the rule list. The list never changes and its rules' antecedents
+    // are frozen, so its rule index is built on first use and rebuilt only if the input variables change.
+    public static final class Snapshot {
+        private final List<FuzzyRule> rules;
+        private final long version;
+        private volatile RuleIndex index;
+
+        private Snapshot(List<FuzzyRule> rules, long version) {
+            for (FuzzyRule rule : rules) rule.publish();
+            this.rules = Collections.unmodifiableList(rules);
+            this.version = version;
+        }
+
+        public List<FuzzyRule> getRules() { return rules; }
+        public long getVersion() { return version; }
+        public int size() { return rules.size(); }
+
+        public FuzzyRule getRule(String ruleName) {
+            for (FuzzyRule rule : rules) {
+                if (rule.getName().equals(ruleName)) return rule;
+            }
+            return null;
+        }
+
+        // Rules whose antecedents can be non-zero for these (clamped) inputs, in rule order.
+        // Skipping is only sound when AND has zero as annihilator, so other operators get every rule.
+        public List<FuzzyRule> getCandidateRules(Map<String, Double> crispInputs,
+                                                 Map<String, LinguisticVariable> inputVariables,
+                                                 BinaryOperator andOperator) {
+            if (!(andOperator instanceof AndMin || andOperator instanceof AndProduct) || rules.size() < INDEX_THRESHOLD) {
+                return rules;
+            }
+            return getIndex(inputVariables).candidates(crispInputs);
+        }
+
+        private RuleIndex getIndex(Map<String, LinguisticVariable> inputVariables) {
+            RuleIndex built = index;
+            if (built == null || !built.isCurrent(inputVariables, version)) {
+                synchronized (this) {
+                    built = index;
+                    if (built == null || !built.isCurrent(inputVariables, version)) {
+                        built = new RuleIndex(rules, inputVariables, version);
+                        index = built;
+                    }
+                }
+            }
+            return built;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,98 @@
+package fuzzylogic.rules;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Reloads a RuleTextFormat file into a RuleBase whenever it changes on disk.
+// A new version is parsed and validated completely before it is swapped in, so a
+// half-written or invalid file leaves the running rules untouched; the failure is
+// kept in getLastError() and the next change is tried again.
+public class RuleFileWatcher implements AutoCloseable {
+    // editors often write a file in several steps; wait this long after an event before reading
+    private static final long SETTLE_MILLIS = 50;
+
+    private final RuleBase ruleBase;
+    private final Path file;
+    private final Consumer<List<FuzzyRule>> validator;
+    private final AtomicLong reloads = new AtomicLong();
+    private volatile Exception lastError;
+    private WatchService watchService;
+    private Thread thread;
+
+    // validator throws to reject a parsed rule list
+    public RuleFileWatcher(RuleBase ruleBase, Path file, Consumer<List<FuzzyRule>> validator) {
+        this.ruleBase = ruleBase;
+        this.file = file.toAbsolutePath();
+        this.validator = validator;
+    }
+
+    public void reload() throws IOException {
+        List<FuzzyRule> rules = RuleTextFormat.read(file);
+        validator.accept(rules);
+        ruleBase.replaceAll(rules);
+        reloads.incrementAndGet();
+    }
+
+    // loads the file once, then watches its directory on a daemon thread
+    public synchronized void start() throws IOException {
+        if (thread != null) return;
+        reload();
+        watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::watch, "rule-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) changed = true;
+                }
+                key.reset();
+                if (!changed) continue;
+
+                Thread.sleep(SETTLE_MILLIS);
+                // fold the burst of events from one save into a single reload
+                WatchKey pending;
+                while ((pending = watchService.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                try {
+                    reload();
+                    lastError = null;
+                } catch (IOException | RuntimeException e) {
+                    lastError = e;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (thread == null) return;
+        thread.interrupt();
+        watchService.close();
+        thread = null;
+    }
+
+    public long getReloadCount() { return reloads.get(); }
+    public Exception getLastError() { return lastError; }
+    public Path getFile() { return file; }
+}
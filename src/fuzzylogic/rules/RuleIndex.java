@@ -0,0 +1,203 @@
+package fuzzylogic.rules;
+
+import fuzzylogic.core.FuzzySet;
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.membershipFunction.MembershipFunction;
+import fuzzylogic.membershipFunction.PiecewiseLinearMF;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable index over a rule snapshot that finds the rules able to fire for given inputs.
+// A pure-AND rule without NOT is zero as soon as one antecedent set is zero, and a
+// piecewise-linear set is zero outside [getStart(), getEnd()]. Such rules are filed under
+// their most selective antecedent (the inverted index) and only visited when every
+// antecedent's support contains the input. All other rules are always visited.
+final class RuleIndex {
+    private final List<FuzzyRule> rules;
+    private final Map<String, LinguisticVariable> inputVariables;
+    private final Map<String, Map<String, FuzzySet>> fuzzySets;
+    private final long ruleBaseVersion;
+
+    // one slot per (input variable, fuzzy set)
+    private final VariableIndex[] variables;
+    private final int numSlots;
+
+    private final int[] alwaysVisited;
+    private final int[][] ruleSlots;
+    private final int[][] postings;
+
+    RuleIndex(List<FuzzyRule> rules, Map<String, LinguisticVariable> inputVariables, long ruleBaseVersion) {
+        this.rules = rules;
+        this.inputVariables = inputVariables;
+        this.ruleBaseVersion = ruleBaseVersion;
+        this.fuzzySets = new HashMap<>();
+
+        // support-interval index per variable
+        Map<String, Map<String, Integer>> slotIds = new HashMap<>();
+        List<double[]> supports = new ArrayList<>();
+        variables = new VariableIndex[inputVariables.size()];
+        int v = 0;
+        for (LinguisticVariable var : inputVariables.values()) {
+            Map<String, FuzzySet> sets = var.getFuzzySets();
+            fuzzySets.put(var.getName(), sets);
+            Map<String, Integer> ids = new HashMap<>();
+            List<Integer> slots = new ArrayList<>();
+            for (FuzzySet set : sets.values()) {
+                int slot = supports.size();
+                ids.put(set.getName(), slot);
+                slots.add(slot);
+                MembershipFunction mf = set.getMembershipFunction();
+                supports.add(mf instanceof PiecewiseLinearMF
+                        ? new double[]{mf.getStart(), mf.getEnd(), (mf.getEnd() - mf.getStart()) / Math.max(1e-12, var.getMaxValue() - var.getMinValue())}
+                        : new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY});
+            }
+            slotIds.put(var.getName(), ids);
+            variables[v++] = new VariableIndex(var, slots, supports);
+        }
+        numSlots = supports.size();
+
+        // inverted index: each indexable rule is filed under its narrowest antecedent set
+        List<Integer> always = new ArrayList<>();
+        List<List<Integer>> postingLists = new ArrayList<>();
+        for (int s = 0; s < numSlots; s++) postingLists.add(new ArrayList<>());
+        ruleSlots = new int[rules.size()][];
+
+        for (int r = 0; r < rules.size(); r++) {
+            int[] slots = indexableSlots(rules.get(r), slotIds);
+            if (slots == null) {
+                always.add(r);
+                continue;
+            }
+            ruleSlots[r] = slots;
+            int pivot = slots[0];
+            for (int slot : slots) {
+                if (supports.get(slot)[2] < supports.get(pivot)[2]) pivot = slot;
+            }
+            postingLists.get(pivot).add(r);
+        }
+
+        alwaysVisited = always.stream().mapToInt(Integer::intValue).toArray();
+        postings = new int[numSlots][];
+        for (int s = 0; s < numSlots; s++) {
+            postings[s] = postingLists.get(s).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    // distinct antecedent slots of a pure, non-negated AND rule; null if the rule must always be visited
+    private static int[] indexableSlots(FuzzyRule rule, Map<String, Map<String, Integer>> slotIds) {
+        List<FuzzyRule.Antecedent> antecedents = rule.getAntecedents();
+        if (antecedents.isEmpty()) return null;
+
+        int[] slots = new int[antecedents.size()];
+        for (int i = 0; i < antecedents.size(); i++) {
+            FuzzyRule.Antecedent ant = antecedents.get(i);
+            if (ant.isNot() || (i > 0 && !ant.isAnd())) return null;
+            Map<String, Integer> ids = slotIds.get(ant.getVariable());
+            Integer slot = ids != null ? ids.get(ant.getFuzzySet()) : null;
+            if (slot == null) return null;
+            slots[i] = slot;
+        }
+        return Arrays.stream(slots).distinct().toArray();
+    }
+
+    boolean isCurrent(Map<String, LinguisticVariable> inputVariables, long ruleBaseVersion) {
+        if (this.inputVariables != inputVariables || this.ruleBaseVersion != ruleBaseVersion) {
+            return false;
+        }
+        for (LinguisticVariable var : inputVariables.values()) {
+            if (fuzzySets.get(var.getName()) != var.getFuzzySets()) return false;
+        }
+        return true;
+    }
+
+    // rules that may fire for these inputs, in rule base order
+    List<FuzzyRule> candidates(Map<String, Double> crispInputs) {
+        boolean[] active = new boolean[numSlots];
+        for (VariableIndex var : variables) {
+            var.markActive(crispInputs.get(var.name), active);
+        }
+
+        int[] selected = Arrays.copyOf(alwaysVisited, Math.max(16, alwaysVisited.length * 2));
+        int count = alwaysVisited.length;
+        for (int s = 0; s < numSlots; s++) {
+            if (!active[s]) continue;
+            for (int r : postings[s]) {
+                if (allActive(ruleSlots[r], active)) {
+                    if (count == selected.length) selected = Arrays.copyOf(selected, count * 2);
+                    selected[count++] = r;
+                }
+            }
+        }
+        Arrays.sort(selected, 0, count);
+
+        List<FuzzyRule> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(rules.get(selected[i]));
+        }
+        return result;
+    }
+
+    private static boolean allActive(int[] slots, boolean[] active) {
+        for (int slot : slots) {
+            if (!active[slot]) return false;
+        }
+        return true;
+    }
+
+    int size() { return rules.size(); }
+
+    // sets of one variable sorted by support start, so a binary search bounds the scan
+    private static class VariableIndex {
+        private final String name;
+        private final double minValue;
+        private final double maxValue;
+        private final int[] slots;
+        private final double[] starts;
+        private final double[] ends;
+
+        VariableIndex(LinguisticVariable var, List<Integer> slotList, List<double[]> supports) {
+            this.name = var.getName();
+            this.minValue = var.getMinValue();
+            this.maxValue = var.getMaxValue();
+            Integer[] sorted = slotList.toArray(new Integer[0]);
+            Arrays.sort(sorted, (a, b) -> Double.compare(supports.get(a)[0], supports.get(b)[0]));
+            slots = new int[sorted.length];
+            starts = new double[sorted.length];
+            ends = new double[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                slots[i] = sorted[i];
+                starts[i] = supports.get(sorted[i])[0];
+                ends[i] = supports.get(sorted[i])[1];
+            }
+        }
+
+        void markActive(Double crispValue, boolean[] active) {
+            if (crispValue == null) {
+                for (int slot : slots) active[slot] = true;
+                return;
+            }
+
+            double x = Math.max(minValue, Math.min(maxValue, crispValue));
+            int limit = upperBound(starts, x);
+            for (int i = 0; i < limit; i++) {
+                if (ends[i] >= x) active[slots[i]] = true;
+            }
+        }
+
+        // number of starts <= x
+        private static int upperBound(double[] starts, double x) {
+            int lo = 0;
+            int hi = starts.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] <= x) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package fuzzylogic.rules;
+
+import fuzzylogic.core.LinguisticVariable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Rules as FCL-style text, one statement per rule:
+//   RULE name : IF var IS [NOT] set { AND|OR var IS [NOT] set } THEN var IS set [WITH weight] [DISABLED] ;
+// Keywords are case-insensitive, and '#' or '//' comment out the rest of a line.
+public final class RuleTextFormat {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private RuleTextFormat() {
+    }
+
+    public static List<FuzzyRule> read(Path path) throws IOException {
+        try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(in);
+        }
+    }
+
+    public static void write(Collection<FuzzyRule> rules, Path path) throws IOException {
+        Files.writeString(path, format(rules), StandardCharsets.UTF_8);
+    }
+
+    public static List<FuzzyRule> parse(String text) {
+        try {
+            return parse(new TextLexer(new StringReader(text), Math.min(text.length() + 2, BUFFER_SIZE)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static List<FuzzyRule> parse(Reader in) throws IOException {
+        return parse(new TextLexer(in, BUFFER_SIZE));
+    }
+
+    private static List<FuzzyRule> parse(TextLexer in) throws IOException {
+        List<FuzzyRule> rules = new ArrayList<>();
+        while (in.advance()) {
+            in.expect("RULE");
+            rules.add(parseRule(in, null, null));
+            in.expectEnd();
+        }
+        return rules;
+    }
+
+    // One statement after its RULE keyword, up to but not including the ';'. ModelTextFormat
+    // passes the declared variables to check names against; a plain rule file passes null and
+    // leaves the check to whoever installs the rules.
+    public static FuzzyRule parseRule(TextLexer in, Map<String, LinguisticVariable> inputs,
+                                      Map<String, LinguisticVariable> outputs) throws IOException {
+        // rule names are unique, so they are not worth interning
+        FuzzyRule rule = new FuzzyRule(in.word("rule name"));
+        in.expect(":");
+        in.expect("IF");
+        boolean isAnd = true;
+        do {
+            String variable = in.name("input variable");
+            in.expect("IS");
+            boolean isNot = in.accept("NOT");
+            String set = in.name("fuzzy set");
+            if (inputs != null) check(in, inputs, "input", variable, set);
+            rule.addAntecedent(variable, set, isAnd, isNot);
+            if (in.accept("AND")) {
+                isAnd = true;
+            } else if (in.accept("OR")) {
+                isAnd = false;
+            } else {
+                break;
+            }
+        } while (true);
+
+        in.expect("THEN");
+        String output = in.name("output variable");
+        in.expect("IS");
+        String set = in.name("fuzzy set");
+        if (outputs != null) check(in, outputs, "output", output, set);
+        rule.setConsequent(output, set);
+        if (in.accept("WITH")) rule.setWeight(in.number("weight"));
+        if (in.accept("DISABLED")) rule.setEnabled(false);
+        return rule;
+    }
+
+    private static void check(TextLexer in, Map<String, LinguisticVariable> variables, String kind,
+                              String variable, String set) {
+        LinguisticVariable var = variables.get(variable);
+        if (var == null) throw in.error("unknown " + kind + " variable " + variable);
+        if (!var.getFuzzySets().containsKey(set)) throw in.error("unknown fuzzy set " + variable + "." + set);
+    }
+
+    public static String format(Collection<FuzzyRule> rules) {
+        StringBuilder sb = new StringBuilder();
+        for (FuzzyRule rule : rules) {
+            sb.append(format(rule)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // only rules that parse back are written: at least one antecedent, a consequent, and names
+    // that are single tokens
+    public static String format(FuzzyRule rule) {
+        List<FuzzyRule.Antecedent> antecedents = rule.getAntecedents();
+        FuzzyRule.Consequent consequent = rule.getConsequent();
+        if (antecedents.isEmpty() || consequent == null) {
+            throw new IllegalArgumentException("Rule " + rule.getName() + " has no "
+                    + (antecedents.isEmpty() ? "antecedents" : "consequent") + " and cannot be written as text");
+        }
+        StringBuilder sb = new StringBuilder("RULE ").append(name(rule, rule.getName())).append(" : IF");
+        for (int i = 0; i < antecedents.size(); i++) {
+            FuzzyRule.Antecedent ant = antecedents.get(i);
+            if (i > 0) sb.append(ant.isAnd() ? " AND" : " OR");
+            sb.append(' ').append(name(rule, ant.getVariable())).append(" IS ");
+            if (ant.isNot()) sb.append("NOT ");
+            sb.append(name(rule, ant.getFuzzySet()));
+        }
+        sb.append(" THEN ").append(name(rule, consequent.getVariable()))
+                .append(" IS ").append(name(rule, consequent.getFuzzySet()));
+        if (rule.getWeight() != 1.0) sb.append(" WITH ").append(rule.getWeight());
+        if (!rule.isEnabled()) sb.append(" DISABLED");
+        return sb.append(';').toString();
+    }
+
+    private static String name(FuzzyRule rule, String name) {
+        if (!TextLexer.isWord(name)) {
+            throw new IllegalArgumentException("Rule " + rule.getName() + " uses the name '" + name
+                    + "', which cannot be written as a single token");
+        }
+        return name;
+    }
+}
@@ -0,0 +1,246 @@
+package fuzzylogic.rules;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+// Tokenizer shared by RuleTextFormat and ModelTextFormat. Tokens are words (names, keywords and
+// numbers) and the punctuation ':' and ';', read straight out of a refillable char buffer into a
+// reusable token buffer. Keywords are case-insensitive, and '#' or '//' comment out the rest of a line.
+public final class TextLexer {
+    private static final int EOF = -1, WORD = 0, COLON = ':', SEMICOLON = ';';
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private int line = 1;
+
+    private char[] token = new char[64];
+    private int length;
+    private int kind;
+    private int tokenLine;
+
+    // open-addressed intern table for names
+    private String[] names = new String[256];
+    private int nameCount;
+
+    public TextLexer(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+
+    // moves to the next token; false at the end of the input
+    public boolean advance() throws IOException {
+        int c;
+        while (true) {
+            c = peek();
+            if (c < 0) {
+                kind = EOF;
+                tokenLine = line;
+                return false;
+            }
+            if (c == '#' || (c == '/' && peekSecond() == '/')) {
+                while ((c = peek()) >= 0 && c != '\n') position++;
+            } else if (Character.isWhitespace(c)) {
+                if (c == '\n') line++;
+                position++;
+            } else {
+                break;
+            }
+        }
+
+        tokenLine = line;
+        if (c == ':' || c == ';') {
+            position++;
+            kind = c;
+            length = 0;
+            return true;
+        }
+        kind = WORD;
+        length = 0;
+        while ((c = peek()) >= 0 && c != ':' && c != ';' && c != '#' && !Character.isWhitespace(c)) {
+            if (c == '/' && peekSecond() == '/') break;
+            if (length == token.length) token = Arrays.copyOf(token, length * 2);
+            token[length++] = (char) c;
+            position++;
+        }
+        return true;
+    }
+
+    // the character after the current one, refilling the buffer without losing the current one
+    private int peekSecond() throws IOException {
+        if (position + 1 < limit) return buffer[position + 1];
+        buffer[0] = buffer[position];
+        int read = reader.read(buffer, 1, buffer.length - 1);
+        position = 0;
+        limit = 1 + Math.max(read, 0);
+        return read > 0 ? buffer[1] : -1;
+    }
+
+    public boolean atEnd() { return kind == SEMICOLON || kind == EOF; }
+
+    public boolean isNumber() {
+        if (kind != WORD) return false;
+        char c = token[0];
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    public boolean accept(String keyword) throws IOException {
+        if (!is(keyword)) return false;
+        advance();
+        return true;
+    }
+
+    private boolean is(String keyword) {
+        if (keyword.length() == 1 && !Character.isLetter(keyword.charAt(0))) {
+            return kind == keyword.charAt(0);
+        }
+        if (kind != WORD || length != keyword.length()) return false;
+        for (int i = 0; i < length; i++) {
+            if (Character.toUpperCase(token[i]) != keyword.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public void expect(String keyword) throws IOException {
+        if (!accept(keyword)) throw error("expected " + keyword + " but found '" + text() + "'");
+    }
+
+    public void expectEnd() throws IOException {
+        if (kind == EOF) throw error("statement is missing its ';'");
+        if (kind != SEMICOLON) throw error("unexpected '" + text() + "'");
+    }
+
+    public String name(String what) throws IOException {
+        if (kind != WORD) throw error("expected " + what + " but found '" + text() + "'");
+        String name = intern();
+        advance();
+        return name;
+    }
+
+    public String word(String what) throws IOException {
+        if (kind != WORD) throw error("expected " + what + " but found '" + text() + "'");
+        String word = new String(token, 0, length);
+        advance();
+        return word;
+    }
+
+    public double number(String what) throws IOException {
+        if (kind != WORD) throw error("expected " + what + " but found '" + text() + "'");
+        double value = parseNumber();
+        advance();
+        return value;
+    }
+
+    // exact fast path for decimals with at most 15 digits and no exponent, where the
+    // digits and the power of ten are both exact doubles; everything else goes to the JDK
+    private double parseNumber() {
+        int i = 0;
+        boolean negative = false;
+        if (token[0] == '-' || token[0] == '+') {
+            negative = token[0] == '-';
+            i++;
+        }
+        long digits = 0;
+        int count = 0;
+        int scale = -1;
+        for (; i < length; i++) {
+            char c = token[i];
+            if (c >= '0' && c <= '9') {
+                digits = digits * 10 + (c - '0');
+                if (++count > 15) return slowNumber();
+                if (scale >= 0) scale++;
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return slowNumber();
+            }
+        }
+        if (count == 0) return slowNumber();
+        double value = scale > 0 ? digits / POWERS_OF_TEN[scale] : digits;
+        return negative ? -value : value;
+    }
+
+    private double slowNumber() {
+        try {
+            return Double.parseDouble(text());
+        } catch (NumberFormatException e) {
+            throw error("invalid number '" + text() + "'");
+        }
+    }
+
+    private String intern() {
+        int hash = 0;
+        for (int i = 0; i < length; i++) hash = 31 * hash + token[i];
+        int mask = names.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            String name = names[slot];
+            if (name == null) {
+                name = new String(token, 0, length);
+                names[slot] = name;
+                if (++nameCount * 2 > names.length) rehash();
+                return name;
+            }
+            if (name.hashCode() == hash && matches(name)) return name;
+        }
+    }
+
+    private boolean matches(String name) {
+        if (name.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != token[i]) return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+        String[] old = names;
+        names = new String[old.length * 2];
+        int mask = names.length - 1;
+        for (String name : old) {
+            if (name == null) continue;
+            int slot = name.hashCode() & mask;
+            while (names[slot] != null) slot = (slot + 1) & mask;
+            names[slot] = name;
+        }
+    }
+
+    // true when name reads back as exactly one word token
+    public static boolean isWord(String name) {
+        if (name.isEmpty() || name.contains("//")) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == ':' || c == ';' || c == '#' || Character.isWhitespace(c)) return false;
+        }
+        return true;
+    }
+
+    public String text() {
+        return switch (kind) {
+            case EOF -> "end of input";
+            case WORD -> new String(token, 0, length);
+            default -> String.valueOf((char) kind);
+        };
+    }
+
+    public IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Line " + tokenLine + ": " + message);
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+}
@@ -0,0 +1,72 @@
+package fuzzylogic.streaming;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+// Flow subscriber that hands each recommendation to a callback, requesting `window` items at a
+// time so a slow callback throttles the pipeline instead of growing a queue.
+public class CallbackSink implements Flow.Subscriber<Recommendation> {
+    private final Consumer<Recommendation> callback;
+    private final int window;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Flow.Subscription subscription;
+    private int remaining;
+    private volatile Throwable error;
+
+    public CallbackSink(Consumer<Recommendation> callback, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        this.callback = callback;
+        this.window = window;
+    }
+
+    // one line per recommendation: userId,timestamp,output=value,... or userId,timestamp,error=message
+    public static CallbackSink printing(PrintStream out) {
+        return new CallbackSink(recommendation -> {
+            StringBuilder sb = new StringBuilder(recommendation.event().userId())
+                    .append(',').append(recommendation.event().timestamp());
+            if (recommendation.isFailed()) {
+                sb.append(",error=").append(recommendation.error().getMessage());
+            }
+            for (Map.Entry<String, Double> entry : recommendation.crispOutputs().entrySet()) {
+                sb.append(',').append(entry.getKey()).append('=').append(String.format("%.4f", entry.getValue()));
+            }
+            out.println(sb);
+        }, 256);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        remaining = window;
+        subscription.request(window);
+    }
+
+    @Override
+    public void onNext(Recommendation item) {
+        callback.accept(item);
+        // top up in half-window steps to keep the publisher busy without per-item requests
+        if (--remaining <= window / 2) {
+            subscription.request(window - remaining);
+            remaining = window;
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+        done.countDown();
+    }
+
+    public void awaitCompletion() throws InterruptedException { done.await(); }
+    public Throwable getError() { return error; }
+}
@@ -0,0 +1,55 @@
+package fuzzylogic.streaming;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+// Follows a growing file like tail -f, starting at its beginning, and submits each complete
+// line as it appears. Runs until the thread is interrupted; a truncated file is reread from the start.
+// Lines are handled as in ReaderSource.
+public class FileTailSource implements StreamSource {
+    private final Path path;
+    private final long pollMillis;
+    private final LineParser lines = new LineParser();
+
+    public FileTailSource(Path path, long pollMillis) {
+        this.path = path;
+        this.pollMillis = pollMillis;
+    }
+
+    @Override
+    public void run(StreamingPipeline pipeline) throws IOException, InterruptedException {
+        long position = 0;
+        ByteArrayOutputStream partial = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+                if (file.length() < position) {
+                    position = 0;
+                    partial.reset();
+                }
+                file.seek(position);
+                int read;
+                while ((read = file.read(buffer)) > 0) {
+                    position += read;
+                    // split on raw newline bytes so multi-byte characters are never cut
+                    int lineStart = 0;
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] != '\n') continue;
+                        partial.write(buffer, lineStart, i - lineStart);
+                        lines.submit(pipeline, partial.toString(StandardCharsets.UTF_8));
+                        partial.reset();
+                        lineStart = i + 1;
+                    }
+                    partial.write(buffer, lineStart, read - lineStart);
+                }
+            }
+            Thread.sleep(pollMillis);
+        }
+    }
+
+    public long getMalformedLines() { return lines.getMalformedLines(); }
+}
@@ -0,0 +1,49 @@
+package fuzzylogic.streaming;
+
+import fuzzylogic.core.LinguisticVariable;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+// In-memory load: each of numUsers users random-walks every input within its variable's range,
+// emitting eventsPerUser events round-robin. Deterministic for a given seed.
+public class GeneratorSource implements StreamSource {
+    private final Collection<LinguisticVariable> inputVariables;
+    private final int numUsers;
+    private final long eventsPerUser;
+    private final long seed;
+
+    public GeneratorSource(Collection<LinguisticVariable> inputVariables, int numUsers, long eventsPerUser, long seed) {
+        this.inputVariables = inputVariables;
+        this.numUsers = numUsers;
+        this.eventsPerUser = eventsPerUser;
+        this.seed = seed;
+    }
+
+    @Override
+    public void run(StreamingPipeline pipeline) throws InterruptedException {
+        Random random = new Random(seed);
+        LinguisticVariable[] vars = inputVariables.toArray(new LinguisticVariable[0]);
+        double[][] state = new double[numUsers][vars.length];
+        for (double[] user : state) {
+            for (int v = 0; v < vars.length; v++) {
+                user[v] = vars[v].getMinValue() + random.nextDouble() * (vars[v].getMaxValue() - vars[v].getMinValue());
+            }
+        }
+
+        for (long tick = 0; tick < eventsPerUser; tick++) {
+            for (int u = 0; u < numUsers; u++) {
+                Map<String, Double> inputs = new LinkedHashMap<>();
+                for (int v = 0; v < vars.length; v++) {
+                    double range = vars[v].getMaxValue() - vars[v].getMinValue();
+                    double next = state[u][v] + random.nextGaussian() * range * 0.01;
+                    state[u][v] = Math.max(vars[v].getMinValue(), Math.min(vars[v].getMaxValue(), next));
+                    inputs.put(vars[v].getName(), state[u][v]);
+                }
+                pipeline.submit(new SensorEvent("user-" + u, tick, inputs));
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package fuzzylogic.streaming;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Line handling shared by the text sources: blank lines and lines starting with '#' are skipped,
+// malformed lines are counted and dropped. The count is read from other threads while the
+// source's thread is still submitting.
+final class LineParser {
+    private final AtomicLong malformedLines = new AtomicLong();
+
+    private static boolean isEvent(String line) {
+        String trimmed = line.trim();
+        return !trimmed.isEmpty() && !trimmed.startsWith("#");
+    }
+
+    void submit(StreamingPipeline pipeline, String line) throws InterruptedException {
+        if (!isEvent(line)) return;
+        SensorEvent event;
+        try {
+            event = SensorEvent.parse(line);
+        } catch (IllegalArgumentException e) {
+            malformedLines.incrementAndGet();
+            return;
+        }
+        pipeline.submit(event);
+    }
+
+    long getMalformedLines() { return malformedLines.get(); }
+}
@@ -0,0 +1,31 @@
+package fuzzylogic.streaming;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+// Events in SensorEvent text form, one per line, until end of input. Blank lines and lines
+// starting with '#' are skipped; malformed lines are counted and dropped.
+public class ReaderSource implements StreamSource {
+    private final BufferedReader reader;
+    private final LineParser lines = new LineParser();
+
+    public ReaderSource(Reader reader) {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+    }
+
+    public static ReaderSource stdin() {
+        return new ReaderSource(new InputStreamReader(System.in));
+    }
+
+    @Override
+    public void run(StreamingPipeline pipeline) throws IOException, InterruptedException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.submit(pipeline, line);
+        }
+    }
+
+    public long getMalformedLines() { return lines.getMalformedLines(); }
+}
@@ -0,0 +1,18 @@
+package fuzzylogic.streaming;
+
+import java.util.Map;
+
+// Crisp outputs inferred for one SensorEvent, or the error that kept it from being inferred.
+public record Recommendation(SensorEvent event, Map<String, Double> crispOutputs, RuntimeException error) {
+
+    public Recommendation(SensorEvent event, Map<String, Double> crispOutputs) {
+        this(event, crispOutputs, null);
+    }
+
+    public static Recommendation failed(SensorEvent event, RuntimeException error) {
+        return new Recommendation(event, Map.of(), error);
+    }
+
+    public boolean isFailed() { return error != null; }
+    public Double getCrispOutput(String outputVariable) { return crispOutputs.get(outputVariable); }
+}
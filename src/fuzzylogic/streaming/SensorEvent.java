@@ -0,0 +1,38 @@
+package fuzzylogic.streaming;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// One timestamped reading from a user's device; inputs are keyed by input variable name.
+public record SensorEvent(String userId, long timestamp, Map<String, Double> inputs) {
+
+    public SensorEvent {
+        inputs = Collections.unmodifiableMap(new LinkedHashMap<>(inputs));
+    }
+
+    // text form: userId,timestamp,name=value,name=value,...
+    public static SensorEvent parse(String line) {
+        String[] fields = line.trim().split(",");
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("Expected userId,timestamp,name=value...: " + line);
+        }
+        Map<String, Double> inputs = new LinkedHashMap<>();
+        for (int i = 2; i < fields.length; i++) {
+            int eq = fields[i].indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected name=value, got " + fields[i]);
+            }
+            inputs.put(fields[i].substring(0, eq).trim(), Double.parseDouble(fields[i].substring(eq + 1).trim()));
+        }
+        return new SensorEvent(fields[0].trim(), Long.parseLong(fields[1].trim()), inputs);
+    }
+
+    public String format() {
+        StringBuilder sb = new StringBuilder(userId).append(',').append(timestamp);
+        for (Map.Entry<String, Double> entry : inputs.entrySet()) {
+            sb.append(',').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,7 @@
+package fuzzylogic.streaming;
+
+// Producer of sensor events. run() pushes events with pipeline.submit(), which blocks while
+// the pipeline is saturated, and returns when the source is exhausted or interrupted.
+public interface StreamSource {
+    void run(StreamingPipeline pipeline) throws Exception;
+}
@@ -0,0 +1,237 @@
+package fuzzylogic.streaming;
+
+import fuzzylogic.core.CompiledFuzzySystem;
+import fuzzylogic.core.FuzzySystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Continuous inference over many users' sensor events.
+//
+//   sources --submit()--> bounded partition queues --workers--> SubmissionPublisher --> sinks
+//
+// Events are partitioned by user, so each user's recommendations come out in event order.
+// A worker blocks for the first queued event, drains up to maxBatchSize more and runs them
+// through the compiled model's row-major batch path, so batches grow with load. Every hop is
+// bounded: a slow sink fills its publisher buffer, which blocks the workers, which fills the
+// partition queues, which blocks submit() in the sources. An event whose inference throws comes
+// out as a failed Recommendation carrying the error, so sinks see every event they were sent.
+public class StreamingPipeline implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final SensorEvent END_OF_STREAM = new SensorEvent("", 0, Map.of());
+
+    private final CompiledFuzzySystem model;
+    private final String[] inputNames;
+    private final String[] outputNames;
+    private final int maxBatchSize;
+    private final List<BlockingQueue<SensorEvent>> partitions;
+    private final List<Thread> workers;
+    private final SubmissionPublisher<Recommendation> publisher;
+
+    private final AtomicLong eventsProcessed = new AtomicLong();
+    private final AtomicLong batchesProcessed = new AtomicLong();
+    private final AtomicLong eventsFailed = new AtomicLong();
+
+    // submitters share the read lock and close() takes the write lock, so no event is queued
+    // behind END_OF_STREAM where no worker would ever take it
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean started;
+    private volatile boolean closed;
+
+    public StreamingPipeline(FuzzySystem system) {
+        this(system.compile(), Math.max(1, Runtime.getRuntime().availableProcessors()),
+                DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, ForkJoinPool.commonPool());
+    }
+
+    // sinkExecutor delivers to subscribers; each subscriber buffers up to Flow.defaultBufferSize() items
+    public StreamingPipeline(CompiledFuzzySystem model, int numPartitions, int queueCapacity, int maxBatchSize,
+                             Executor sinkExecutor) {
+        if (numPartitions < 1 || queueCapacity < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Partitions, queue capacity and batch size must be positive");
+        }
+        this.model = model;
+        this.inputNames = model.getInputNames();
+        this.outputNames = model.getOutputNames();
+        this.maxBatchSize = maxBatchSize;
+        this.publisher = new SubmissionPublisher<>(sinkExecutor, Flow.defaultBufferSize());
+
+        this.partitions = new ArrayList<>();
+        this.workers = new ArrayList<>();
+        for (int p = 0; p < numPartitions; p++) {
+            BlockingQueue<SensorEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+            partitions.add(queue);
+            Thread worker = new Thread(() -> drain(queue), "fuzzy-stream-" + p);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+    }
+
+    // sinks must be subscribed before start() to see every recommendation
+    public void subscribe(Flow.Subscriber<? super Recommendation> sink) {
+        publisher.subscribe(sink);
+    }
+
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        for (Thread worker : workers) worker.start();
+    }
+
+    // runs the source on its own thread; the future completes when the source is exhausted
+    public CompletableFuture<Void> startSource(StreamSource source) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                source.run(this);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, task -> {
+            Thread thread = new Thread(task, "fuzzy-source");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    // blocks while the event's partition is full
+    public void submit(SensorEvent event) throws InterruptedException {
+        Lock lock = closeLock.readLock();
+        lock.lockInterruptibly();
+        try {
+            if (closed) throw new IllegalStateException("Pipeline is closed");
+            partitionOf(event).put(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // non-blocking variant for sources that would rather drop than wait
+    public boolean offer(SensorEvent event) {
+        Lock lock = closeLock.readLock();
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Pipeline is closed");
+            return partitionOf(event).offer(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private BlockingQueue<SensorEvent> partitionOf(SensorEvent event) {
+        return partitions.get(Math.floorMod(event.userId().hashCode(), partitions.size()));
+    }
+
+    private void drain(BlockingQueue<SensorEvent> queue) {
+        List<SensorEvent> batch = new ArrayList<>(maxBatchSize);
+        double[] inputRows = new double[maxBatchSize * inputNames.length];
+        double[] outputRows = new double[maxBatchSize * outputNames.length];
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - 1);
+                boolean ended = batch.removeIf(event -> event == END_OF_STREAM);
+                process(batch, inputRows, outputRows);
+                batch.clear();
+                if (ended) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(List<SensorEvent> batch, double[] inputRows, double[] outputRows) {
+        int count = batch.size();
+        if (count == 0) return;
+
+        // missing inputs go in as NaN, which the compiled model reads as the variable's midpoint
+        for (int i = 0; i < count; i++) {
+            Map<String, Double> inputs = batch.get(i).inputs();
+            for (int v = 0; v < inputNames.length; v++) {
+                Double value = inputs.get(inputNames[v]);
+                inputRows[i * inputNames.length + v] = value != null ? value : Double.NaN;
+            }
+        }
+        RuntimeException batchError = null;
+        try {
+            model.calculateBatch(inputRows, outputRows, count);
+            batchesProcessed.incrementAndGet();
+        } catch (RuntimeException e) {
+            batchError = e;
+        }
+
+        for (int i = 0; i < count; i++) {
+            Recommendation recommendation;
+            try {
+                // a failed batch is rerun row by row so only the events that throw are lost
+                if (batchError != null) {
+                    double[] row = Arrays.copyOfRange(inputRows, i * inputNames.length, (i + 1) * inputNames.length);
+                    System.arraycopy(model.calculate(row), 0, outputRows, i * outputNames.length, outputNames.length);
+                }
+                Map<String, Double> outputs = new LinkedHashMap<>();
+                for (int o = 0; o < outputNames.length; o++) {
+                    outputs.put(outputNames[o], outputRows[i * outputNames.length + o]);
+                }
+                recommendation = new Recommendation(batch.get(i), outputs);
+                eventsProcessed.incrementAndGet();
+            } catch (RuntimeException e) {
+                recommendation = Recommendation.failed(batch.get(i), e);
+                eventsFailed.incrementAndGet();
+            }
+            // blocks while any subscriber's buffer is full
+            publisher.submit(recommendation);
+        }
+    }
+
+    // Stops accepting events, lets the workers finish everything already queued and completes
+    // the sinks. Sources should be finished first; events submitted concurrently are either queued
+    // before the end of stream or rejected. If interrupted while waiting, the sinks are completed
+    // exceptionally instead.
+    @Override
+    public void close() {
+        // workers must be running so submitters blocked on a full partition can finish
+        start();
+        Lock lock = closeLock.writeLock();
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            for (BlockingQueue<SensorEvent> queue : partitions) {
+                queue.put(END_OF_STREAM);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            publisher.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            publisher.closeExceptionally(e);
+        }
+    }
+
+    public long getEventsProcessed() { return eventsProcessed.get(); }
+    public long getBatchesProcessed() { return batchesProcessed.get(); }
+    public long getEventsFailed() { return eventsFailed.get(); }
+    public int getQueuedEvents() { return partitions.stream().mapToInt(BlockingQueue::size).sum(); }
+    public int getPartitionCount() { return partitions.size(); }
+}
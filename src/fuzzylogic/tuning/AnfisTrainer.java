@@ -0,0 +1,813 @@
+package fuzzylogic.tuning;
+
+import fuzzylogic.core.CompiledFuzzySystem;
+import fuzzylogic.core.ForkJoinTasks;
+import fuzzylogic.core.FuzzySet;
+import fuzzylogic.core.FuzzySystem;
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.inference.InferenceEngine;
+import fuzzylogic.inference.ParallelInferenceEngine;
+import fuzzylogic.inference.SugenoInferenceEngine;
+import fuzzylogic.membershipFunction.MembershipFunction;
+import fuzzylogic.operators.AndMin;
+import fuzzylogic.operators.AndProduct;
+import fuzzylogic.operators.BinaryOperator;
+import fuzzylogic.operators.NotComplement;
+import fuzzylogic.operators.OrMax;
+import fuzzylogic.operators.OrSum;
+import fuzzylogic.rules.FuzzyRule;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Hybrid ANFIS training of a Sugeno system on row-major double[] buffers. Every epoch first
+// fits the consequents by ridge-regularized least squares over the whole dataset, with each
+// rule's consequent constant or linear in the inputs, then moves the input set parameters by
+// Adam gradient descent on the mean squared error over shuffled mini-batches. Gaussian sets
+// are smooth; triangular and trapezoidal sets take the gradient of their linear segment (a
+// subgradient at the kinks), and shoulders on the range edge stay fixed as in ParameterSpace.
+//
+// Rows are split into fixed parts and slices, independent of the pool size, and partial sums
+// are combined in order, so a run is reproducible for a given seed. Training stops after the
+// given epochs, once the loss stalls for patience epochs, or when the time limit has passed;
+// the returned system holds the parameters of the best epoch.
+public class AnfisTrainer {
+    public static final int SLICE_SIZE = 64;
+    private static final int PART_SIZE = 4096;
+    private static final int MAX_PARTS = 32;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    private static final int MIN = 0, PRODUCT = 1, MAX = 2, SUM = 3;
+
+    private final ParameterSpace space;
+    private final ForkJoinPool pool;
+    private final SugenoInferenceEngine engine;
+
+    // inputs, and the input and original function of each membership slot in variable order
+    private final String[] inputNames;
+    private final double[] inputMin;
+    private final double[] inputMax;
+    private final int[] slotInput;
+    private final MembershipFunction[] slotFunction;
+
+    // rules: the antecedents of rule r are [ruleStart[r], ruleStart[r + 1])
+    private final int[] ruleStart;
+    private final int[] antecedentSlot;
+    private final boolean[] antecedentAnd;
+    private final boolean[] antecedentNot;
+    private final double[] ruleWeight;
+    private final int[] ruleOutput;
+    // index of the rule's consequent among its output's consequents
+    private final int[] ruleConsequent;
+    private final int andOperator;
+    private final int orOperator;
+
+    // outputs and their consequent sets, in first-use order
+    private final String[] outputNames;
+    private final double[] outputMid;
+    private final List<List<String>> consequentSets = new ArrayList<>();
+
+    private int epochs = 50;
+    private double learningRate = 0.01;
+    private int batchSize = 512;
+    private int consequentOrder = 1;
+    private double regularization = 1e-6;
+    private long seed = 42L;
+    private int patience = 0;
+    private double minDelta = 0.0;
+    private Duration timeLimit;
+
+    public AnfisTrainer(FuzzySystem system) {
+        this(system, ForkJoinPool.commonPool());
+    }
+
+    public AnfisTrainer(FuzzySystem system, ForkJoinPool pool) {
+        InferenceEngine inference = system.getInferenceEngine();
+        if (inference instanceof ParallelInferenceEngine parallel) inference = parallel.getDelegate();
+        if (!(inference instanceof SugenoInferenceEngine sugeno)) {
+            throw new IllegalArgumentException("ANFIS training needs a Sugeno system");
+        }
+        if (!(sugeno.getNotOperator() instanceof NotComplement)) {
+            throw new IllegalArgumentException("ANFIS training needs the complement NOT operator");
+        }
+        this.space = new ParameterSpace(system, true, false);
+        this.pool = pool;
+        this.engine = sugeno;
+        andOperator = operatorCode(sugeno.getAndOperator());
+        orOperator = operatorCode(sugeno.getOrOperator());
+
+        Map<String, LinguisticVariable> inputs = system.getInputVariables();
+        int numInputs = inputs.size();
+        inputNames = new String[numInputs];
+        inputMin = new double[numInputs];
+        inputMax = new double[numInputs];
+        List<MembershipFunction> functions = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        int v = 0;
+        for (LinguisticVariable var : inputs.values()) {
+            inputNames[v] = var.getName();
+            inputMin[v] = var.getMinValue();
+            inputMax[v] = var.getMaxValue();
+            for (FuzzySet set : var.getFuzzySets().values()) {
+                slots.put(var.getName() + "\u0000" + set.getName(), functions.size());
+                functions.add(set.getMembershipFunction());
+                owners.add(v);
+            }
+            v++;
+        }
+        slotFunction = functions.toArray(new MembershipFunction[0]);
+        slotInput = owners.stream().mapToInt(Integer::intValue).toArray();
+
+        Map<String, LinguisticVariable> outputs = system.getOutputVariables();
+        outputNames = outputs.keySet().toArray(new String[0]);
+        outputMid = new double[outputNames.length];
+        int o = 0;
+        for (LinguisticVariable var : outputs.values()) {
+            outputMid[o++] = (var.getMinValue() + var.getMaxValue()) / 2;
+            consequentSets.add(new ArrayList<>());
+        }
+
+        // the same rules the compiled model keeps, minus those without a resolvable output
+        List<FuzzyRule> active = new ArrayList<>();
+        for (FuzzyRule rule : system.getRuleBase().getAllRules()) {
+            FuzzyRule.Consequent consequent = rule.getConsequent();
+            if (rule.isEnabled() && !rule.getAntecedents().isEmpty() && consequent != null
+                    && outputs.containsKey(consequent.getVariable())) {
+                active.add(rule);
+            }
+        }
+        int numAntecedents = 0;
+        for (FuzzyRule rule : active) numAntecedents += rule.getAntecedents().size();
+        ruleStart = new int[active.size() + 1];
+        antecedentSlot = new int[numAntecedents];
+        antecedentAnd = new boolean[numAntecedents];
+        antecedentNot = new boolean[numAntecedents];
+        ruleWeight = new double[active.size()];
+        ruleOutput = new int[active.size()];
+        ruleConsequent = new int[active.size()];
+        List<String> outputList = Arrays.asList(outputNames);
+        int a = 0;
+        for (int r = 0; r < active.size(); r++) {
+            FuzzyRule rule = active.get(r);
+            ruleStart[r] = a;
+            for (FuzzyRule.Antecedent ant : rule.getAntecedents()) {
+                Integer slot = slots.get(ant.getVariable() + "\u0000" + ant.getFuzzySet());
+                if (slot == null) {
+                    throw new IllegalArgumentException("Rule " + rule.getName() + " references unknown fuzzy set: "
+                            + ant.getVariable() + "." + ant.getFuzzySet());
+                }
+                antecedentSlot[a] = slot;
+                antecedentAnd[a] = ant.isAnd();
+                antecedentNot[a] = ant.isNot();
+                a++;
+            }
+            ruleWeight[r] = rule.getWeight();
+            ruleOutput[r] = outputList.indexOf(rule.getConsequent().getVariable());
+            List<String> sets = consequentSets.get(ruleOutput[r]);
+            int index = sets.indexOf(rule.getConsequent().getFuzzySet());
+            if (index < 0) {
+                index = sets.size();
+                sets.add(rule.getConsequent().getFuzzySet());
+            }
+            ruleConsequent[r] = index;
+        }
+        ruleStart[active.size()] = a;
+    }
+
+    private static int operatorCode(BinaryOperator op) {
+        if (op instanceof AndMin) return MIN;
+        if (op instanceof AndProduct) return PRODUCT;
+        if (op instanceof OrMax) return MAX;
+        if (op instanceof OrSum) return SUM;
+        throw new IllegalArgumentException("ANFIS training has no derivative for " + op.getClass().getSimpleName());
+    }
+
+    public void setEpochs(int epochs) {
+        if (epochs < 0) {
+            throw new IllegalArgumentException("Epochs must not be negative");
+        }
+        this.epochs = epochs;
+    }
+
+    // step size as a fraction of each parameter's range
+    public void setLearningRate(double learningRate) {
+        if (!(learningRate >= 0)) {
+            throw new IllegalArgumentException("Learning rate must not be negative");
+        }
+        this.learningRate = learningRate;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    // 0 fits a constant per consequent set, 1 a constant plus one coefficient per input
+    public void setConsequentOrder(int order) {
+        if (order != 0 && order != 1) {
+            throw new IllegalArgumentException("Consequent order must be 0 or 1");
+        }
+        this.consequentOrder = order;
+    }
+
+    // ridge penalty relative to the mean diagonal of the normal equations, pulling towards the previous fit
+    public void setRegularization(double regularization) {
+        if (!(regularization >= 0)) {
+            throw new IllegalArgumentException("Regularization must not be negative");
+        }
+        this.regularization = regularization;
+    }
+
+    public void setSeed(long seed) { this.seed = seed; }
+    public void setTimeLimit(Duration timeLimit) { this.timeLimit = timeLimit; }
+
+    // as ParameterTuner.setPatience, counted in epochs
+    public void setPatience(int patience, double minDelta) {
+        if (patience < 0 || minDelta < 0) {
+            throw new IllegalArgumentException("Patience and min delta must not be negative");
+        }
+        this.patience = patience;
+        this.minDelta = minDelta;
+    }
+
+    // inputRows[row * inputCount + v] and targetRows[row * outputCount + o] in the system's variable
+    // order, as for CompiledFuzzySystem.calculateBatch; a NaN target leaves that output unscored
+    public Result train(double[] inputRows, double[] targetRows, int count) {
+        int numInputs = inputNames.length, numOutputs = outputNames.length;
+        if (count < 0) throw new IllegalArgumentException("Row count must not be negative");
+        if (inputRows.length < (long) count * numInputs || targetRows.length < (long) count * numOutputs) {
+            throw new IllegalArgumentException("Row arrays too short for " + count + " rows");
+        }
+        long start = System.nanoTime();
+
+        // inputs are clamped once, and missing ones take the midpoint, as in the compiled model
+        double[] inputs = new double[count * numInputs];
+        for (int row = 0; row < count; row++) {
+            for (int v = 0; v < numInputs; v++) {
+                double value = inputRows[row * numInputs + v];
+                if (Double.isNaN(value)) value = (inputMin[v] + inputMax[v]) / 2.0;
+                inputs[row * numInputs + v] = Math.max(inputMin[v], Math.min(inputMax[v], value));
+            }
+        }
+        double[] targets = Arrays.copyOf(targetRows, count * numOutputs);
+        Data data = new Data(inputs, targets, count);
+
+        double[] x = space.getInitialValues();
+        double[][] theta = initialConsequents();
+        double initialLoss = data.loss(space.build(x).compile());
+        if (Double.isNaN(initialLoss)) {
+            throw new IllegalArgumentException("Dataset has no labelled outputs");
+        }
+
+        double[] lower = space.getLowerBounds(), upper = space.getUpperBounds();
+        double[] moment = new double[x.length], velocity = new double[x.length];
+        int[] step = new int[1];
+        double[] bestX = x.clone();
+        double[][] bestTheta = copy(theta);
+        double bestLoss = Double.POSITIVE_INFINITY;
+        List<Double> history = new ArrayList<>();
+        int stale = 0, epoch = 0;
+        while (epoch < epochs && !(patience > 0 && stale >= patience)
+                && (timeLimit == null || System.nanoTime() - start < timeLimit.toNanos())) {
+            fitConsequents(data, x, theta);
+            descend(data, x, theta, lower, upper, moment, velocity, step, new Random(seed ^ (epoch + 1) * GOLDEN));
+            double loss = evaluate(data, x, theta);
+            epoch++;
+
+            stale = loss < bestLoss - minDelta ? 0 : stale + 1;
+            if (loss < bestLoss) {
+                bestLoss = loss;
+                bestX = x.clone();
+                bestTheta = copy(theta);
+            }
+            history.add(loss);
+        }
+
+        // the reported loss is the compiled model's, which is what callers will run
+        FuzzySystem trained = build(bestX, bestTheta);
+        double[] losses = history.stream().mapToDouble(Double::doubleValue).toArray();
+        return new Result(trained, data.loss(trained.compile()), initialLoss, epoch, epoch < epochs, losses);
+    }
+
+    // the engine's current consequents, truncated to the trained order; missing ones are 0.5 as in the engines
+    private double[][] initialConsequents() {
+        int stride = 1 + consequentOrder * inputNames.length;
+        double[][] theta = new double[outputNames.length][];
+        for (int o = 0; o < outputNames.length; o++) {
+            List<String> sets = consequentSets.get(o);
+            theta[o] = new double[sets.size() * stride];
+            for (int c = 0; c < sets.size(); c++) {
+                SugenoInferenceEngine.PolynomialFunction function = engine.getConsequentFunction(outputNames[o], sets.get(c));
+                theta[o][c * stride] = function != null ? function.getConstant() : 0.5;
+                if (function == null || consequentOrder == 0) continue;
+                for (int v = 0; v < inputNames.length; v++) {
+                    double[] a = function.getCoefficients().get(inputNames[v]);
+                    if (a != null && a.length > 0) theta[o][c * stride + 1 + v] = a[0];
+                }
+            }
+        }
+        return theta;
+    }
+
+    private FuzzySystem build(double[] x, double[][] theta) {
+        FuzzySystem system = space.build(x);
+        SugenoInferenceEngine trained = new SugenoInferenceEngine(engine.getAndOperator(), engine.getOrOperator(),
+                engine.getNotOperator());
+        // sets no rule concludes keep their functions
+        for (Map.Entry<String, Map<String, SugenoInferenceEngine.PolynomialFunction>> output
+                : engine.getConsequentFunctions().entrySet()) {
+            for (Map.Entry<String, SugenoInferenceEngine.PolynomialFunction> function : output.getValue().entrySet()) {
+                trained.setConsequentFunction(output.getKey(), function.getKey(), function.getValue());
+            }
+        }
+        int stride = 1 + consequentOrder * inputNames.length;
+        for (int o = 0; o < outputNames.length; o++) {
+            List<String> sets = consequentSets.get(o);
+            for (int c = 0; c < sets.size(); c++) {
+                int at = c * stride;
+                SugenoInferenceEngine.PolynomialFunction function;
+                if (consequentOrder == 0) {
+                    function = new SugenoInferenceEngine.ConstantFunction(theta[o][at]);
+                } else {
+                    Map<String, Double> coefficients = new LinkedHashMap<>();
+                    for (int v = 0; v < inputNames.length; v++) coefficients.put(inputNames[v], theta[o][at + 1 + v]);
+                    function = SugenoInferenceEngine.PolynomialFunction.linear(theta[o][at], coefficients);
+                }
+                trained.setConsequentFunction(outputNames[o], sets.get(c), function);
+            }
+        }
+        system.setInferenceEngine(trained);
+        return system;
+    }
+
+    private static double[][] copy(double[][] theta) {
+        double[][] copy = new double[theta.length][];
+        for (int o = 0; o < theta.length; o++) copy[o] = theta[o].clone();
+        return copy;
+    }
+
+    // least squares over every labelled row, one set of normal equations per output
+    private void fitConsequents(Data data, double[] x, double[][] theta) {
+        int parts = data.parts();
+        Worker[] workers = new Worker[parts];
+        List<Runnable> tasks = new ArrayList<>();
+        for (int p = 0; p < parts; p++) {
+            int part = p;
+            tasks.add(() -> {
+                Worker worker = workers[part] = new Worker(x, theta);
+                worker.normalEquations();
+                for (int row = data.partFrom(part); row < data.partTo(part); row++) worker.accumulateNormal(data, row);
+            });
+        }
+        ForkJoinTasks.invokeAll(pool, tasks);
+
+        for (int o = 0; o < outputNames.length; o++) {
+            int size = theta[o].length;
+            double[] gram = new double[size * size], moment = new double[size];
+            for (Worker worker : workers) {
+                for (int i = 0; i < gram.length; i++) gram[i] += worker.gram[o][i];
+                for (int i = 0; i < size; i++) moment[i] += worker.moment[o][i];
+            }
+            double trace = 0.0;
+            for (int i = 0; i < size; i++) trace += gram[i * size + i];
+            double ridge = size > 0 ? regularization * Math.max(trace / size, 1e-12) : 0.0;
+            for (int i = 0; i < size; i++) {
+                gram[i * size + i] += ridge;
+                moment[i] += ridge * theta[o][i];
+            }
+            double[] solved = solve(gram, moment, size);
+            if (solved != null) theta[o] = solved;
+        }
+    }
+
+    // Cholesky solve of the symmetric system; null when it is not positive definite
+    private static double[] solve(double[] a, double[] b, int n) {
+        double[] l = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = a[i * n + j];
+                for (int k = 0; k < j; k++) sum -= l[i * n + k] * l[j * n + k];
+                if (i == j) {
+                    if (!(sum > 0)) return null;
+                    l[i * n + i] = Math.sqrt(sum);
+                } else {
+                    l[i * n + j] = sum / l[j * n + j];
+                }
+            }
+        }
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) sum -= l[i * n + k] * y[k];
+            y[i] = sum / l[i * n + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = y[i];
+            for (int k = i + 1; k < n; k++) sum -= l[k * n + i] * y[k];
+            y[i] = sum / l[i * n + i];
+        }
+        return y;
+    }
+
+    // one pass of Adam over shuffled mini-batches, each split into slices scored in parallel
+    private void descend(Data data, double[] x, double[][] theta, double[] lower, double[] upper,
+                         double[] moment, double[] velocity, int[] step, Random random) {
+        int count = data.count;
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+
+        int slices = (Math.min(batchSize, count) + SLICE_SIZE - 1) / SLICE_SIZE;
+        Worker[] workers = new Worker[slices];
+        for (int s = 0; s < slices; s++) workers[s] = new Worker(x, theta);
+        double[] gradient = new double[x.length];
+        for (int from = 0; from < count; from += batchSize) {
+            int to = Math.min(count, from + batchSize);
+            List<Runnable> tasks = new ArrayList<>();
+            for (int s = 0; s * SLICE_SIZE < to - from; s++) {
+                int slice = s, sliceFrom = from + s * SLICE_SIZE, sliceTo = Math.min(to, sliceFrom + SLICE_SIZE);
+                tasks.add(() -> {
+                    Worker worker = workers[slice];
+                    worker.reset();
+                    for (int i = sliceFrom; i < sliceTo; i++) worker.accumulateGradient(data, order[i]);
+                });
+            }
+            ForkJoinTasks.invokeAll(pool, tasks);
+
+            Arrays.fill(gradient, 0.0);
+            long labelled = 0;
+            for (int s = 0; s < tasks.size(); s++) {
+                for (int i = 0; i < gradient.length; i++) gradient[i] += workers[s].gradient[i];
+                labelled += workers[s].labelled;
+            }
+            if (labelled == 0) continue;
+
+            step[0]++;
+            double correction1 = 1 - Math.pow(BETA1, step[0]), correction2 = 1 - Math.pow(BETA2, step[0]);
+            for (int i = 0; i < x.length; i++) {
+                double range = upper[i] - lower[i];
+                if (range <= 0) continue;
+                double g = gradient[i] / labelled;
+                moment[i] = BETA1 * moment[i] + (1 - BETA1) * g;
+                velocity[i] = BETA2 * velocity[i] + (1 - BETA2) * g * g;
+                x[i] -= learningRate * range * (moment[i] / correction1) / (Math.sqrt(velocity[i] / correction2) + EPSILON);
+            }
+            space.repair(x);
+        }
+    }
+
+    // mean squared error of the current parameters
+    private double evaluate(Data data, double[] x, double[][] theta) {
+        int parts = data.parts();
+        Worker[] workers = new Worker[parts];
+        List<Runnable> tasks = new ArrayList<>();
+        for (int p = 0; p < parts; p++) {
+            int part = p;
+            tasks.add(() -> {
+                Worker worker = workers[part] = new Worker(x, theta);
+                for (int row = data.partFrom(part); row < data.partTo(part); row++) worker.accumulateLoss(data, row);
+            });
+        }
+        ForkJoinTasks.invokeAll(pool, tasks);
+        double sum = 0.0;
+        long labelled = 0;
+        for (Worker worker : workers) {
+            sum += worker.loss;
+            labelled += worker.labelled;
+        }
+        return sum / labelled;
+    }
+
+    // clamped row-major inputs and targets, split into at most MAX_PARTS fixed parts
+    private final class Data {
+        final double[] inputs;
+        final double[] targets;
+        final int count;
+
+        Data(double[] inputs, double[] targets, int count) {
+            this.inputs = inputs;
+            this.targets = targets;
+            this.count = count;
+        }
+
+        int parts() { return Math.max(1, Math.min(MAX_PARTS, (count + PART_SIZE - 1) / PART_SIZE)); }
+        int partFrom(int part) { return (int) ((long) count * part / parts()); }
+        int partTo(int part) { return (int) ((long) count * (part + 1) / parts()); }
+
+        // mean squared error of a compiled system, NaN when nothing is labelled
+        double loss(CompiledFuzzySystem model) {
+            double[] predicted = new double[count * outputNames.length];
+            model.calculateBatch(inputs, predicted, count);
+            double sum = 0.0;
+            long labelled = 0;
+            for (int i = 0; i < predicted.length; i++) {
+                if (Double.isNaN(targets[i])) continue;
+                double error = predicted[i] - targets[i];
+                sum += error * error;
+                labelled++;
+            }
+            return sum / labelled;
+        }
+    }
+
+    // per-thread forward and backward pass over single rows
+    private final class Worker {
+        final double[] x;
+        final double[][] theta;
+        final int stride = 1 + consequentOrder * inputNames.length;
+        final double[] memberships = new double[slotFunction.length];
+        final double[] prefix = new double[antecedentSlot.length];
+        final double[] strengths = new double[ruleWeight.length];
+        final double[][] consequents = new double[outputNames.length][];
+        final double[] numerators = new double[outputNames.length];
+        final double[] denominators = new double[outputNames.length];
+        final double[] outputError = new double[outputNames.length];
+        final double[] membershipGradient = new double[slotFunction.length];
+        final double[] gradient;
+        double[][] gram;
+        double[][] moment;
+        double[] features;
+        double loss;
+        long labelled;
+
+        Worker(double[] x, double[][] theta) {
+            this.x = x;
+            this.theta = theta;
+            this.gradient = new double[x.length];
+            for (int o = 0; o < outputNames.length; o++) consequents[o] = new double[theta[o].length / stride];
+        }
+
+        void reset() {
+            Arrays.fill(gradient, 0.0);
+            labelled = 0;
+        }
+
+        void normalEquations() {
+            gram = new double[outputNames.length][];
+            moment = new double[outputNames.length][];
+            int largest = 0;
+            for (int o = 0; o < outputNames.length; o++) {
+                int size = theta[o].length;
+                gram[o] = new double[size * size];
+                moment[o] = new double[size];
+                largest = Math.max(largest, size);
+            }
+            features = new double[largest];
+        }
+
+        // memberships, rule strengths with their fold prefixes, consequents and output sums of a row
+        void forward(Data data, int row) {
+            int base = row * inputNames.length;
+            for (int s = 0; s < slotFunction.length; s++) {
+                memberships[s] = membership(s, data.inputs[base + slotInput[s]]);
+            }
+            for (int r = 0; r < strengths.length; r++) {
+                int a = ruleStart[r];
+                double strength = value(a);
+                prefix[a] = strength;
+                for (a++; a < ruleStart[r + 1]; a++) {
+                    strength = combine(antecedentAnd[a] ? andOperator : orOperator, strength, value(a));
+                    prefix[a] = strength;
+                }
+                strengths[r] = strength * ruleWeight[r];
+            }
+            for (int o = 0; o < outputNames.length; o++) {
+                double[] c = consequents[o];
+                for (int k = 0; k < c.length; k++) {
+                    int at = k * stride;
+                    double value = theta[o][at];
+                    for (int v = 0; v < stride - 1; v++) value += theta[o][at + 1 + v] * data.inputs[base + v];
+                    c[k] = value;
+                }
+            }
+            Arrays.fill(numerators, 0.0);
+            Arrays.fill(denominators, 0.0);
+            for (int r = 0; r < strengths.length; r++) {
+                if (strengths[r] > 0) {
+                    numerators[ruleOutput[r]] += strengths[r] * consequents[ruleOutput[r]][ruleConsequent[r]];
+                    denominators[ruleOutput[r]] += strengths[r];
+                }
+            }
+        }
+
+        private double value(int a) {
+            double m = memberships[antecedentSlot[a]];
+            return antecedentNot[a] ? 1.0 - m : m;
+        }
+
+        void accumulateLoss(Data data, int row) {
+            forward(data, row);
+            for (int o = 0; o < outputNames.length; o++) {
+                double target = data.targets[row * outputNames.length + o];
+                if (Double.isNaN(target)) continue;
+                double predicted = denominators[o] > 0 ? numerators[o] / denominators[o] : outputMid[o];
+                loss += (predicted - target) * (predicted - target);
+                labelled++;
+            }
+        }
+
+        // the output is linear in the consequents: sum over its rules of normalized strength times [1, x]
+        void accumulateNormal(Data data, int row) {
+            forward(data, row);
+            int base = row * inputNames.length;
+            for (int o = 0; o < outputNames.length; o++) {
+                double target = data.targets[row * outputNames.length + o];
+                if (Double.isNaN(target) || !(denominators[o] > 0)) continue;
+                int size = theta[o].length;
+                Arrays.fill(features, 0, size, 0.0);
+                for (int r = 0; r < strengths.length; r++) {
+                    if (ruleOutput[r] != o || !(strengths[r] > 0)) continue;
+                    double normalized = strengths[r] / denominators[o];
+                    int at = ruleConsequent[r] * stride;
+                    features[at] += normalized;
+                    for (int v = 0; v < stride - 1; v++) features[at + 1 + v] += normalized * data.inputs[base + v];
+                }
+                double[] g = gram[o], h = moment[o];
+                for (int i = 0; i < size; i++) {
+                    double fi = features[i];
+                    if (fi == 0.0) continue;
+                    for (int j = 0; j < size; j++) g[i * size + j] += fi * features[j];
+                    h[i] += fi * target;
+                }
+            }
+        }
+
+        // gradient of the summed squared error with respect to every set parameter
+        void accumulateGradient(Data data, int row) {
+            forward(data, row);
+            boolean any = false;
+            for (int o = 0; o < outputNames.length; o++) {
+                double target = data.targets[row * outputNames.length + o];
+                outputError[o] = 0.0;
+                if (Double.isNaN(target)) continue;
+                labelled++;
+                if (denominators[o] > 0) {
+                    outputError[o] = 2 * (numerators[o] / denominators[o] - target);
+                    any = true;
+                }
+            }
+            if (!any) return;
+
+            Arrays.fill(membershipGradient, 0.0);
+            for (int r = 0; r < strengths.length; r++) {
+                int o = ruleOutput[r];
+                if (outputError[o] == 0.0) continue;
+                double predicted = numerators[o] / denominators[o];
+                double g = outputError[o] * (consequents[o][ruleConsequent[r]] - predicted) / denominators[o] * ruleWeight[r];
+                // back through the left fold of the antecedents
+                for (int a = ruleStart[r + 1] - 1; a > ruleStart[r]; a--) {
+                    int op = antecedentAnd[a] ? andOperator : orOperator;
+                    double left = prefix[a - 1], right = value(a);
+                    double dRight = g * partial(op, left, right, false);
+                    membershipGradient[antecedentSlot[a]] += antecedentNot[a] ? -dRight : dRight;
+                    g *= partial(op, left, right, true);
+                }
+                int first = ruleStart[r];
+                membershipGradient[antecedentSlot[first]] += antecedentNot[first] ? -g : g;
+            }
+
+            int base = row * inputNames.length;
+            for (int s = 0; s < slotFunction.length; s++) {
+                if (membershipGradient[s] != 0.0) {
+                    addParameterGradient(s, data.inputs[base + slotInput[s]], membershipGradient[s]);
+                }
+            }
+        }
+
+        // same piecewise definitions as the membership function classes
+        private double membership(int s, double value) {
+            int at = space.offsetOf(s);
+            switch (space.shapeOf(s)) {
+                case ParameterSpace.TRIANGULAR: {
+                    double a = x[at], b = x[at + 1], c = x[at + 2];
+                    if (value < a || value > c) return 0.0;
+                    if (value == b) return 1.0;
+                    return value < b ? (value - a) / (b - a) : (c - value) / (c - b);
+                }
+                case ParameterSpace.TRAPEZOIDAL: {
+                    double a = x[at], b = x[at + 1], c = x[at + 2], d = x[at + 3];
+                    if (value < a || value > d) return 0.0;
+                    if (value >= b && value <= c) return 1.0;
+                    return value < b ? (value - a) / (b - a) : (d - value) / (d - c);
+                }
+                case ParameterSpace.GAUSSIAN: {
+                    double d = value - x[at], sigma = x[at + 1];
+                    return Math.exp(-(d * d) / (2 * sigma * sigma));
+                }
+                default:
+                    return slotFunction[s].evaluate(value);
+            }
+        }
+
+        private void addParameterGradient(int s, double value, double upstream) {
+            int at = space.offsetOf(s);
+            switch (space.shapeOf(s)) {
+                case ParameterSpace.TRIANGULAR: {
+                    double a = x[at], b = x[at + 1], c = x[at + 2];
+                    if (value <= a || value > c || value == b) return;
+                    if (value < b) {
+                        double width = b - a;
+                        gradient[at] += upstream * (value - b) / (width * width);
+                        gradient[at + 1] -= upstream * (value - a) / (width * width);
+                    } else {
+                        double width = c - b;
+                        gradient[at + 1] += upstream * (c - value) / (width * width);
+                        gradient[at + 2] += upstream * (value - b) / (width * width);
+                    }
+                    return;
+                }
+                case ParameterSpace.TRAPEZOIDAL: {
+                    double a = x[at], b = x[at + 1], c = x[at + 2], d = x[at + 3];
+                    if (value <= a || value > d || (value >= b && value <= c)) return;
+                    if (value < b) {
+                        double width = b - a;
+                        gradient[at] += upstream * (value - b) / (width * width);
+                        gradient[at + 1] -= upstream * (value - a) / (width * width);
+                    } else {
+                        double width = d - c;
+                        gradient[at + 2] += upstream * (d - value) / (width * width);
+                        gradient[at + 3] += upstream * (value - c) / (width * width);
+                    }
+                    return;
+                }
+                case ParameterSpace.GAUSSIAN: {
+                    double d = value - x[at], sigma = x[at + 1];
+                    double m = Math.exp(-(d * d) / (2 * sigma * sigma));
+                    gradient[at] += upstream * m * d / (sigma * sigma);
+                    gradient[at + 1] += upstream * m * d * d / (sigma * sigma * sigma);
+                    return;
+                }
+                default:
+            }
+        }
+    }
+
+    private static double combine(int op, double a, double b) {
+        switch (op) {
+            case MIN: return Math.min(a, b);
+            case PRODUCT: return a * b;
+            case MAX: return Math.max(a, b);
+            default: return a + b - (a * b);
+        }
+    }
+
+    // derivative of op(a, b) in a, or in b; min and max pass it to the operand they return
+    private static double partial(int op, double a, double b, boolean first) {
+        switch (op) {
+            case MIN: return (a <= b) == first ? 1.0 : 0.0;
+            case PRODUCT: return first ? b : a;
+            case MAX: return (a >= b) == first ? 1.0 : 0.0;
+            default: return first ? 1.0 - b : 1.0 - a;
+        }
+    }
+
+    public static final class Result {
+        private final FuzzySystem system;
+        private final double loss;
+        private final double initialLoss;
+        private final int epochs;
+        private final boolean stoppedEarly;
+        private final double[] history;
+
+        Result(FuzzySystem system, double loss, double initialLoss, int epochs, boolean stoppedEarly, double[] history) {
+            this.system = system;
+            this.loss = loss;
+            this.initialLoss = initialLoss;
+            this.epochs = epochs;
+            this.stoppedEarly = stoppedEarly;
+            this.history = history;
+        }
+
+        public FuzzySystem getSystem() { return system; }
+        public double getLoss() { return loss; }
+        public double getInitialLoss() { return initialLoss; }
+        public int getEpochs() { return epochs; }
+        public boolean isStoppedEarly() { return stoppedEarly; }
+        // mean squared error after every epoch
+        public double[] getHistory() { return history.clone(); }
+
+        @Override
+        public String toString() {
+            return String.format("Loss %.6g -> %.6g after %d epochs%s", initialLoss, loss, epochs,
+                    stoppedEarly ? " (stopped early)" : "");
+        }
+    }
+}
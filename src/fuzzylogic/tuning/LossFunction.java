@@ -0,0 +1,16 @@
+package fuzzylogic.tuning;
+
+// Loss of one predicted output against its label; a tuner minimizes the mean over every
+// labelled output value.
+@FunctionalInterface
+public interface LossFunction {
+    double loss(double predicted, double target);
+
+    static LossFunction squaredError() {
+        return (predicted, target) -> (predicted - target) * (predicted - target);
+    }
+
+    static LossFunction absoluteError() {
+        return (predicted, target) -> Math.abs(predicted - target);
+    }
+}
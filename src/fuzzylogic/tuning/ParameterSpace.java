@@ -0,0 +1,195 @@
+package fuzzylogic.tuning;
+
+import fuzzylogic.core.FuzzySet;
+import fuzzylogic.core.FuzzySystem;
+import fuzzylogic.core.LinguisticVariable;
+import fuzzylogic.inference.InferenceEngine;
+import fuzzylogic.inference.MamdaniInferenceEngine;
+import fuzzylogic.inference.ParallelInferenceEngine;
+import fuzzylogic.membershipFunction.GaussianMF;
+import fuzzylogic.membershipFunction.MembershipFunction;
+import fuzzylogic.membershipFunction.TrapezoidalMF;
+import fuzzylogic.membershipFunction.TriangularMF;
+import fuzzylogic.rules.FuzzyRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The tunable parameters of a FuzzySystem as one flat vector with per-parameter bounds:
+// triangular and trapezoidal breakpoints and gaussian means and sigmas of every input set
+// (and of every output set under Mamdani), then the weight of every rule. Breakpoints on the
+// edge of their variable's range are shoulders and stay fixed, as does anything with
+// lower == upper. Other membership functions are carried over unchanged.
+public final class ParameterSpace {
+    static final int TRIANGULAR = 0, TRAPEZOIDAL = 1, GAUSSIAN = 2, FIXED = 3;
+
+    private final FuzzySystem template;
+    private final List<LinguisticVariable> variables = new ArrayList<>();
+    private final int numInputs;
+    private final List<FuzzyRule> rules;
+
+    // per set in variable order: shape and offset of its first parameter
+    private final int[] setShape;
+    private final int[] setOffset;
+    private final int weightOffset;
+
+    private final double[] initial;
+    private final double[] lower;
+    private final double[] upper;
+
+    public ParameterSpace(FuzzySystem system) {
+        this(system, true, true);
+    }
+
+    public ParameterSpace(FuzzySystem system, boolean tuneSets, boolean tuneWeights) {
+        this.template = system;
+        variables.addAll(system.getInputVariables().values());
+        numInputs = variables.size();
+        if (engineOf(system) instanceof MamdaniInferenceEngine) {
+            // Sugeno output sets only name the consequents, so their shapes are never read
+            variables.addAll(system.getOutputVariables().values());
+        }
+        this.rules = system.getRuleBase().getAllRules();
+
+        int numSets = 0;
+        for (LinguisticVariable var : variables) numSets += var.getFuzzySets().size();
+        setShape = new int[numSets];
+        setOffset = new int[numSets];
+
+        List<double[]> params = new ArrayList<>();
+        int s = 0, n = 0;
+        for (LinguisticVariable var : variables) {
+            for (FuzzySet set : var.getFuzzySets().values()) {
+                MembershipFunction mf = set.getMembershipFunction();
+                double[] p;
+                if (!tuneSets) {
+                    setShape[s] = FIXED;
+                    p = new double[0];
+                } else if (mf.getClass() == TriangularMF.class) {
+                    setShape[s] = TRIANGULAR;
+                    p = ((TriangularMF) mf).getBreakpoints();
+                } else if (mf.getClass() == TrapezoidalMF.class) {
+                    setShape[s] = TRAPEZOIDAL;
+                    p = ((TrapezoidalMF) mf).getBreakpoints();
+                } else if (mf.getClass() == GaussianMF.class) {
+                    setShape[s] = GAUSSIAN;
+                    p = new double[]{((GaussianMF) mf).getMean(), ((GaussianMF) mf).getSigma()};
+                } else {
+                    setShape[s] = FIXED;
+                    p = new double[0];
+                }
+                setOffset[s++] = n;
+                n += p.length;
+                params.add(p);
+            }
+        }
+        weightOffset = n;
+        int size = n + (tuneWeights ? rules.size() : 0);
+        initial = new double[size];
+        lower = new double[size];
+        upper = new double[size];
+
+        s = 0;
+        for (LinguisticVariable var : variables) {
+            double min = var.getMinValue(), max = var.getMaxValue();
+            for (int k = 0; k < var.getFuzzySets().size(); k++, s++) {
+                double[] p = params.get(s);
+                for (int i = 0; i < p.length; i++) {
+                    int at = setOffset[s] + i;
+                    initial[at] = p[i];
+                    boolean sigma = setShape[s] == GAUSSIAN && i == 1;
+                    if (sigma) {
+                        lower[at] = Math.min(p[i], (max - min) * 1e-3);
+                        upper[at] = Math.max(p[i], max - min);
+                    } else if (setShape[s] != GAUSSIAN && (p[i] == min || p[i] == max)) {
+                        lower[at] = upper[at] = p[i];
+                    } else {
+                        lower[at] = Math.min(min, p[i]);
+                        upper[at] = Math.max(max, p[i]);
+                    }
+                }
+            }
+        }
+        if (tuneWeights) {
+            for (int r = 0; r < rules.size(); r++) {
+                initial[weightOffset + r] = rules.get(r).getWeight();
+                upper[weightOffset + r] = 1.0;
+            }
+        }
+    }
+
+    private static InferenceEngine engineOf(FuzzySystem system) {
+        InferenceEngine engine = system.getInferenceEngine();
+        return engine instanceof ParallelInferenceEngine parallel ? parallel.getDelegate() : engine;
+    }
+
+    // clamps into the bounds and sorts each set's breakpoints, so every vector builds
+    public void repair(double[] x) {
+        for (int i = 0; i < x.length; i++) {
+            x[i] = Double.isNaN(x[i]) ? initial[i] : Math.max(lower[i], Math.min(upper[i], x[i]));
+        }
+        for (int s = 0; s < setShape.length; s++) {
+            if (setShape[s] == TRIANGULAR) Arrays.sort(x, setOffset[s], setOffset[s] + 3);
+            else if (setShape[s] == TRAPEZOIDAL) Arrays.sort(x, setOffset[s], setOffset[s] + 4);
+        }
+    }
+
+    // a new system with the template's structure and x's parameters; x must be repaired
+    public FuzzySystem build(double[] x) {
+        if (x.length != initial.length) {
+            throw new IllegalArgumentException("Expected " + initial.length + " parameters, got " + x.length);
+        }
+        FuzzySystem system = new FuzzySystem(engineOf(template));
+
+        int s = 0;
+        for (int v = 0; v < variables.size(); v++) {
+            LinguisticVariable var = variables.get(v);
+            LinguisticVariable tuned = new LinguisticVariable(var.getName(), var.getMinValue(), var.getMaxValue());
+            for (FuzzySet set : var.getFuzzySets().values()) {
+                int at = setOffset[s];
+                MembershipFunction mf = switch (setShape[s++]) {
+                    case TRIANGULAR -> new TriangularMF(x[at], x[at + 1], x[at + 2]);
+                    case TRAPEZOIDAL -> new TrapezoidalMF(x[at], x[at + 1], x[at + 2], x[at + 3]);
+                    case GAUSSIAN -> new GaussianMF(x[at], x[at + 1]);
+                    default -> set.getMembershipFunction();
+                };
+                tuned.addFuzzySet(new FuzzySet(set.getName(), mf));
+            }
+            if (v < numInputs) system.addInputVariable(tuned);
+            else system.addOutputVariable(tuned);
+        }
+        // Sugeno outputs are not tuned and are shared as they are
+        if (variables.size() == numInputs) {
+            for (LinguisticVariable var : template.getOutputVariables().values()) system.addOutputVariable(var);
+        }
+
+        List<FuzzyRule> tunedRules = new ArrayList<>(rules.size());
+        boolean weights = initial.length > weightOffset;
+        for (int r = 0; r < rules.size(); r++) {
+            FuzzyRule rule = rules.get(r);
+            FuzzyRule copy = new FuzzyRule(rule.getName());
+            for (FuzzyRule.Antecedent ant : rule.getAntecedents()) {
+                copy.addAntecedent(ant.getVariable(), ant.getFuzzySet(), ant.isAnd(), ant.isNot());
+            }
+            if (rule.getConsequent() != null) {
+                copy.setConsequent(rule.getConsequent().getVariable(), rule.getConsequent().getFuzzySet());
+            }
+            copy.setWeight(weights ? x[weightOffset + r] : rule.getWeight());
+            copy.setEnabled(rule.isEnabled());
+            tunedRules.add(copy);
+        }
+        system.getRuleBase().replaceAll(tunedRules);
+        return system;
+    }
+
+    // set s counts the sets of every tuned variable in order, inputs first
+    int shapeOf(int set) { return setShape[set]; }
+    int offsetOf(int set) { return setOffset[set]; }
+
+    public int size() { return initial.length; }
+    public double[] getInitialValues() { return initial.clone(); }
+    public double[] getLowerBounds() { return lower.clone(); }
+    public double[] getUpperBounds() { return upper.clone(); }
+    public FuzzySystem getTemplate() { return template; }
+}
@@ -0,0 +1,470 @@
+package fuzzylogic.tuning;
+
+import fuzzylogic.core.CompiledFuzzySystem;
+import fuzzylogic.core.ForkJoinTasks;
+import fuzzylogic.core.FuzzySystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Fits a ParameterSpace to a labelled dataset with a genetic algorithm or a particle swarm.
+// Each generation compiles every new candidate and scores it with the columnar batch path,
+// one task per candidate and chunk of rows on the pool, and the partial losses are summed in
+// chunk order so a run is reproducible for a given seed however the tasks were scheduled.
+//
+// Generation g draws from its own Random(seed, g), so a run resumed from a checkpoint takes
+// the same path as one that was never interrupted. Training stops after maxGenerations, or
+// once the best loss has not improved by minDelta for patience generations.
+public class ParameterTuner {
+    public enum Algorithm { GENETIC, PARTICLE_SWARM }
+
+    public static final int CHUNK_SIZE = 4096;
+
+    private static final int CHECKPOINT_MAGIC = 0x46545550; // "FTUP"
+    private static final int CHECKPOINT_VERSION = 1;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    // genetic algorithm
+    private static final int TOURNAMENT_SIZE = 3;
+    private static final double CROSSOVER_RATE = 0.9;
+    private static final double BLX_ALPHA = 0.5;
+    private static final double MUTATION_SCALE = 0.1;
+
+    // particle swarm
+    private static final double INERTIA = 0.72;
+    private static final double COGNITIVE = 1.49;
+    private static final double SOCIAL = 1.49;
+    private static final double MAX_VELOCITY = 0.2;
+
+    private final ParameterSpace space;
+    private final ForkJoinPool pool;
+    private Algorithm algorithm = Algorithm.GENETIC;
+    private int populationSize = 40;
+    private int maxGenerations = 100;
+    private int patience = 0;
+    private double minDelta = 0.0;
+    private long seed = 42L;
+    private Path checkpoint;
+    private int checkpointInterval = 1;
+    private LossFunction lossFunction = LossFunction.squaredError();
+
+    public ParameterTuner(FuzzySystem system) {
+        this(new ParameterSpace(system), ForkJoinPool.commonPool());
+    }
+
+    public ParameterTuner(ParameterSpace space, ForkJoinPool pool) {
+        this.space = space;
+        this.pool = pool;
+    }
+
+    public void setAlgorithm(Algorithm algorithm) { this.algorithm = algorithm; }
+    public void setSeed(long seed) { this.seed = seed; }
+    public void setLossFunction(LossFunction lossFunction) { this.lossFunction = lossFunction; }
+
+    public void setPopulationSize(int populationSize) {
+        if (populationSize < 2) {
+            throw new IllegalArgumentException("Population size must be at least 2");
+        }
+        this.populationSize = populationSize;
+    }
+
+    public void setMaxGenerations(int maxGenerations) {
+        if (maxGenerations < 0) {
+            throw new IllegalArgumentException("Max generations must not be negative");
+        }
+        this.maxGenerations = maxGenerations;
+    }
+
+    // stop once patience generations in a row improve the best loss by less than minDelta; 0 disables
+    public void setPatience(int patience, double minDelta) {
+        if (patience < 0 || minDelta < 0) {
+            throw new IllegalArgumentException("Patience and min delta must not be negative");
+        }
+        this.patience = patience;
+        this.minDelta = minDelta;
+    }
+
+    // state is saved every interval generations and at the end; an existing file is resumed from
+    public void setCheckpoint(Path file, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        this.checkpoint = file;
+        this.checkpointInterval = interval;
+    }
+
+    // inputColumns[i][row] and targetColumns[o][row] in the compiled system's input and output
+    // order; a NaN target leaves that output of that row unscored
+    public Result tune(double[][] inputColumns, double[][] targetColumns, int count) {
+        CompiledFuzzySystem reference = space.getTemplate().compile();
+        if (inputColumns.length != reference.getInputCount() || targetColumns.length != reference.getOutputCount()) {
+            throw new IllegalArgumentException("Expected " + reference.getInputCount() + " input and "
+                    + reference.getOutputCount() + " target columns");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Row count must not be negative");
+        }
+        for (double[][] columns : new double[][][]{inputColumns, targetColumns}) {
+            for (double[] column : columns) {
+                if (column.length < count) throw new IllegalArgumentException("Columns too short for " + count + " rows");
+            }
+        }
+        Dataset data = new Dataset(inputColumns, targetColumns, count);
+        if (data.labelled == 0) {
+            throw new IllegalArgumentException("Dataset has no labelled outputs");
+        }
+
+        State state = checkpoint != null && Files.exists(checkpoint) ? readCheckpoint() : initialState(data);
+        while (state.generation < maxGenerations && !(patience > 0 && state.stale >= patience)) {
+            Random random = random(state.generation + 1);
+            if (algorithm == Algorithm.GENETIC) evolve(state, data, random);
+            else swarm(state, data, random);
+            state.generation++;
+
+            double previous = state.history.get(state.history.size() - 1);
+            int best = argmin(state.losses);
+            if (state.losses[best] < state.bestLoss) {
+                state.bestLoss = state.losses[best];
+                state.best = state.population[best].clone();
+            }
+            state.stale = state.bestLoss < previous - minDelta ? 0 : state.stale + 1;
+            state.history.add(state.bestLoss);
+            if (checkpoint != null && state.generation % checkpointInterval == 0) writeCheckpoint(state);
+        }
+        if (checkpoint != null) writeCheckpoint(state);
+
+        double[] history = new double[state.history.size()];
+        for (int g = 0; g < history.length; g++) history[g] = state.history.get(g);
+        return new Result(space.build(state.best), state.best.clone(), state.bestLoss, state.initialLoss,
+                state.generation, state.generation < maxGenerations, history);
+    }
+
+    private Random random(int generation) {
+        return new Random(seed ^ (generation + 1) * GOLDEN);
+    }
+
+    // the original parameters, then gaussian perturbations of them
+    private State initialState(Dataset data) {
+        int n = space.size();
+        double[] lower = space.getLowerBounds(), upper = space.getUpperBounds();
+        State state = new State(populationSize);
+        Random random = random(0);
+        state.population[0] = space.getInitialValues();
+        for (int p = 1; p < populationSize; p++) {
+            double[] x = space.getInitialValues();
+            for (int i = 0; i < n; i++) x[i] += random.nextGaussian() * MUTATION_SCALE * (upper[i] - lower[i]);
+            space.repair(x);
+            state.population[p] = x;
+        }
+        state.losses = evaluate(state.population, data);
+        if (algorithm == Algorithm.PARTICLE_SWARM) {
+            state.velocities = new double[populationSize][n];
+            state.personalBest = new double[populationSize][];
+            for (int p = 0; p < populationSize; p++) state.personalBest[p] = state.population[p].clone();
+            state.personalLoss = state.losses.clone();
+        }
+        int best = argmin(state.losses);
+        state.initialLoss = state.losses[0];
+        state.bestLoss = state.losses[best];
+        state.best = state.population[best].clone();
+        state.history.add(state.bestLoss);
+        return state;
+    }
+
+    // elitism, tournament selection, BLX-alpha crossover and gaussian mutation
+    private void evolve(State state, Dataset data, Random random) {
+        int size = state.population.length, n = space.size();
+        double[] lower = space.getLowerBounds(), upper = space.getUpperBounds();
+        Integer[] order = new Integer[size];
+        for (int p = 0; p < size; p++) order[p] = p;
+        double[] losses = state.losses;
+        Arrays.sort(order, Comparator.comparingDouble(p -> losses[p]));
+
+        int elites = Math.max(1, size / 10);
+        double[][] next = new double[size][];
+        double[] nextLosses = new double[size];
+        for (int e = 0; e < elites; e++) {
+            next[e] = state.population[order[e]];
+            nextLosses[e] = losses[order[e]];
+        }
+        for (int p = elites; p < size; p++) {
+            double[] a = state.population[tournament(losses, random)];
+            double[] b = state.population[tournament(losses, random)];
+            double[] child = a.clone();
+            if (random.nextDouble() < CROSSOVER_RATE) {
+                for (int i = 0; i < n; i++) {
+                    double lo = Math.min(a[i], b[i]), hi = Math.max(a[i], b[i]), spread = (hi - lo) * BLX_ALPHA;
+                    child[i] = lo - spread + random.nextDouble() * (hi - lo + 2 * spread);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (random.nextDouble() * n < 1.0) child[i] += random.nextGaussian() * MUTATION_SCALE * (upper[i] - lower[i]);
+            }
+            space.repair(child);
+            next[p] = child;
+        }
+
+        double[] scored = evaluate(Arrays.copyOfRange(next, elites, size), data);
+        System.arraycopy(scored, 0, nextLosses, elites, scored.length);
+        state.population = next;
+        state.losses = nextLosses;
+    }
+
+    private static int tournament(double[] losses, Random random) {
+        int winner = random.nextInt(losses.length);
+        for (int k = 1; k < TOURNAMENT_SIZE; k++) {
+            int challenger = random.nextInt(losses.length);
+            if (losses[challenger] < losses[winner]) winner = challenger;
+        }
+        return winner;
+    }
+
+    // inertia-weighted swarm pulled towards each particle's best and the overall best
+    private void swarm(State state, Dataset data, Random random) {
+        int n = space.size();
+        double[] lower = space.getLowerBounds(), upper = space.getUpperBounds();
+        for (int p = 0; p < state.population.length; p++) {
+            double[] x = state.population[p], v = state.velocities[p], own = state.personalBest[p];
+            for (int i = 0; i < n; i++) {
+                double limit = MAX_VELOCITY * (upper[i] - lower[i]);
+                v[i] = INERTIA * v[i] + COGNITIVE * random.nextDouble() * (own[i] - x[i])
+                        + SOCIAL * random.nextDouble() * (state.best[i] - x[i]);
+                v[i] = Math.max(-limit, Math.min(limit, v[i]));
+                x[i] += v[i];
+            }
+            space.repair(x);
+        }
+        state.losses = evaluate(state.population, data);
+        for (int p = 0; p < state.population.length; p++) {
+            if (state.losses[p] < state.personalLoss[p]) {
+                state.personalLoss[p] = state.losses[p];
+                state.personalBest[p] = state.population[p].clone();
+            }
+        }
+    }
+
+    // mean loss of every candidate; non-finite losses count as +Infinity
+    private double[] evaluate(double[][] candidates, Dataset data) {
+        CompiledFuzzySystem[] models = new CompiledFuzzySystem[candidates.length];
+        double[][] partial = new double[candidates.length][data.chunks];
+        List<Runnable> compiles = new ArrayList<>();
+        for (int c = 0; c < candidates.length; c++) {
+            int candidate = c;
+            compiles.add(() -> models[candidate] = space.build(candidates[candidate]).compile());
+        }
+        ForkJoinTasks.invokeAll(pool, compiles);
+        List<Runnable> scores = new ArrayList<>();
+        for (int c = 0; c < candidates.length; c++) {
+            for (int k = 0; k < data.chunks; k++) {
+                int candidate = c, chunk = k;
+                scores.add(() -> partial[candidate][chunk] = data.loss(models[candidate], chunk, lossFunction));
+            }
+        }
+        ForkJoinTasks.invokeAll(pool, scores);
+
+        double[] losses = new double[candidates.length];
+        for (int c = 0; c < candidates.length; c++) {
+            double sum = 0.0;
+            for (double chunkLoss : partial[c]) sum += chunkLoss;
+            double mean = sum / data.labelled;
+            losses[c] = Double.isFinite(mean) ? mean : Double.POSITIVE_INFINITY;
+        }
+        return losses;
+    }
+
+    private static int argmin(double[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) if (values[i] < values[best]) best = i;
+        return best;
+    }
+
+    private void writeCheckpoint(State state) {
+        try {
+            Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(CHECKPOINT_MAGIC);
+                out.writeInt(CHECKPOINT_VERSION);
+                out.writeInt(algorithm.ordinal());
+                out.writeLong(seed);
+                out.writeInt(space.size());
+                out.writeInt(state.population.length);
+                out.writeInt(state.generation);
+                out.writeInt(state.stale);
+                out.writeDouble(state.initialLoss);
+                out.writeDouble(state.bestLoss);
+                writeVector(out, state.best);
+                out.writeInt(state.history.size());
+                for (double loss : state.history) out.writeDouble(loss);
+                for (double[] x : state.population) writeVector(out, x);
+                writeVector(out, state.losses);
+                if (algorithm == Algorithm.PARTICLE_SWARM) {
+                    for (double[] v : state.velocities) writeVector(out, v);
+                    for (double[] x : state.personalBest) writeVector(out, x);
+                    writeVector(out, state.personalLoss);
+                }
+            }
+            // a crash mid-write leaves the previous checkpoint in place
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write checkpoint " + checkpoint, e);
+        }
+    }
+
+    private State readCheckpoint() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION) {
+                throw new IllegalArgumentException("Not a tuner checkpoint: " + checkpoint);
+            }
+            int savedAlgorithm = in.readInt();
+            long savedSeed = in.readLong();
+            int n = in.readInt(), size = in.readInt();
+            if (savedAlgorithm != algorithm.ordinal() || savedSeed != seed || n != space.size() || size != populationSize) {
+                throw new IllegalArgumentException("Checkpoint " + checkpoint + " was written by a different configuration");
+            }
+            State state = new State(size);
+            state.generation = in.readInt();
+            state.stale = in.readInt();
+            state.initialLoss = in.readDouble();
+            state.bestLoss = in.readDouble();
+            state.best = readVector(in, n);
+            int generations = in.readInt();
+            for (int g = 0; g < generations; g++) state.history.add(in.readDouble());
+            for (int p = 0; p < size; p++) state.population[p] = readVector(in, n);
+            state.losses = readVector(in, size);
+            if (algorithm == Algorithm.PARTICLE_SWARM) {
+                state.velocities = new double[size][];
+                state.personalBest = new double[size][];
+                for (int p = 0; p < size; p++) state.velocities[p] = readVector(in, n);
+                for (int p = 0; p < size; p++) state.personalBest[p] = readVector(in, n);
+                state.personalLoss = readVector(in, size);
+            }
+            return state;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read checkpoint " + checkpoint, e);
+        }
+    }
+
+    private static void writeVector(DataOutputStream out, double[] values) throws IOException {
+        for (double value : values) out.writeDouble(value);
+    }
+
+    private static double[] readVector(DataInputStream in, int length) throws IOException {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) values[i] = in.readDouble();
+        return values;
+    }
+
+    private static final class State {
+        double[][] population;
+        double[] losses;
+        double[][] velocities;
+        double[][] personalBest;
+        double[] personalLoss;
+        double[] best;
+        double bestLoss;
+        double initialLoss;
+        int generation;
+        int stale;
+        final List<Double> history = new ArrayList<>();
+
+        State(int size) {
+            population = new double[size][];
+        }
+    }
+
+    // rows split into fixed chunks up front, so every candidate scores the same slices
+    private static final class Dataset {
+        final double[][][] inputs;
+        final double[][][] targets;
+        final int[] rows;
+        final int chunks;
+        final long labelled;
+
+        Dataset(double[][] inputColumns, double[][] targetColumns, int count) {
+            chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            inputs = new double[chunks][][];
+            targets = new double[chunks][][];
+            rows = new int[chunks];
+            long labels = 0;
+            for (int k = 0; k < chunks; k++) {
+                int from = k * CHUNK_SIZE, to = Math.min(count, from + CHUNK_SIZE);
+                rows[k] = to - from;
+                inputs[k] = slice(inputColumns, from, to);
+                targets[k] = slice(targetColumns, from, to);
+                for (double[] column : targets[k]) {
+                    for (double target : column) if (!Double.isNaN(target)) labels++;
+                }
+            }
+            labelled = labels;
+        }
+
+        private static double[][] slice(double[][] columns, int from, int to) {
+            double[][] slice = new double[columns.length][];
+            for (int c = 0; c < columns.length; c++) slice[c] = Arrays.copyOfRange(columns[c], from, to);
+            return slice;
+        }
+
+        double loss(CompiledFuzzySystem model, int chunk, LossFunction lossFunction) {
+            double[][] expected = targets[chunk];
+            int count = rows[chunk];
+            double[][] predicted = new double[expected.length][count];
+            model.calculateBatch(inputs[chunk], predicted, count);
+            double sum = 0.0;
+            for (int o = 0; o < expected.length; o++) {
+                for (int r = 0; r < count; r++) {
+                    if (!Double.isNaN(expected[o][r])) sum += lossFunction.loss(predicted[o][r], expected[o][r]);
+                }
+            }
+            return sum;
+        }
+    }
+
+    public static final class Result {
+        private final FuzzySystem system;
+        private final double[] parameters;
+        private final double loss;
+        private final double initialLoss;
+        private final int generations;
+        private final boolean stoppedEarly;
+        private final double[] history;
+
+        Result(FuzzySystem system, double[] parameters, double loss, double initialLoss,
+               int generations, boolean stoppedEarly, double[] history) {
+            this.system = system;
+            this.parameters = parameters;
+            this.loss = loss;
+            this.initialLoss = initialLoss;
+            this.generations = generations;
+            this.stoppedEarly = stoppedEarly;
+            this.history = history;
+        }
+
+        public FuzzySystem getSystem() { return system; }
+        public double[] getParameters() { return parameters.clone(); }
+        public double getLoss() { return loss; }
+        public double getInitialLoss() { return initialLoss; }
+        public int getGenerations() { return generations; }
+        public boolean isStoppedEarly() { return stoppedEarly; }
+        // best loss after the initial population and after every generation
+        public double[] getHistory() { return history.clone(); }
+
+        @Override
+        public String toString() {
+            return String.format("Loss %.6g -> %.6g after %d generations%s", initialLoss, loss, generations,
+                    stoppedEarly ? " (stopped early)" : "");
+        }
+    }
+}